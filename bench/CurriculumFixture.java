@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Curricula of any size for the benchmarks, made from the sample curriculum.
+ * <p>
+ * The first rows are CurriculumData_Grades.csv as it is. Every further copy of the sample gets
+ * the copy number appended to its course numbers and titles ("CS 111-2", "Introduction to
+ * Computing 2"), so the strings keep their real lengths and every course stays distinct.
+ * The benchmarks are run from the repository root, where the sample file is.
+ */
+final class CurriculumFixture {
+    static final String SAMPLE_FILE = "CurriculumData_Grades.csv";
+
+    private CurriculumFixture() {
+    }
+
+    /**
+     * This method returns a curriculum with the given number of courses.
+     *
+     * @param rows the number of courses
+     * @return the courses
+     */
+    static ArrayList<Course> curriculum(int rows) {
+        List<Course> sample = sample();
+        ArrayList<Course> courseList = new CourseList(rows);
+        for (int row = 0; row < rows; row++) {
+            Course course = sample.get(row % sample.size());
+            int copy = row / sample.size();
+            // Kept in StringDictionary for good, as the Strings of a parsed curriculum are
+            courseList.add((copy == 0) ? copyOf(course) : new Course(
+                    StringDictionary.intern(course.getCourseNumber() + "-" + (copy + 1)),
+                    StringDictionary.intern(course.getDescriptiveTitle() + " " + (copy + 1)),
+                    course.getPacked()));
+        }
+        return courseList;
+    }
+
+    /**
+     * This method returns the courses of a shifter into the given curriculum: one course for every
+     * tenth curriculum course with the same title, and as many again that match nothing.
+     *
+     * @param curriculum the curriculum the shifter moves into
+     * @return the shifter's courses
+     */
+    static ArrayList<Course> shifter(List<Course> curriculum) {
+        ArrayList<Course> shifterCourseList = new ArrayList<>();
+        for (int row = 0; row < curriculum.size(); row += 10) {
+            Course course = curriculum.get(row);
+            shifterCourseList.add(new Course(StringDictionary.intern("IT " + row), course.getDescriptiveTitle(),
+                    course.getTerm(), course.getYear(), course.getUnits(), 80 + row % 20));
+            shifterCourseList.add(new Course(StringDictionary.intern("IT " + row + "X"),
+                    StringDictionary.intern("Shifter Elective " + row), course.getTerm(), course.getYear(), 3, 85));
+        }
+        return shifterCourseList;
+    }
+
+    /**
+     * This method writes a curriculum to a temporary CSV file in the format of the sample.
+     *
+     * @param courseList the courses to write
+     * @return the CSV file
+     * @throws IOException if the file cannot be written
+     */
+    static Path writeTemporaryCsv(List<Course> courseList) throws IOException {
+        Path directory = Files.createTempDirectory("curriculum-bench");
+        Path csvFile = directory.resolve("curriculum.csv");
+        CourseExporter.export(courseList, csvFile);
+        return csvFile;
+    }
+
+    /**
+     * This method deletes a temporary CSV file, its TXT copy and its directory.
+     */
+    static void deleteTemporaryCsv(Path csvFile) throws IOException {
+        Files.deleteIfExists(csvFile);
+        Files.deleteIfExists(CourseExporter.textFileOf(csvFile));
+        Files.deleteIfExists(CurriculumSnapshot.snapshotFileOf(csvFile));
+        Files.deleteIfExists(csvFile.getParent());
+    }
+
+    static Course copyOf(Course course) {
+        return new Course(course.getCourseNumber(), course.getDescriptiveTitle(), course.getPacked());
+    }
+
+    private static List<Course> sample() {
+        try {
+            List<Course> sample = new CsvParser().parse(Path.of(SAMPLE_FILE));
+            if (sample.isEmpty()) throw new IllegalStateException(SAMPLE_FILE + " has no courses");
+            return sample;
+        } catch (IOException ioException) {
+            throw new IllegalStateException("Run the benchmarks from the directory of " + SAMPLE_FILE, ioException);
+        }
+    }
+}
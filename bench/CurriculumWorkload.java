@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The benchmarked operations, called on the program's own classes (see benchmarks.Workload).
+ */
+public class CurriculumWorkload implements benchmarks.Workload {
+    private static final int KEYS = 1024;
+    private static final CourseQuery.Query CONJUNCTION = CourseQuery.parse("ungraded elective year=4 term=1");
+    private static final CourseQuery.Query COMPARISON = CourseQuery.parse("graded term=1 grade>=90");
+
+    private int rows;
+    private ArrayList<Course> courseList;
+    private Path csvFile;
+    private final String[] presentKeys = new String[KEYS];
+    private final String[] missingKeys = new String[KEYS];
+    private final String[] prefixKeys = new String[KEYS];
+    private final String[] titleKeys = new String[KEYS];
+    private final StringBuilder row = new StringBuilder(256);
+    private final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    private ArrayList<Course> shifterCourseList;
+    private ArrayList<Course> freshShifterCourseList;
+    private ArrayList<Course> legacyCourseList;
+    private ArrayList<Course> legacyShifterCourseList;
+    private ShiftEngine.Result originalMatches;
+    private String[] originalNumbers;
+    private long[] originalGrades;
+
+    @Override
+    public void buildCurriculum(int rows) {
+        this.rows = rows;
+        courseList = CurriculumFixture.curriculum(rows);
+        for (int i = 0; i < KEYS; i++) {
+            presentKeys[i] = courseList.get((int) ((i * 2654435761L) % rows)).getCourseNumber().toLowerCase();
+            missingKeys[i] = "XYZ " + i;
+            prefixKeys[i] = presentKeys[i].substring(0, Math.min(4, presentKeys[i].length()));
+            String title = courseList.get((int) ((i * 40503L) % rows)).getDescriptiveTitle();
+            int middle = Math.max(0, title.length() / 2 - 3);
+            titleKeys[i] = title.substring(middle, Math.min(title.length(), middle + 6));
+        }
+        CourseAdministration.courseIndexOf(courseList);
+    }
+
+    @Override
+    public void writeCsv() throws IOException {
+        csvFile = CurriculumFixture.writeTemporaryCsv(courseList);
+        CurriculumSnapshot.write(CourseAdministration.parseCSV(csvFile.toString()), List.of(), csvFile);
+    }
+
+    @Override
+    public void deleteFiles() throws IOException {
+        if (csvFile != null) CurriculumFixture.deleteTemporaryCsv(csvFile);
+    }
+
+    @Override
+    public Object parseCSV() {
+        return CourseAdministration.parseCSV(csvFile.toString());
+    }
+
+    @Override
+    public Object legacyParseCSV() {
+        return LegacyCurriculum.parseCSV(csvFile.toString());
+    }
+
+    @Override
+    public Object loadSnapshot() {
+        return CurriculumSnapshot.load(csvFile, new ArrayList<>());
+    }
+
+    @Override
+    public Object searchFound(int i) {
+        return CourseAdministration.searchCourseList(courseList, presentKeys[i & (KEYS - 1)]);
+    }
+
+    @Override
+    public Object searchMissing(int i) {
+        return CourseAdministration.searchCourseList(courseList, missingKeys[i & (KEYS - 1)]);
+    }
+
+    @Override
+    public Object legacySearchFound(int i) {
+        return LegacyCurriculum.searchCourseList(courseList, presentKeys[i & (KEYS - 1)]);
+    }
+
+    @Override
+    public Object legacySearchMissing(int i) {
+        return LegacyCurriculum.searchCourseList(courseList, missingKeys[i & (KEYS - 1)]);
+    }
+
+    @Override
+    public Object completeCourseNumber(int i) {
+        return CourseAdministration.courseSearchOf(courseList).completeCourseNumber(prefixKeys[i & (KEYS - 1)], 10);
+    }
+
+    @Override
+    public Object searchTitle(int i) {
+        return CourseAdministration.courseSearchOf(courseList).findByTitleSubstring(titleKeys[i & (KEYS - 1)], 10);
+    }
+
+    @Override
+    public void buildShifter() {
+        shifterCourseList = CurriculumFixture.shifter(courseList);
+        originalMatches = new ShiftEngine(CourseAdministration.courseIndexOf(courseList)).match(shifterCourseList);
+        originalNumbers = new String[originalMatches.matched.size()];
+        originalGrades = new long[originalMatches.matched.size()];
+        for (int i = 0; i < originalNumbers.length; i++) {
+            Course course = originalMatches.matched.get(i).curriculumCourse;
+            originalNumbers[i] = course.getCourseNumber();
+            originalGrades[i] = course.getPacked();
+        }
+        restoreCurriculum();
+    }
+
+    @Override
+    public void restoreCurriculum() {
+        // Removed through removeCourses, so the index and its title matcher are kept up to date
+        // instead of being rebuilt by the next shift
+        if (courseList.size() > rows)
+            CourseAdministration.removeCourses(courseList, new ArrayList<>(courseList.subList(rows, courseList.size())));
+        for (int i = 0; i < originalNumbers.length; i++) {
+            Course course = originalMatches.matched.get(i).curriculumCourse;
+            course.setCourseNumber(originalNumbers[i]);
+            if (PackedCourse.isGraded(originalGrades[i])) course.setGrades(PackedCourse.grades(originalGrades[i]));
+            else course.clearGrades();
+        }
+        freshShifterCourseList = new ArrayList<>(shifterCourseList.size());
+        for (Course course : shifterCourseList) freshShifterCourseList.add(CurriculumFixture.copyOf(course));
+        CourseAdministration.courseIndexOf(courseList);
+    }
+
+    @Override
+    public Object matchShifter() {
+        return new ShiftEngine(CourseAdministration.courseIndexOf(courseList)).match(freshShifterCourseList);
+    }
+
+    /**
+     * The shift as shiftCourse and uncarriedCourses make it, without the printing.
+     */
+    @Override
+    public int shiftAndAddUncarried() {
+        ShiftEngine.Result result = new ShiftEngine(CourseAdministration.courseIndexOf(courseList))
+                .match(freshShifterCourseList);
+        ShiftEngine.applyMatches(result);
+        ShiftEngine.markUncarried(result);
+        for (Course course : result.uncarried) CourseAdministration.addCourse(courseList, course);
+        return courseList.size();
+    }
+
+    @Override
+    public void copyCurriculum() {
+        legacyCourseList = new ArrayList<>(courseList.size());
+        for (Course course : courseList) legacyCourseList.add(CurriculumFixture.copyOf(course));
+        legacyShifterCourseList = new ArrayList<>(shifterCourseList.size());
+        for (Course course : shifterCourseList) legacyShifterCourseList.add(CurriculumFixture.copyOf(course));
+    }
+
+    @Override
+    public int legacyShiftAndAddUncarried() {
+        LegacyCurriculum.shiftCourse(legacyCourseList, legacyShifterCourseList);
+        return legacyCourseList.size();
+    }
+
+    @Override
+    public Object queryConjunction() {
+        return CourseAdministration.courseQueryOf(courseList).find(CONJUNCTION);
+    }
+
+    @Override
+    public Object queryComparison() {
+        return CourseAdministration.courseQueryOf(courseList).find(COMPARISON);
+    }
+
+    @Override
+    public Object scanConjunction() {
+        ArrayList<Course> matches = new ArrayList<>();
+        for (Course course : courseList)
+            if (!course.isGraded() && course.getIsElective() && course.getYear() == 4 && course.getTerm() == 1)
+                matches.add(course);
+        return matches;
+    }
+
+    /**
+     * The courses in the order sortCoursesByGPA prints them, without the printing.
+     */
+    @Override
+    public void sortCoursesByGPA(Blackhole blackhole) {
+        for (Course course : CourseAdministration.gradeRankingOf(courseList).descending()) blackhole.consume(course);
+    }
+
+    @Override
+    public void legacySortCoursesByGPA(Blackhole blackhole) {
+        for (Course course : LegacyCurriculum.sortCoursesByGPA(courseList, true)) blackhole.consume(course);
+    }
+
+    @Override
+    public Object buildRanking() {
+        GradeRanking ranking = GradeRanking.of(courseList);
+        ranking.detach();
+        return ranking;
+    }
+
+    @Override
+    public void courseToString(Blackhole blackhole) {
+        for (Course course : courseList) blackhole.consume(course.toString());
+    }
+
+    @Override
+    public void appendCourse(Blackhole blackhole) {
+        for (Course course : courseList) {
+            row.setLength(0);
+            blackhole.consume(CourseFormat.appendCourse(row, course).length());
+        }
+    }
+
+    @Override
+    public void export() throws IOException {
+        CourseExporter.export(courseList, exportFile());
+    }
+
+    @Override
+    public void exportWithEcho() throws IOException {
+        CourseExporter.export(courseList, exportFile(), discard);
+    }
+
+    private Path exportFile() throws IOException {
+        if (csvFile == null) csvFile = CurriculumFixture.writeTemporaryCsv(courseList);
+        return csvFile;
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The operations of the original program, as they were before they were optimized, kept as the
+ * baselines the benchmarks compare against. Only the printing was taken out; the algorithms are
+ * the original ones:
+ * <p>
+ * parseCSV: a BufferedReader, String.split on commas and Double.parseDouble <br>
+ * searchCourseList: a linear scan comparing every course number ignoring case <br>
+ * shiftCourse: a nested loop over the shifter and the curriculum, then uncarriedCourses, which
+ * scans both lists again until no shifter course is left to remove <br>
+ * sortCoursesByGPA: a copy of the graded courses, sorted, then reversed for descending order
+ */
+class LegacyCurriculum {
+    private LegacyCurriculum() {
+    }
+
+    /**
+     * This method parses a CSV file as the original parseCSV did. A course without a grade gets
+     * none; the original set its grade to 0, which meant the same then.
+     *
+     * @param fileName the CSV file
+     * @return the courses of the file
+     */
+    static ArrayList<Course> parseCSV(String fileName) {
+        ArrayList<Course> courseList = new ArrayList<>();
+        String line;
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+            br.readLine();
+            while ((line = br.readLine()) != null) {
+                // Split on comma
+                String[] csv = line.split(",");
+                if (csv.length < 6) csv = buildArray(line.split(","));
+
+                Course course = new Course();
+                course.setYear(Byte.parseByte(csv[0]));
+                course.setTerm(Byte.parseByte(csv[1]));
+                course.setCourseNumber(csv[2]);
+                course.setDescriptiveTitle(csv[3]);
+                course.setUnits(Double.parseDouble(csv[4]));
+                if (csv[5].equals("")) course.clearGrades();
+                else course.setGrades(Double.parseDouble(csv[5]));
+                courseList.add(course);
+            }
+        } catch (FileNotFoundException fileNotFoundException) {
+            System.out.println("File not found.");
+        } catch (IOException ioException) {
+            System.out.println("I/O error: " + ioException);
+        }
+        return courseList;
+    }
+
+    private static String[] buildArray(String[] line) {
+        ArrayList<String> courseInfo = new ArrayList<>(Arrays.asList(line));
+        int size = 6 - courseInfo.size();
+        for (int i = 0; i < size; i++) {
+            courseInfo.add("");
+        }
+        return courseInfo.toArray(new String[6]);
+    }
+
+    /**
+     * This method looks up a course number as the original searchCourseList did.
+     *
+     * @param courseList the courses
+     * @param searchKey  the course number
+     * @return the first matching course, or an empty Course if there is none
+     */
+    static Course searchCourseList(ArrayList<Course> courseList, String searchKey) {
+        for (Course course : courseList) {
+            if (course.getCourseNumber().equalsIgnoreCase(searchKey))
+                return course;
+        }
+        return new Course();
+    }
+
+    /**
+     * This method shifts into a curriculum as the original shiftCourse and uncarriedCourses did:
+     * every shifter course gives its number and grade to the first curriculum course with the
+     * same title, and the shifter courses left are added with a "*" and no units.
+     *
+     * @param courseList        the curriculum, which is changed
+     * @param shifterCourseList the shifter's courses, which are changed
+     */
+    static void shiftCourse(ArrayList<Course> courseList, ArrayList<Course> shifterCourseList) {
+        for (Course sC : shifterCourseList) {
+            for (Course c : courseList) {
+                if ((sC.getDescriptiveTitle()).compareToIgnoreCase(c.getDescriptiveTitle()) == 0) {
+                    c.setGrades(sC.getGrades());
+                    c.setCourseNumber(sC.getCourseNumber());
+                    break;
+                }
+            }
+        }
+        uncarriedCourses(courseList, shifterCourseList);
+    }
+
+    private static void uncarriedCourses(ArrayList<Course> courseList, ArrayList<Course> shifterCourseList) {
+        int prevSize;
+        int curSize = 0;
+
+        do {
+            prevSize = curSize;
+            for (int i = 0; i < shifterCourseList.size(); i++) {
+                for (Course c : courseList) {
+                    if ((shifterCourseList.get(i)).getDescriptiveTitle().compareToIgnoreCase(c.getDescriptiveTitle()) == 0) {
+                        shifterCourseList.remove(i);
+                        break;
+                    }
+                }
+            }
+            curSize = shifterCourseList.size();
+        } while (prevSize != curSize);
+
+        for (Course sC : shifterCourseList) {
+            sC.setCourseNumber("*" + sC.getCourseNumber());
+            sC.setUnits(0);
+            courseList.add(sC);
+        }
+    }
+
+    /**
+     * This method returns the graded courses in the order the original sortCoursesByGPA printed them.
+     *
+     * @param courseList the courses
+     * @param descending whether the highest grade comes first
+     * @return a sorted copy of the graded courses
+     */
+    static ArrayList<Course> sortCoursesByGPA(ArrayList<Course> courseList, boolean descending) {
+        ArrayList<Course> courseListCopy = new ArrayList<>();
+        for (Course c : courseList) {
+            if (c.getGrades() != 0)
+                courseListCopy.add(c);
+        }
+        Collections.sort(courseListCopy);
+        if (descending) Collections.reverse(courseListCopy);
+        return courseListCopy;
+    }
+}
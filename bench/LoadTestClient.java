@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends many concurrent requests to a CurriculumServer and reports the throughput and the
+ * latency percentiles.
+ * <p>
+ * Without --url, the client writes --students transcripts with TranscriptGenerator, starts a
+ * server on a free port in this JVM and stops it when done. With --url it loads an already
+ * running server instead.
+ * <p>
+ * Up to --concurrency requests are in flight at any time. Most requests are reads spread over
+ * every endpoint (courses of a year and term, summary, graded, failed, ungraded and electives);
+ * --writes percent of them set a random grade.
+ * <p>
+ * USAGE: java LoadTestClient [--url http://localhost:8080] [--students 200] [--rows 80]
+ * [--concurrency 1000] [--requests 100000] [--writes 10] [--seed 42]
+ */
+public class LoadTestClient {
+    private static final Pattern COURSE_NUMBER = Pattern.compile("\"courseNumber\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern STUDENT_ID = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final String[] READS = {"courses", "", "graded", "failed", "ungraded", "electives"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of("--students", "200", "--rows", "80",
+                "--concurrency", "1000", "--requests", "100000", "--writes", "10", "--seed", "42"));
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!options.containsKey(args[i]) && !args[i].equals("--url"))
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            options.put(args[i], args[i + 1]);
+        }
+        long seed = Long.parseLong(options.get("--seed"));
+
+        CurriculumServer server = null;
+        Path directory = null;
+        String url = options.get("--url");
+        try {
+            if (url == null) {
+                directory = Files.createTempDirectory("curriculum-load");
+                server = startServer(directory, Integer.parseInt(options.get("--students")),
+                        Integer.parseInt(options.get("--rows")), seed);
+                url = "http://localhost:" + server.port();
+            }
+            run(url.replaceAll("/+$", ""), Integer.parseInt(options.get("--concurrency")),
+                    Integer.parseInt(options.get("--requests")), Integer.parseInt(options.get("--writes")), seed);
+        } finally {
+            if (server != null) server.stop();
+            if (directory != null) {
+                try (var files = Files.list(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(directory);
+            }
+        }
+    }
+
+    /**
+     * This method writes the transcripts of the students and serves them on a free port.
+     */
+    private static CurriculumServer startServer(Path directory, int studentCount, int rows, long seed) throws IOException {
+        TranscriptGenerator generator = new TranscriptGenerator(seed);
+        CourseRepository repository = new CourseRepository();
+        CsvParser parser = new CsvParser();
+        for (int i = 0; i < studentCount; i++) {
+            String id = String.format("student%05d", i);
+            Path file = directory.resolve(id + ".csv");
+            generator.writeCurriculum(file, rows);
+            ArrayList<Course> courses = parser.parse(file);
+            repository.put(id, file, courses);
+        }
+        CurriculumServer server = new CurriculumServer(repository, InetAddress.getLoopbackAddress(), 0, CurriculumServer.DEFAULT_THREADS);
+        server.start();
+        System.out.println("Serving " + studentCount + " students of " + rows + " courses on port " + server.port());
+        return server;
+    }
+
+    /**
+     * This method sends the requests and prints the results.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Reads the student ids, and the course numbers of the students that get grade updates <br>
+     * 2. Sends the requests asynchronously, holding a permit of the semaphore while each is in flight <br>
+     * 3. Waits for every answer and prints the throughput, the latency percentiles and the failures
+     */
+    private static void run(String url, int concurrency, int requestCount, int writePercent, long seed)
+            throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<String> ids = new ArrayList<>();
+        Matcher idMatcher = STUDENT_ID.matcher(get(client, url + "/students"));
+        while (idMatcher.find()) ids.add(idMatcher.group(1));
+        if (ids.isEmpty()) throw new IllegalStateException("The server has no students.");
+
+        // Grade updates go to the first students only, whose course numbers are read up front
+        List<String> writeIds = ids.subList(0, Math.min(50, ids.size()));
+        List<List<String>> courseNumbers = new ArrayList<>();
+        for (String id : writeIds) {
+            List<String> numbers = new ArrayList<>();
+            Matcher numberMatcher = COURSE_NUMBER.matcher(get(client, url + "/students/" + encode(id) + "/courses"));
+            while (numberMatcher.find()) numbers.add(numberMatcher.group(1).replace("\\\"", "\"").replace("\\\\", "\\"));
+            courseNumbers.add(numbers);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requestCount);
+        long[] latencies = new long[requestCount];
+        AtomicLong failures = new AtomicLong(), writes = new AtomicLong();
+        Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requestCount; i++) {
+            HttpRequest request;
+            if (random.nextInt(100) < writePercent) {
+                int student = random.nextInt(writeIds.size());
+                List<String> numbers = courseNumbers.get(student);
+                if (numbers.isEmpty()) {
+                    request = readRequest(url, ids, random);
+                } else {
+                    String form = "course=" + encode(numbers.get(random.nextInt(numbers.size())))
+                            + "&grade=" + (60 + random.nextInt(40));
+                    request = HttpRequest.newBuilder(URI.create(url + "/students/" + encode(writeIds.get(student)) + "/grade"))
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString(form)).build();
+                    writes.incrementAndGet();
+                }
+            } else {
+                request = readRequest(url, ids, random);
+            }
+
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                latencies[index] = System.nanoTime() - sent;
+                if (failure != null) failures.incrementAndGet();
+                else statuses.computeIfAbsent(response.statusCode(), status -> new AtomicLong()).incrementAndGet();
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%,d requests (%,d writes), %d concurrent, in %.2f s: %,.0f requests/sec%n",
+                requestCount, writes.get(), concurrency, elapsed / 1e9, requestCount * 1e9 / elapsed);
+        System.out.printf("Latency (ms): p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6);
+        System.out.println("Statuses: " + statuses + ", failed: " + failures.get());
+    }
+
+    private static HttpRequest readRequest(String url, List<String> ids, SplittableRandom random) {
+        String read = READS[random.nextInt(READS.length)];
+        String path = url + "/students/" + encode(ids.get(random.nextInt(ids.size())));
+        if (read.equals("courses")) path += "/courses?year=" + (1 + random.nextInt(4)) + "&term=" + (1 + random.nextInt(3));
+        else if (!read.isEmpty()) path += "/" + read;
+        return HttpRequest.newBuilder(URI.create(path)).GET().build();
+    }
+
+    private static String get(HttpClient client, String url) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IOException(url + ": HTTP " + response.statusCode());
+        return response.body();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
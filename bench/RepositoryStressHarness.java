@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hammers a CourseRepository with concurrent readers and writers and checks that every version a
+ * reader sees is the result of whole updates, and that no update is lost.
+ * <p>
+ * Four courses of every student are set aside, and the writers keep these invariants: <br>
+ * - transfers set the grades of courses A and B to x and 100 - x in one update, so A + B = 100 <br>
+ * - increments add 0.01 to the grade of course C, so C only grows and ends at the number of
+ * increments, in hundredths (up to the highest grade a course can store) <br>
+ * - one shifter per student shifts batch n (1, 2, ...), which sets the grade of course D to n
+ * hundredths through a matched shifter course and adds SHIFT_SIZE uncarried courses, so a student
+ * always has exactly n * SHIFT_SIZE shifted courses while D is n hundredths (up to MAX_SHIFTS
+ * batches) <br>
+ * Grades are compared in hundredths, as PackedCourse stores them.
+ * Readers take the current version without a lock and check, both at the positions of A to D and
+ * by walking every course, that A + B = 100, that C and the version number never go back, that the
+ * shifted courses and D agree, and that the totals count the same courses as the version. Now and
+ * then a reader reads a version again after other threads ran, to check that it did not change.
+ * After the run, C and D are compared with the number of increments and shifts made.
+ * <p>
+ * USAGE: java RepositoryStressHarness [--students 4] [--rows 200] [--readers 8] [--writers 4]
+ * [--seconds 10] [--seed 42]
+ */
+public class RepositoryStressHarness {
+    private static final int SHIFT_SIZE = 3;
+    // Each shift adds courses, so the shifts stop here to keep the lists (and the reads) small
+    private static final int MAX_SHIFTS = 1000;
+    private static final String SHIFT_TITLE = "Stress batch ";
+
+    private final CourseRepository repository = new CourseRepository();
+    private final List<String> ids = new ArrayList<>();
+    // The positions of the set-aside courses of each student: A, B, C and D
+    private final List<int[]> positions = new ArrayList<>();
+    private final List<Integer> baseSizes = new ArrayList<>();
+    private AtomicLongArray increments, shifts;
+    private final AtomicLong reads = new AtomicLong(), violations = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    public static void main(String[] args) throws Exception {
+        int students = 4, rows = 200, readers = 8, writers = 4, seconds = 10;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--students" -> students = Integer.parseInt(args[i + 1]);
+                case "--rows" -> rows = Integer.parseInt(args[i + 1]);
+                case "--readers" -> readers = Integer.parseInt(args[i + 1]);
+                case "--writers" -> writers = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        RepositoryStressHarness harness = new RepositoryStressHarness();
+        harness.load(students, Math.max(rows, 10), seed);
+        boolean passed = harness.run(readers, writers, seconds, seed);
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * This method fills the repository with generated curricula and sets aside four courses of each.
+     */
+    private void load(int students, int rows, long seed) throws IOException {
+        TranscriptGenerator generator = new TranscriptGenerator(seed);
+        Path file = Files.createTempFile("curriculum-stress", ".csv");
+        try {
+            for (int s = 0; s < students; s++) {
+                generator.writeCurriculum(file, rows);
+                ArrayList<Course> courses = new CsvParser().parse(file);
+                String id = "student" + s;
+                repository.put(id, file, courses);
+                ids.add(id);
+                baseSizes.add(courses.size());
+                positions.add(repository.update(id, this::setAside));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        increments = new AtomicLongArray(students);
+        shifts = new AtomicLongArray(students);
+    }
+
+    /**
+     * This method picks four courses whose number and title no other course has, and sets their
+     * grades to the starting values of the invariants.
+     */
+    private int[] setAside(CourseRepository.Editor editor) {
+        int[] picked = new int[4];
+        int found = 0;
+        CurriculumVersion version = editor.version();
+        Map<String, Integer> numberCounts = new HashMap<>(), titleCounts = new HashMap<>();
+        for (CourseRecord course : version.asList()) {
+            numberCounts.merge(course.courseNumber().toLowerCase(), 1, Integer::sum);
+            titleCounts.merge(course.descriptiveTitle().toLowerCase(), 1, Integer::sum);
+        }
+        for (int i = 0; i < version.size() && found < picked.length; i++) {
+            CourseRecord course = version.get(i);
+            if (numberCounts.get(course.courseNumber().toLowerCase()) == 1
+                    && titleCounts.get(course.descriptiveTitle().toLowerCase()) == 1)
+                picked[found++] = i;
+        }
+        if (found < picked.length) throw new IllegalStateException("Too few distinct courses in " + editor.studentId());
+        double[] grades = {50, 50, 0, 0};
+        for (int k = 0; k < 4; k++) editor.set(picked[k], editor.get(picked[k]).withGrades(grades[k]));
+        return picked;
+    }
+
+    /**
+     * This method runs the readers, writers and shifters for the given time and checks the results.
+     *
+     * @return true if no invariant was broken
+     */
+    private boolean run(int readerCount, int writerCount, int seconds, long seed) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < readerCount; i++) threads.add(new Thread(reader(seeds.split()), "reader-" + i));
+        for (int i = 0; i < writerCount; i++) threads.add(new Thread(writer(seeds.split()), "writer-" + i));
+        for (int s = 0; s < ids.size(); s++) threads.add(new Thread(shifter(s), "shifter-" + s));
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) thread.join();
+        long elapsed = System.nanoTime() - start;
+
+        for (int s = 0; s < ids.size(); s++) {
+            int student = s;
+            double[] last = observe(student, repository.current(ids.get(s)));
+            check(student, last);
+            if (last[2] != increments.get(s))
+                violation(ids.get(s) + ": C is " + last[2] + " after " + increments.get(s) + " increments");
+            if (last[3] != shifts.get(s))
+                violation(ids.get(s) + ": D is " + last[3] + " after " + shifts.get(s) + " shifts");
+        }
+
+        long totalIncrements = 0, totalShifts = 0;
+        for (int s = 0; s < ids.size(); s++) {
+            totalIncrements += increments.get(s);
+            totalShifts += shifts.get(s);
+        }
+        System.out.printf("%d students, %d readers, %d writers, %.1f s: %,d reads, %,d increments, %,d shifts%n",
+                ids.size(), readerCount, writerCount, elapsed / 1e9, reads.get(), totalIncrements, totalShifts);
+        System.out.printf("Versions published: %,d%n", Metrics.counter("repository versions published").sum());
+        System.out.println(violations.get() == 0 ? "PASSED" : "FAILED: " + violations.get() + " violations");
+        return violations.get() == 0;
+    }
+
+    private Runnable reader(SplittableRandom random) {
+        return () -> {
+            double[] lastC = new double[ids.size()];
+            long[] lastVersion = new long[ids.size()];
+            while (running.get()) {
+                int s = random.nextInt(ids.size());
+                CurriculumVersion version = repository.current(ids.get(s));
+                double[] seen = random.nextBoolean() ? observe(s, version) : observe(s, version.asList(), version.totals);
+                check(s, seen);
+                if (seen[2] < lastC[s]) violation(ids.get(s) + ": C went back from " + lastC[s] + " to " + seen[2]);
+                if (version.number < lastVersion[s])
+                    violation(ids.get(s) + ": version went back from " + lastVersion[s] + " to " + version.number);
+                lastC[s] = seen[2];
+                lastVersion[s] = version.number;
+                // A version must read the same however many versions were published since
+                if (random.nextInt(16) == 0) {
+                    Thread.yield();
+                    if (!Arrays.equals(seen, observe(s, version.asList(), version.totals)))
+                        violation(ids.get(s) + ": version " + version.number + " changed while held");
+                }
+                reads.incrementAndGet();
+            }
+        };
+    }
+
+    private Runnable writer(SplittableRandom random) {
+        return () -> {
+            while (running.get()) {
+                int s = random.nextInt(ids.size());
+                int[] at = positions.get(s);
+                if (random.nextBoolean()) {
+                    int x = random.nextInt(101);
+                    repository.update(ids.get(s), editor -> {
+                        editor.set(at[0], editor.get(at[0]).withGrades(x));
+                        editor.set(at[1], editor.get(at[1]).withGrades(100 - x));
+                        return null;
+                    });
+                } else {
+                    boolean incremented = repository.update(ids.get(s), editor -> {
+                        CourseRecord c = editor.get(at[2]);
+                        if (hundredths(c) == Short.MAX_VALUE) return false;
+                        editor.set(at[2], c.withGrades((hundredths(c) + 1) / (double) PackedCourse.SCALE));
+                        return true;
+                    });
+                    if (incremented) increments.incrementAndGet(s);
+                }
+            }
+        };
+    }
+
+    private Runnable shifter(int s) {
+        CourseRecord d = repository.current(ids.get(s)).get(positions.get(s)[3]);
+        return () -> {
+            for (int n = 1; n <= MAX_SHIFTS && running.get(); n++) {
+                List<Course> shifterCourses = new ArrayList<>();
+                shifterCourses.add(new Course(d.courseNumber(), d.descriptiveTitle(), (byte) 1, (byte) 1, 3,
+                        n / (double) PackedCourse.SCALE));
+                for (int i = 0; i < SHIFT_SIZE; i++)
+                    shifterCourses.add(new Course("STRESS " + n + "-" + i, SHIFT_TITLE + n + " course " + i,
+                            (byte) 1, (byte) 1, 3, 90));
+                repository.shift(ids.get(s), shifterCourses);
+                shifts.incrementAndGet(s);
+            }
+        };
+    }
+
+    /**
+     * This method reads the values the invariants are about from the positions of A, B, C and D:
+     * their grades in hundredths, the number of shifted courses, the size of the curriculum and the course count
+     * of its totals.
+     */
+    private double[] observe(int s, CurriculumVersion version) {
+        int[] at = positions.get(s);
+        double[] seen = new double[7];
+        for (int k = 0; k < 4; k++) seen[k] = hundredths(version.get(at[k]));
+        // Shifted courses are only ever appended
+        seen[4] = version.size() - baseSizes.get(s);
+        seen[5] = version.size();
+        seen[6] = version.totals.courses;
+        return seen;
+    }
+
+    /**
+     * This method reads the same values by walking every course of a version.
+     */
+    private double[] observe(int s, List<CourseRecord> courses, CurriculumVersion.Totals totals) {
+        int[] at = positions.get(s);
+        double[] seen = new double[7];
+        int size = courses.size();
+        for (int i = 0; i < size; i++) {
+            CourseRecord course = courses.get(i);
+            if (course.descriptiveTitle().startsWith(SHIFT_TITLE)) seen[4]++;
+            for (int k = 0; k < 4; k++)
+                if (i == at[k]) seen[k] = hundredths(course);
+        }
+        seen[5] = size;
+        seen[6] = totals.courses;
+        return seen;
+    }
+
+    private void check(int s, double[] seen) {
+        String id = ids.get(s);
+        if (seen[0] + seen[1] != 100 * PackedCourse.SCALE) violation(id + ": A + B = " + (seen[0] + seen[1]) + " hundredths");
+        if (seen[4] != seen[3] * SHIFT_SIZE) violation(id + ": " + seen[4] + " shifted courses while D is " + seen[3]);
+        if (seen[5] != baseSizes.get(s) + seen[4]) violation(id + ": " + seen[5] + " courses with " + seen[4] + " shifted");
+        if (seen[6] != seen[5]) violation(id + ": the totals count " + seen[6] + " of " + seen[5] + " courses");
+    }
+
+    private static int hundredths(CourseRecord course) {
+        return PackedCourse.gradeHundredths(course.packed());
+    }
+
+    private void violation(String message) {
+        if (violations.incrementAndGet() <= 20) System.out.println("VIOLATION " + message);
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Runs every CourseAdministration operation over and over against generated curricula of
+ * growing size, and reports the latency percentiles of each operation and the growth of the heap.
+ * <p>
+ * For every size, a curriculum and a shifter with a tenth as many courses are written by
+ * TranscriptGenerator. Each round then parses the curriculum and runs, on the fresh list: the
+ * term listings with and without grades, the failed, ungraded and elective lists, both sort
+ * orders, course searches, grade and course edits, the shift, and the save. The operations run
+ * in batch mode with their console output discarded.
+ * <p>
+ * The heap is measured after a full GC once the first round is done (when the derived state of
+ * the last list, such as the course index, is held by CourseAdministration) and again after the
+ * last round. Growth between the two that keeps increasing with the number of rounds points at a leak.
+ * <p>
+ * USAGE: java SoakHarness [--sizes 1000,10000,100000] [--rounds 20] [--seed 42]
+ */
+public class SoakHarness {
+    private static final int SEARCHES_PER_ROUND = 1000;
+    private static final int EDITS_PER_ROUND = 1000;
+
+    private final PrintStream report;
+    private final Map<String, long[]> latencies = new LinkedHashMap<>();
+    private final int rounds;
+    private int round;
+
+    private SoakHarness(PrintStream report, int rounds) {
+        this.report = report;
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1_000, 10_000, 100_000};
+        int rounds = 20;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--rounds" -> rounds = Math.max(2, Integer.parseInt(args[i + 1]));
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        // The reports print through a renderer bound to System.out when CourseAdministration is loaded
+        PrintStream report = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        CourseAdministration.interactive = false;
+
+        Path directory = Files.createTempDirectory("curriculum-soak");
+        try {
+            for (int size : sizes) {
+                Path curriculumFile = directory.resolve("curriculum_" + size + ".csv");
+                Path shifterFile = directory.resolve("shifter_" + size + ".csv");
+                TranscriptGenerator generator = new TranscriptGenerator(seed);
+                generator.writeCurriculum(curriculumFile, size);
+                generator.writeShifter(shifterFile, Math.max(1, size / 10));
+
+                new SoakHarness(report, rounds).run(size, curriculumFile, shifterFile, new SplittableRandom(seed));
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * This method runs all rounds against one curriculum and prints the results.
+     */
+    private void run(int size, Path curriculumFile, Path shifterFile, SplittableRandom random) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapAfterFirst = 0;
+        long start = System.nanoTime();
+        for (round = 0; round < rounds; round++) {
+            runRound(curriculumFile, shifterFile, random);
+            if (round == 0) heapAfterFirst = usedHeapAfterGc(memory);
+        }
+        long elapsed = System.nanoTime() - start;
+        long heapAfterLast = usedHeapAfterGc(memory);
+
+        report.printf("%n%,d courses, %d rounds in %.1f s%n", size, rounds, elapsed / 1e9);
+        report.printf("%-24s %12s %12s %12s %12s%n", "OPERATION", "P50 (ms)", "P90 (ms)", "P99 (ms)", "MAX (ms)");
+        for (Map.Entry<String, long[]> operation : latencies.entrySet()) {
+            long[] samples = operation.getValue().clone();
+            Arrays.sort(samples);
+            report.printf("%-24s %12.3f %12.3f %12.3f %12.3f%n", operation.getKey(), percentile(samples, 50),
+                    percentile(samples, 90), percentile(samples, 99), samples[samples.length - 1] / 1e6);
+        }
+        report.printf("Heap after GC: %,d KB after round 1, %,d KB after round %d (%+,d KB), committed %,d KB%n",
+                heapAfterFirst / 1024, heapAfterLast / 1024, rounds, (heapAfterLast - heapAfterFirst) / 1024,
+                memory.getHeapMemoryUsage().getCommitted() / 1024);
+    }
+
+    /**
+     * This method runs every operation once against a freshly parsed curriculum.
+     */
+    private void runRound(Path curriculumFile, Path shifterFile, SplittableRandom random) {
+        long start = System.nanoTime();
+        ArrayList<Course> courseList = CourseAdministration.parseCSV(curriculumFile.toString());
+        record("parseCSV", start);
+
+        time("reclassifyElectives", () -> CourseAdministration.reclassifyElectives(courseList));
+        time("showCourses", () -> CourseAdministration.showCourses(courseList, false));
+        time("showCourses (grades)", () -> CourseAdministration.showCourses(courseList, true));
+        time("showFailedCourses", () -> CourseAdministration.showFailedCourses(courseList));
+        time("showCoursesWithoutGPA", () -> CourseAdministration.showCoursesWithoutGPA(courseList));
+        time("showElectiveCourses", () -> CourseAdministration.showElectiveCourses(courseList));
+        time("sortCoursesByGPA (asc)", () -> CourseAdministration.sortCoursesByGPA(courseList, 1));
+        time("sortCoursesByGPA (desc)", () -> CourseAdministration.sortCoursesByGPA(courseList, 2));
+
+        String[] keys = new String[SEARCHES_PER_ROUND];
+        for (int i = 0; i < keys.length; i++) keys[i] = courseList.get(random.nextInt(courseList.size())).getCourseNumber();
+        time("searchCourseList x" + SEARCHES_PER_ROUND, () -> {
+            for (String key : keys) CourseAdministration.searchCourseList(courseList, key);
+        });
+        time("set grade x" + EDITS_PER_ROUND, () -> {
+            for (int i = 0; i < EDITS_PER_ROUND; i++)
+                courseList.get(random.nextInt(courseList.size())).setGrades(60 + random.nextInt(40));
+        });
+        time("edit course x" + EDITS_PER_ROUND, () -> {
+            for (int i = 0; i < EDITS_PER_ROUND; i++) {
+                Course course = courseList.get(random.nextInt(courseList.size()));
+                course.setCourseNumber(course.getCourseNumber() + "E");
+                course.setDescriptiveTitle(course.getDescriptiveTitle() + " (edited)");
+            }
+        });
+        time("shiftCourse", () -> CourseAdministration.shiftCourse(courseList, shifterFile.toString()));
+        Path copyFile = curriculumFile.resolveSibling("copy_" + curriculumFile.getFileName());
+        time("saveChanges", () -> CourseAdministration.saveChanges(courseList, copyFile, false));
+    }
+
+    private void time(String operation, Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        record(operation, start);
+    }
+
+    private void record(String operation, long start) {
+        latencies.computeIfAbsent(operation, name -> new long[rounds])[round] = System.nanoTime() - start;
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
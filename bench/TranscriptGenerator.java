@@ -0,0 +1,154 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes curricula and shifter files of any size in the six-column format of
+ * CurriculumData_Grades.csv (year, term, course number, descriptive title, units, grade).
+ * <p>
+ * The same seed always gives the same files. Besides ordinary rows, the files contain the cases
+ * the sample data has too few of: <br>
+ * - courses without a grade (an empty last column) and failed grades <br>
+ * - titles with commas or quotes, written as quoted fields <br>
+ * - short-term (term 3) rows and fifth-year rows <br>
+ * - elective rows numbered "CSE", like the sample, so course numbers repeat <br>
+ * - titles shared by several courses, and shifter titles that differ from the curriculum only in case
+ * <p>
+ * USAGE: java TranscriptGenerator curriculum.csv rows [shifter.csv shifterRows] [--seed n]
+ */
+public class TranscriptGenerator {
+    static final String HEADER =
+            "year,\"term(1=first term, 2=second term, 3=short term)\",course number,descriptive title,units,grade";
+
+    private static final String[] PREFIXES = {"CS", "IT", "GMATH", "GSELF", "GHIST", "GART", "FIT", "CFE", "NSTP", "GENVI"};
+    private static final String[] SUBJECTS = {"Computing", "Programming", "Data Structures", "Algorithms",
+            "Discrete Mathematics", "Networks", "Operating Systems", "Databases", "Software Engineering",
+            "Human Computer Interaction", "Automata Theory", "Philippine History", "Art Appreciation",
+            "Ethics", "Physical Activity", "Christian Faith", "Statistics", "Calculus", "Graphics", "Security"};
+    private static final String[] QUALIFIERS = {"Introduction to", "Advanced", "Principles of", "Topics in",
+            "Fundamentals of", "Applied", "Readings in", "Seminar in"};
+    private static final double[] UNITS = {1, 2, 3, 3, 3, 3, 5, 1.5};
+
+    private final SplittableRandom random;
+    private final List<String> titles = new ArrayList<>();
+
+    /**
+     * Constructor with parameters.
+     * @param seed the seed; the same seed gives the same files
+     */
+    TranscriptGenerator(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = 42;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed") && i + 1 < args.length) seed = Long.parseLong(args[++i]);
+            else files.add(args[i]);
+        }
+        if (files.size() != 2 && files.size() != 4) {
+            System.out.println("USAGE: java TranscriptGenerator curriculum.csv rows [shifter.csv shifterRows] [--seed n]");
+            return;
+        }
+        TranscriptGenerator generator = new TranscriptGenerator(seed);
+        generator.writeCurriculum(Path.of(files.get(0)), Integer.parseInt(files.get(1)));
+        if (files.size() == 4) generator.writeShifter(Path.of(files.get(2)), Integer.parseInt(files.get(3)));
+    }
+
+    /**
+     * This method writes a curriculum.
+     * <p>
+     * The rows are spread over four years (and a few fifth-year rows), with about one row in ten
+     * in the short term. About a third of the courses have no grade yet and about one graded
+     * course in eight is failed.
+     *
+     * @param csvFile the file to write
+     * @param rows    the number of courses
+     * @throws IOException if the file cannot be written
+     */
+    void writeCurriculum(Path csvFile, int rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int row = 0; row < rows; row++) {
+                int year = (random.nextInt(50) == 0) ? 5 : 1 + (int) ((long) row * 4 / Math.max(rows, 1));
+                int term = (random.nextInt(10) == 0) ? 3 : 1 + random.nextInt(2);
+                String courseNumber = (random.nextInt(40) == 0) ? "CSE"
+                        : PREFIXES[random.nextInt(PREFIXES.length)] + " " + (100 + row);
+                String grade = (random.nextInt(3) == 0) ? "" : grade();
+                writeRow(writer, year, term, courseNumber, title(), UNITS[random.nextInt(UNITS.length)], grade);
+            }
+        }
+    }
+
+    /**
+     * This method writes the courses of a shifter. Each row is the year and term of a shifter's
+     * course; about six in ten carry a title of the curriculum written last, sometimes in another
+     * case, and the rest have titles of their own. Every shifter course has a grade.
+     *
+     * @param csvFile the file to write
+     * @param rows    the number of courses
+     * @throws IOException if the file cannot be written
+     */
+    void writeShifter(Path csvFile, int rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int row = 0; row < rows; row++) {
+                String title;
+                if (!titles.isEmpty() && random.nextInt(10) < 6) {
+                    title = titles.get(random.nextInt(titles.size()));
+                    if (random.nextInt(5) == 0) title = title.toUpperCase();
+                } else {
+                    title = "Shifter " + freshTitle();
+                }
+                writeRow(writer, 1 + random.nextInt(2), 1 + random.nextInt(2), "IT " + (1000 + row),
+                        title, UNITS[random.nextInt(UNITS.length)], grade());
+            }
+        }
+    }
+
+    /**
+     * This method returns a title: usually a new one, sometimes one already used.
+     */
+    private String title() {
+        if (!titles.isEmpty() && random.nextInt(20) == 0) return titles.get(random.nextInt(titles.size()));
+        String title = freshTitle();
+        titles.add(title);
+        return title;
+    }
+
+    private String freshTitle() {
+        String title = QUALIFIERS[random.nextInt(QUALIFIERS.length)] + " " + SUBJECTS[random.nextInt(SUBJECTS.length)]
+                + " " + (1 + random.nextInt(1_000_000));
+        switch (random.nextInt(30)) {
+            case 0 -> title += ", Laboratory";
+            case 1 -> title += " (\"Capstone\")";
+            default -> {
+            }
+        }
+        return title;
+    }
+
+    private String grade() {
+        int grade = (random.nextInt(8) == 0) ? 60 + random.nextInt(15) : 75 + random.nextInt(25);
+        return (random.nextInt(4) == 0) ? grade + ".5" : String.valueOf(grade);
+    }
+
+    private static void writeRow(BufferedWriter writer, int year, int term, String courseNumber, String title,
+                                 double units, String grade) throws IOException {
+        writer.write(year + "," + term + "," + field(courseNumber) + "," + field(title) + "," + units + "," + grade);
+        writer.newLine();
+    }
+
+    private static String field(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The write path of saveChangesToFile: the CSV and TXT copies written by CourseExporter, with and
+ * without the console echo (sent to a stream that discards it). Forcing both files to disk is
+ * part of the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExportBenchmark {
+    @Param({"76", "10000", "1000000", "2000000"})
+    public int rows;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void buildCurriculum() {
+        workload = Workload.create(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws Exception {
+        workload.deleteFiles();
+    }
+
+    @Benchmark
+    public void export() throws Exception {
+        workload.export();
+    }
+
+    @Benchmark
+    public void exportWithEcho() throws Exception {
+        workload.exportWithEcho();
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formatting every course of a curriculum as a report row: Course.toString, which makes a String
+ * per course, and CourseFormat appending into one reused builder as the reports do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FormatBenchmark {
+    @Param({"76", "10000", "1000000", "2000000"})
+    public int rows;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void buildCurriculum() {
+        workload = Workload.create(rows);
+    }
+
+    @Benchmark
+    public void courseToString(Blackhole blackhole) {
+        workload.courseToString(blackhole);
+    }
+
+    @Benchmark
+    public void appendCourse(Blackhole blackhole) {
+        workload.appendCourse(blackhole);
+    }
+}
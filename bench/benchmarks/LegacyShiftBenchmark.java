@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The whole shift as the original shiftCourse and uncarriedCourses made it, with nested loops over
+ * the shifter and the curriculum, to compare with ShiftBenchmark.shiftAndAddUncarried. The loops
+ * cost O(curriculum x shifter) per pass, hours per call at a million rows, so only the sizes up
+ * to 10000 rows are measured. The shift changes both lists, so fresh copies are made before
+ * every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LegacyShiftBenchmark {
+    @Param({"76", "10000"})
+    public int rows;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void buildCurriculum() {
+        workload = Workload.create(rows);
+        workload.buildShifter();
+    }
+
+    @Setup(Level.Invocation)
+    public void copyCurriculum() {
+        workload.copyCurriculum();
+    }
+
+    @Benchmark
+    public int legacyShiftAndAddUncarried() {
+        return workload.legacyShiftAndAddUncarried();
+    }
+}
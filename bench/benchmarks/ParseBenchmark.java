@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a curriculum CSV file: parseCSV, the original split and parseDouble parser it replaced,
+ * and the binary snapshot that is read at startup instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParseBenchmark {
+    @Param({"76", "10000", "1000000", "2000000"})
+    public int rows;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void writeCsv() throws Exception {
+        workload = Workload.create(rows);
+        workload.writeCsv();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCsv() throws Exception {
+        workload.deleteFiles();
+    }
+
+    @Benchmark
+    public Object parseCSV() {
+        return workload.parseCSV();
+    }
+
+    @Benchmark
+    public Object legacyParseCSV() {
+        return workload.legacyParseCSV();
+    }
+
+    @Benchmark
+    public Object loadSnapshot() {
+        return workload.loadSnapshot();
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up a course by number with searchCourseList, for numbers that exist and numbers that
+ * do not, against the original linear scan, and the completions and title matches of
+ * CourseSearch. The numbers are typed in lower case, as the menu allows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    @Param({"76", "10000", "1000000", "2000000"})
+    public int rows;
+
+    private Workload workload;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildCurriculum() {
+        workload = Workload.create(rows);
+    }
+
+    @Benchmark
+    public Object searchFound() {
+        return workload.searchFound(next++);
+    }
+
+    @Benchmark
+    public Object searchMissing() {
+        return workload.searchMissing(next++);
+    }
+
+    @Benchmark
+    public Object legacySearchFound() {
+        return workload.legacySearchFound(next++);
+    }
+
+    @Benchmark
+    public Object legacySearchMissing() {
+        return workload.legacySearchMissing(next++);
+    }
+
+    @Benchmark
+    public Object completeCourseNumber() {
+        return workload.completeCourseNumber(next++);
+    }
+
+    @Benchmark
+    public Object searchTitle() {
+        return workload.searchTitle(next++);
+    }
+}
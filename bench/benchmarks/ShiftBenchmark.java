@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Shifting into a curriculum: matching the shifter's courses by title, and the whole shift as
+ * shiftCourse and uncarriedCourses make it (carry the grades and numbers over, add the uncarried
+ * courses). The whole shift changes the curriculum, so it is put back before every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShiftBenchmark {
+    @Param({"76", "10000", "1000000", "2000000"})
+    public int rows;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void buildCurriculum() {
+        workload = Workload.create(rows);
+        workload.buildShifter();
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreCurriculum() {
+        workload.restoreCurriculum();
+    }
+
+    @Benchmark
+    public Object match() {
+        return workload.matchShifter();
+    }
+
+    @Benchmark
+    public int shiftAndAddUncarried() {
+        return workload.shiftAndAddUncarried();
+    }
+}
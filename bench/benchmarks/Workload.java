@@ -0,0 +1,143 @@
+package benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The operations of the curriculum program that the benchmarks measure.
+ * <p>
+ * JMH does not accept benchmarks in the default package, and classes in a named package cannot
+ * refer to the program's classes, which are all in the default package. The benchmarks therefore
+ * call the program through this interface, implemented by CurriculumWorkload in the default
+ * package. The implementation is loaded once per trial; the calls are monomorphic interface
+ * calls, which the JIT inlines.
+ */
+public interface Workload {
+    /**
+     * This method creates a workload with a curriculum of the given number of courses.
+     *
+     * @param rows the number of courses
+     * @return the workload
+     */
+    static Workload create(int rows) {
+        try {
+            Workload workload = (Workload) Class.forName("CurriculumWorkload").getDeclaredConstructor().newInstance();
+            workload.buildCurriculum(rows);
+            return workload;
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("CurriculumWorkload is not on the class path", exception);
+        }
+    }
+
+    void buildCurriculum(int rows);
+
+    /**
+     * This method writes the curriculum to a temporary CSV file, together with its snapshot.
+     */
+    void writeCsv() throws Exception;
+
+    /**
+     * This method deletes the files written by writeCsv and export.
+     */
+    void deleteFiles() throws Exception;
+
+    Object parseCSV();
+
+    /**
+     * This method parses the CSV file as the original program did (see LegacyCurriculum).
+     */
+    Object legacyParseCSV();
+
+    Object loadSnapshot();
+
+    /**
+     * This method looks up the i-th of 1024 course numbers that exist, typed in lower case.
+     */
+    Object searchFound(int i);
+
+    /**
+     * This method looks up the i-th of 1024 course numbers that do not exist.
+     */
+    Object searchMissing(int i);
+
+    /**
+     * This method looks up the same course numbers as searchFound with the original linear scan.
+     */
+    Object legacySearchFound(int i);
+
+    /**
+     * This method looks up the same course numbers as searchMissing with the original linear scan.
+     */
+    Object legacySearchMissing(int i);
+
+    /**
+     * This method completes the i-th of 1024 course number prefixes (the first four characters
+     * of a course number that exists, in lower case), returning up to 10 courses.
+     */
+    Object completeCourseNumber(int i);
+
+    /**
+     * This method finds up to 10 courses whose title contains the i-th of 1024 texts, six
+     * characters from the middle of a title that exists.
+     */
+    Object searchTitle(int i);
+
+    /**
+     * This method builds a shifter with a tenth as many courses as the curriculum, half of them
+     * matching a curriculum course by title.
+     */
+    void buildShifter();
+
+    /**
+     * This method undoes the last shift: it removes the added courses, gives the matched courses
+     * their numbers and grades back and makes fresh copies of the shifter's courses.
+     */
+    void restoreCurriculum();
+
+    Object matchShifter();
+
+    /**
+     * This method finds the ungraded electives of year 4, term 1 with the bitmaps of CourseQuery.
+     */
+    Object queryConjunction();
+
+    /**
+     * This method finds the graded courses of term 1 with a grade of at least 90 with CourseQuery,
+     * which tests the grade on the packed values of the rows left by the bitmaps.
+     */
+    Object queryComparison();
+
+    /**
+     * This method finds the same courses as queryConjunction by checking every course of the list.
+     */
+    Object scanConjunction();
+
+    int shiftAndAddUncarried();
+
+    /**
+     * This method makes fresh copies of the curriculum and the shifter for legacyShiftAndAddUncarried,
+     * which changes both. buildShifter must have been called.
+     */
+    void copyCurriculum();
+
+    /**
+     * This method shifts the copies of copyCurriculum with the original nested loops.
+     */
+    int legacyShiftAndAddUncarried();
+
+    void sortCoursesByGPA(Blackhole blackhole);
+
+    /**
+     * This method sorts the graded courses as the original sortCoursesByGPA did: a copy, sorted and reversed.
+     */
+    void legacySortCoursesByGPA(Blackhole blackhole);
+
+    Object buildRanking();
+
+    void courseToString(Blackhole blackhole);
+
+    void appendCourse(Blackhole blackhole);
+
+    void export() throws Exception;
+
+    void exportWithEcho() throws Exception;
+}
@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the operations of CourseAdministration from commands instead of the menu, so the program
+ * can be used in scripts and pipelines. Nothing waits for a key press or asks for confirmation.
+ * <p>
+ * USAGE: <br>
+ * java CourseAdministration --batch [--script file] [--dir directoryOrGlob] [--rules file] [command ...] <br>
+ * Every command argument is one command. A script file holds one command per line; blank lines
+ * and lines starting with # are ignored. The commands of the script run before the ones given
+ * as arguments. Words are separated by spaces; a word that contains spaces can be put in
+ * double quotes. --rules reads the elective rules from the given file instead of electives.rules.
+ * <p>
+ * COMMANDS: <br>
+ * show [--graded] - the courses of each term, with grades and the sorted grades if --graded <br>
+ * failed - the failed courses <br>
+ * ungraded - the courses without grades <br>
+ * electives - the elective courses <br>
+ * search TEXT - the courses whose number starts with TEXT or whose title contains it, best match first <br>
+ * reclassify [FILE] - marks the electives again with the rules of FILE, or of electives.rules <br>
+ * query CONDITIONS - the courses matching every condition, for example query failed elective year=3 term=2
+ * (see CourseQuery) <br>
+ * sort asc|desc - the graded courses sorted by grade <br>
+ * set-grade COURSE NUMBER GRADE - sets a grade, for example set-grade CS 111 92 <br>
+ * edit "COURSE NUMBER" "NEW COURSE NUMBER" "NEW TITLE" - changes a course number and title <br>
+ * shift FILE - shifts the courses and grades of a shifter CSV file <br>
+ * save - saves the changes <br>
+ * metrics - the counts, latencies and allocation of the operations run so far
+ * <p>
+ * Without --dir the commands run against CurriculumData_Grades.csv, and save appends to its
+ * change journal. With --dir they run once for every transcript file found, and save writes
+ * STUDENT_Copy.csv and STUDENT_Copy.txt next to each transcript.
+ */
+class BatchCommands {
+    private static final String CURRICULUM_FILE = "CurriculumData_Grades.csv";
+    static final String COPY_SUFFIX = "_Copy";
+    private static final int SEARCH_RESULTS = 20;
+
+    private BatchCommands() {
+    }
+
+    /**
+     * This method runs the batch mode.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Reads the options and collects the commands from the script file and the arguments <br>
+     * 2. Loads the curriculum, or every transcript of the directory <br>
+     * 3. Runs all commands against each list of courses, in order
+     *
+     * @param args the arguments that follow --batch
+     * @return the number of commands and files that failed
+     */
+    static int run(String[] args) {
+        List<String> commands = new ArrayList<>();
+        String directoryOrGlob = null;
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("--"); i += 2) {
+                if (i + 1 == args.length) {
+                    System.out.println("Missing value for " + args[i] + ".");
+                    return 1;
+                }
+                switch (args[i]) {
+                    case "--script" -> commands.addAll(readScript(Path.of(args[i + 1])));
+                    case "--dir" -> directoryOrGlob = args[i + 1];
+                    case "--rules" -> {
+                        Path ruleFile = Path.of(args[i + 1]);
+                        if (!Files.isRegularFile(ruleFile)) {
+                            System.out.println("File not found: " + ruleFile);
+                            return 1;
+                        }
+                        if (!CourseAdministration.useElectiveRules(ruleFile)) return 1;
+                    }
+                    default -> {
+                        System.out.println("Unknown option: " + args[i]);
+                        return 1;
+                    }
+                }
+            }
+        } catch (IOException ioException) {
+            System.out.println("I/O error: " + ioException);
+            return 1;
+        }
+        commands.addAll(Arrays.asList(args).subList(i, args.length));
+        if (commands.isEmpty()) {
+            System.out.println("No commands given.");
+            return 1;
+        }
+
+        if (directoryOrGlob == null) {
+            ArrayList<Course> courseList = CourseAdministration.openCurriculum(CURRICULUM_FILE);
+            return runCommands(commands, courseList, copyFileOf(Path.of(CURRICULUM_FILE)));
+        }
+        return runDirectory(commands, directoryOrGlob);
+    }
+
+    /**
+     * This method runs the commands once for every transcript matched by a directory or glob.
+     * Copies written by an earlier save (files ending in _Copy.csv) are not transcripts and are left out.
+     *
+     * @param commands        the commands to run
+     * @param directoryOrGlob the directory of transcripts, or a glob such as "transcripts/*.csv"
+     * @return the number of commands and files that failed
+     */
+    private static int runDirectory(List<String> commands, String directoryOrGlob) {
+        List<Path> files;
+        try {
+            files = TranscriptIngest.findFiles(directoryOrGlob);
+        } catch (IOException ioException) {
+            System.out.println("I/O error: " + ioException);
+            return 1;
+        }
+        files.removeIf(file -> TranscriptIngest.studentId(file).endsWith(COPY_SUFFIX));
+
+        TranscriptIngest.Summary summary = TranscriptIngest.ingest(files);
+        summary.print();
+        int failures = 0;
+        for (TranscriptIngest.FileResult result : summary.results) {
+            if (result.failure != null) {
+                failures++;
+                continue;
+            }
+            System.out.println("\n== " + TranscriptIngest.studentId(result.file) + " ==");
+            failures += runCommands(commands, result.courses, copyFileOf(result.file));
+        }
+        return failures;
+    }
+
+    /**
+     * This method runs the commands, in order, against one list of courses.
+     * A command that fails is reported and the remaining commands still run.
+     *
+     * @param commands   the commands to run
+     * @param courseList the courses the commands work on
+     * @param copyFile   the CSV file that save writes when the list has no change journal
+     * @return the number of commands that failed
+     */
+    static int runCommands(List<String> commands, ArrayList<Course> courseList, Path copyFile) {
+        int failures = 0;
+        for (String command : commands) {
+            System.out.println("> " + command);
+            String error = runCommand(tokenize(command), courseList, copyFile);
+            if (error != null) {
+                System.out.println("Error: " + error);
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * This method runs a single command.
+     *
+     * @param words      the words of the command
+     * @param courseList the courses the command works on
+     * @param copyFile   the CSV file that save writes when the list has no change journal
+     * @return null if the command succeeded, otherwise the reason it failed
+     */
+    private static String runCommand(List<String> words, ArrayList<Course> courseList, Path copyFile) {
+        if (words.isEmpty()) return "empty command";
+        int arguments = words.size() - 1;
+        switch (words.get(0).toLowerCase()) {
+            case "show" -> {
+                boolean hasGrades = arguments == 1 && words.get(1).equals("--graded");
+                if (arguments > 1 || (arguments == 1 && !hasGrades)) return "usage: show [--graded]";
+                CourseAdministration.showCourses(courseList, hasGrades);
+            }
+            case "failed" -> CourseAdministration.showFailedCourses(courseList);
+            case "ungraded" -> CourseAdministration.showCoursesWithoutGPA(courseList);
+            case "electives" -> CourseAdministration.showElectiveCourses(courseList);
+            case "search" -> {
+                if (arguments == 0) return "usage: search TEXT";
+                String text = String.join(" ", words.subList(1, words.size()));
+                int found = CourseAdministration.showSearchResults(courseList, text, SEARCH_RESULTS);
+                System.out.println(found + " courses found for \"" + text + "\".");
+            }
+            case "reclassify" -> {
+                if (arguments > 1) return "usage: reclassify [FILE]";
+                Path ruleFile = Path.of((arguments == 1) ? words.get(1) : ElectiveRules.CONFIG_FILE);
+                if (arguments == 1 && !Files.isRegularFile(ruleFile)) return "file not found: " + words.get(1);
+                if (!CourseAdministration.useElectiveRules(ruleFile)) return "the rules were not changed";
+                System.out.println(CourseAdministration.reclassifyElectives(courseList) + " courses were reclassified.");
+            }
+            case "query" -> {
+                if (arguments == 0) return "usage: query CONDITIONS";
+                try {
+                    CourseAdministration.showQueriedCourses(courseList, String.join(" ", words.subList(1, words.size())));
+                } catch (IllegalArgumentException exception) {
+                    return "invalid query: " + exception.getMessage();
+                }
+            }
+            case "sort" -> {
+                String order = (arguments == 1) ? words.get(1).toLowerCase() : "";
+                if (!order.equals("asc") && !order.equals("desc")) return "usage: sort asc|desc";
+                CourseAdministration.sortCoursesByGPA(courseList, order.equals("asc") ? 1 : 2);
+            }
+            case "set-grade" -> {
+                if (arguments < 2) return "usage: set-grade COURSE NUMBER GRADE";
+                String courseNumber = String.join(" ", words.subList(1, words.size() - 1));
+                String grade = words.get(words.size() - 1);
+                Course course = CourseAdministration.searchCourseList(courseList, courseNumber);
+                if (course == null) return "no course numbered \"" + courseNumber + "\"";
+                try {
+                    course.setGrades(Double.parseDouble(grade));
+                } catch (IllegalArgumentException exception) {
+                    return "invalid grade \"" + grade + "\"";
+                }
+                System.out.println(course);
+            }
+            case "edit" -> {
+                if (arguments != 3) return "usage: edit \"COURSE NUMBER\" \"NEW COURSE NUMBER\" \"NEW TITLE\"";
+                Course course = CourseAdministration.searchCourseList(courseList, words.get(1));
+                if (course == null) return "no course numbered \"" + words.get(1) + "\"";
+                course.setCourseNumber(words.get(2));
+                course.setDescriptiveTitle(words.get(3));
+                System.out.println(course);
+            }
+            case "shift" -> {
+                if (arguments != 1) return "usage: shift FILE";
+                if (!Files.isRegularFile(Path.of(words.get(1)))) return "file not found: " + words.get(1);
+                CourseAdministration.shiftCourse(courseList, words.get(1));
+            }
+            case "save" -> {
+                if (arguments != 0) return "usage: save";
+                if (!CourseAdministration.saveChanges(courseList, copyFile, false)) return "the changes were not saved";
+            }
+            case "metrics" -> {
+                if (arguments != 0) return "usage: metrics";
+                System.out.print(Metrics.dump());
+            }
+            default -> {
+                return "unknown command \"" + words.get(0) + "\"";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method reads the commands of a script file, one per line.
+     * Blank lines and lines starting with # are skipped.
+     *
+     * @param scriptFile the script file
+     * @return the commands in file order
+     * @throws IOException if the file cannot be read
+     */
+    static List<String> readScript(Path scriptFile) throws IOException {
+        List<String> commands = new ArrayList<>();
+        for (String line : Files.readAllLines(scriptFile, StandardCharsets.UTF_8)) {
+            String command = line.strip();
+            if (!command.isEmpty() && !command.startsWith("#")) commands.add(command);
+        }
+        return commands;
+    }
+
+    /**
+     * This method splits a command into words at spaces and tabs. Text in double quotes is one
+     * word, spaces included, and "" inside quotes stands for a quote character.
+     *
+     * @param command the command line
+     * @return the words of the command
+     */
+    static List<String> tokenize(String command) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false, quoted = false;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    word.append(c);
+                } else if (i + 1 < command.length() && command.charAt(i + 1) == '"') {
+                    word.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = inWord = true;
+            } else if (c == ' ' || c == '\t') {
+                if (inWord) words.add(word.toString());
+                word.setLength(0);
+                inWord = false;
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (inWord) words.add(word.toString());
+        return words;
+    }
+
+    /**
+     * This method returns the copy file that save writes for a CSV file, e.g. Student_Copy.csv for Student.csv.
+     */
+    static Path copyFileOf(Path csvFile) {
+        return csvFile.resolveSibling(TranscriptIngest.studentId(csvFile) + COPY_SUFFIX + ".csv");
+    }
+}
@@ -0,0 +1,606 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the changes made to a curriculum.
+ * <p>
+ * Instead of rewriting every course on each save, every change made through a Course setter
+ * (and every course added to or removed from the list) is encoded as a small record. Records are buffered in
+ * memory and written as one checksummed batch, followed by a single fsync, when the changes
+ * are committed. Committing therefore costs O(changes), not O(courses).
+ * <p>
+ * On startup the base CSV named in the journal header is parsed and the committed batches are
+ * replayed on top of it. A batch that was only partly written (for example after a crash)
+ * fails its checksum and is cut off. Every record but a removal sets a value of a given row, so
+ * replaying it twice gives the same result. The rows are positions in the list, so the base CSV
+ * must never change while the journal uses it: it is always a snapshot that belongs to the
+ * journal, never the curriculum file itself, which the registrar may edit at any time.
+ * <p>
+ * The journal also keeps a copy of the curriculum file as it was last read: its source. When
+ * the changes of the file are applied (see sourceRead), the new content is written to the source
+ * copy and its checksum is committed with the changes. On the next start, sourceContent returns
+ * that copy, and comparing it with the file gives the changes made while the program was closed.
+ * <p>
+ * Once the journal grows past a threshold, it is compacted on a background thread: the
+ * committed courses are written out as a fresh snapshot, and the journal is replaced by one
+ * that starts from that snapshot and keeps only the batches committed in the meantime. The
+ * snapshots take turns between two files, so the one the current journal starts from is never
+ * overwritten.
+ * <p>
+ * The journal and its files are only created when the first changes are committed, so a run
+ * that changes nothing writes nothing.
+ */
+class ChangeJournal implements CourseListener {
+    private static final int MAGIC = 0x434A4E4C; // "CJNL"
+    private static final byte VERSION = 1;
+    private static final byte COURSE_NUMBER = 1, TITLE = 2, TERM = 3, YEAR = 4,
+            UNITS = 5, GRADES = 6, IS_ELECTIVE = 7, ADD = 8, REMOVE = 9, SOURCE = 10;
+    // The source checksum before any SOURCE record: the source copy was written with the journal
+    private static final long NO_CHECKSUM = -1;
+    static final long DEFAULT_COMPACTION_THRESHOLD = 256 * 1024;
+
+    /**
+     * Writes the courses of a compaction snapshot as a CSV file that parseCSV can read back.
+     * The snapshot file belongs to the journal: nothing else may write it.
+     */
+    interface SnapshotWriter {
+        void write(List<Course> courseList, Path csvFile) throws IOException;
+    }
+
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final Path otherSnapshotFile;
+    private final Path sourceFile;
+    private final SnapshotWriter snapshotWriter;
+    private final long compactionThreshold;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final IdentityHashMap<Course, Integer> rows = new IdentityHashMap<>();
+    private final ArrayList<Course> courses = new ArrayList<>();
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+    private int pendingRecords;
+    private Path baseFile;
+    private Path curriculumFile;
+    private Future<?> compaction;
+    private Future<?> sourceWrite;
+    // The checksum of the source the committed courses reflect, and the source read since
+    private long sourceChecksum = NO_CHECKSUM;
+    private byte[] pendingSource;
+    // The curriculum file as it was loaded, until the journal is created
+    private byte[] loadedContent;
+
+    /**
+     * Constructor with parameters.
+     * @param journalFile         the journal file
+     * @param snapshotFile        the CSV file that compaction writes its snapshots to, used by no one else;
+     *                            every other snapshot goes to the same name with .1 before the extension
+     * @param sourceFile          the file that keeps the curriculum file as it was last read, used by no one else
+     * @param snapshotWriter      the writer used for the snapshots
+     * @param compactionThreshold the journal size, in bytes, that triggers a compaction
+     */
+    ChangeJournal(Path journalFile, Path snapshotFile, Path sourceFile, SnapshotWriter snapshotWriter,
+                  long compactionThreshold) {
+        this.journalFile = journalFile;
+        this.snapshotFile = snapshotFile;
+        String snapshotName = snapshotFile.getFileName().toString();
+        int dot = snapshotName.lastIndexOf('.');
+        this.otherSnapshotFile = snapshotFile.resolveSibling((dot < 0) ? snapshotName + ".1"
+                : snapshotName.substring(0, dot) + ".1" + snapshotName.substring(dot));
+        this.sourceFile = sourceFile;
+        this.snapshotWriter = snapshotWriter;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * This method loads the curriculum: the base CSV followed by every committed batch.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. If there is no journal yet, the curriculum file is loaded as it is, and its content is
+     * kept for the journal that the first commit creates <br>
+     * 2. Otherwise the base CSV named in the journal header is parsed <br>
+     * 3. Each batch is checked against its checksum and its records are applied in order <br>
+     * 4. A torn batch at the end of the file is truncated
+     *
+     * @param curriculumFile the curriculum CSV file
+     * @return the loaded courses
+     * @throws IOException if the journal or the curriculum file cannot be read
+     */
+    ArrayList<Course> load(Path curriculumFile) throws IOException {
+        this.curriculumFile = curriculumFile;
+        if (!Files.exists(journalFile)) {
+            loadedContent = Files.readAllBytes(curriculumFile);
+            return CourseAdministration.loadCourses(curriculumFile.toString());
+        }
+
+        ArrayList<Course> courseList;
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer journal = ByteBuffer.allocate((int) channel.size());
+            while (journal.hasRemaining() && channel.read(journal) >= 0) ;
+            journal.flip();
+
+            if (journal.remaining() < 7 || journal.getInt() != MAGIC || journal.get() != VERSION)
+                throw new IOException(journalFile + " is not a change journal");
+            byte[] name = new byte[journal.getShort() & 0xFFFF];
+            journal.get(name);
+            baseFile = journalFile.resolveSibling(new String(name, StandardCharsets.UTF_8));
+            courseList = CourseAdministration.loadCourses(baseFile.toString());
+
+            int validEnd = journal.position();
+            while (journal.remaining() >= 4) {
+                int length = journal.getInt();
+                if (length < 0 || journal.remaining() < length + 4) break;
+                byte[] batch = new byte[length];
+                journal.get(batch);
+                CRC32 crc = new CRC32();
+                crc.update(batch);
+                if ((int) crc.getValue() != journal.getInt()) break;
+                replay(batch, courseList);
+                validEnd = journal.position();
+            }
+            if (validEnd < channel.size()) {
+                System.out.println("Discarded " + (channel.size() - validEnd) + " bytes of incomplete changes from " + journalFile);
+                channel.truncate(validEnd);
+            }
+        }
+        return courseList;
+    }
+
+    /**
+     * This method returns the curriculum file as it was when the committed courses were last
+     * brought up to date with it. Comparing it with the file as it is now gives the changes made
+     * to the file while the program was closed.
+     * <p>
+     * The source copy is written after the changes are committed, so a crash in between can
+     * leave an older copy; its checksum then differs from the committed one. If the curriculum
+     * file itself still matches the committed checksum, it is returned instead; otherwise what
+     * changed cannot be told, null is returned and the file as it is now becomes the source at
+     * the next commit.
+     *
+     * @return the content of the curriculum file the committed courses reflect, or null if it is not known
+     * @throws IOException if the source copy or the curriculum file cannot be read
+     */
+    byte[] sourceContent() throws IOException {
+        if (loadedContent != null) return loadedContent;
+        try {
+            byte[] source = Files.readAllBytes(sourceFile);
+            if (sourceChecksum == NO_CHECKSUM || checksumOf(source) == sourceChecksum) return source;
+        } catch (NoSuchFileException noSuchFileException) {
+            // Read the curriculum file instead
+        }
+        byte[] current = Files.readAllBytes(curriculumFile);
+        long checksum = checksumOf(current);
+        if (checksum == sourceChecksum) return current;
+        sourceRead(current);
+        return null;
+    }
+
+    /**
+     * This method starts recording the changes made to the loaded courses.
+     *
+     * @param courseList the list returned by load
+     */
+    void attach(List<Course> courseList) {
+        for (Course course : courseList) track(course);
+    }
+
+    /**
+     * This method starts tracking a course that was appended to the loaded list.
+     * The course is recorded with all of its values.
+     *
+     * @param course the course appended to the list
+     */
+    void courseAdded(Course course) {
+        if (rows.containsKey(course)) return;
+        track(course);
+        record(ADD, rows.get(course));
+        writeByte(course.getYear());
+        writeByte(course.getTerm());
+        writeDouble(course.getUnits());
+        writeGrades(course);
+        writeByte(course.getIsElective() ? 1 : 0);
+        writeString(course.getCourseNumber());
+        writeString(course.getDescriptiveTitle());
+    }
+
+    /**
+     * This method stops tracking courses that were removed from the loaded list. The courses
+     * after them move up, as they do in the list.
+     * <p>
+     * The removals are recorded from the last row to the first, so each row is still the one the
+     * course had when its record is replayed. The rows after the first removed one are then
+     * renumbered once for the whole batch.
+     *
+     * @param removed the courses removed from the list
+     */
+    void coursesRemoved(Collection<Course> removed) {
+        Set<Course> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        int[] removedRows = new int[removed.size()];
+        int count = 0;
+        for (Course course : removed) {
+            Integer row = rows.remove(course);
+            if (row == null) continue;
+            course.removeListener(this);
+            gone.add(course);
+            removedRows[count++] = row;
+        }
+        if (count == 0) return;
+        Arrays.sort(removedRows, 0, count);
+        for (int i = count - 1; i >= 0; i--) record(REMOVE, removedRows[i]);
+        int first = removedRows[0];
+        courses.subList(first, courses.size()).removeIf(gone::contains);
+        for (int i = first; i < courses.size(); i++) rows.put(courses.get(i), i);
+    }
+
+    private void track(Course course) {
+        rows.put(course, courses.size());
+        courses.add(course);
+        course.addListener(this);
+    }
+
+    /**
+     * This method notes that the courses now reflect a new content of the curriculum file, as
+     * read by CurriculumWatcher. Its checksum is computed and committed with the next batch, so
+     * only the last content read before a commit is checksummed, and the content is then written
+     * to the source copy in the background.
+     *
+     * @param content the content of the curriculum file
+     */
+    void sourceRead(byte[] content) {
+        pendingSource = content;
+    }
+
+    /**
+     * This method returns the number of changes recorded since the last commit.
+     */
+    int pendingChanges() {
+        return pendingRecords;
+    }
+
+    /**
+     * This method writes the recorded changes to the journal as one batch and forces them to disk.
+     * A source read since the last commit is recorded in the batch, and its copy is written in the
+     * background. If the journal has grown past the threshold, a background compaction is started.
+     * <p>
+     * The first commit creates the journal: the curriculum file as it was loaded is written to
+     * the snapshot and the source files, and the journal starts from the snapshot.
+     *
+     * @throws IOException if the batch cannot be written
+     */
+    void commit() throws IOException {
+        if (pendingRecords == 0 && pendingSource == null) return;
+        if (loadedContent != null) {
+            writeFile(snapshotFile, loadedContent);
+            writeFile(sourceFile, loadedContent);
+            baseFile = snapshotFile;
+            writeJournal(journalFile, baseFile, new byte[0]);
+            loadedContent = null;
+        }
+        byte[] batch = pendingBytes.toByteArray();
+        long newSourceChecksum = (pendingSource == null) ? sourceChecksum : checksumOf(pendingSource);
+        if (pendingSource != null) {
+            int length = batch.length;
+            batch = Arrays.copyOf(batch, length + 13);
+            ByteBuffer.wrap(batch, length, 13).put(SOURCE).putInt(0).putLong(newSourceChecksum);
+        }
+        ByteBuffer frame = frame(batch);
+        synchronized (this) {
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (frame.hasRemaining()) channel.write(frame);
+                channel.force(false);
+            }
+        }
+        pendingBytes.reset();
+        pendingRecords = 0;
+        if (pendingSource != null) {
+            byte[] source = pendingSource;
+            sourceChecksum = newSourceChecksum;
+            pendingSource = null;
+            sourceWrite = compactor.submit(() -> {
+                writeFile(sourceFile, source);
+                return null;
+            });
+        }
+        if (Files.size(journalFile) > compactionThreshold && (compaction == null || compaction.isDone()))
+            startCompaction();
+    }
+
+    /**
+     * This method waits for a running compaction and the write of the source copy, and stops the
+     * background thread.
+     */
+    void close() {
+        compactor.shutdown();
+        try {
+            if (compaction != null) compaction.get();
+        } catch (Exception exception) {
+            System.out.println("Journal compaction failed: " + exception);
+        }
+        try {
+            if (sourceWrite != null) sourceWrite.get();
+        } catch (Exception exception) {
+            System.out.println("Could not keep a copy of " + curriculumFile.getFileName() + ": " + exception);
+        }
+    }
+
+    /**
+     * This method starts a compaction of the committed state.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. The courses are copied and the journal length is noted, both now, while the
+     * in-memory state is exactly the committed state <br>
+     * 2. In the background the copy is written to the snapshot file the journal does not start from <br>
+     * 3. A new journal is written with the snapshot as its base, a batch with the source checksum
+     * of step 1 and the batches committed after step 1, and it atomically replaces the old journal
+     */
+    private void startCompaction() throws IOException {
+        List<Course> copy = new ArrayList<>(courses.size());
+        for (Course course : courses) copy.add(copyOf(course));
+        long compactedLength = Files.size(journalFile);
+        long compactedSourceChecksum = sourceChecksum;
+        Path newBaseFile = nextSnapshotFile();
+
+        compaction = compactor.submit(() -> {
+            try {
+                snapshotWriter.write(copy, newBaseFile);
+                synchronized (this) {
+                    byte[] tail = readFrom(journalFile, compactedLength);
+                    if (compactedSourceChecksum != NO_CHECKSUM) {
+                        ByteBuffer source = frame(ByteBuffer.allocate(13).put(SOURCE).putInt(0)
+                                .putLong(compactedSourceChecksum).array());
+                        tail = ByteBuffer.allocate(source.remaining() + tail.length).put(source).put(tail).array();
+                    }
+                    Path temporary = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+                    writeJournal(temporary, newBaseFile, tail);
+                    Files.move(temporary, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    baseFile = newBaseFile;
+                }
+            } catch (IOException ioException) {
+                System.out.println("Journal compaction failed: " + ioException);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void courseNumberChanged(Course course, String oldCourseNumber) {
+        record(COURSE_NUMBER, rows.get(course));
+        writeString(course.getCourseNumber());
+    }
+
+    @Override
+    public void descriptiveTitleChanged(Course course, String oldDescriptiveTitle) {
+        record(TITLE, rows.get(course));
+        writeString(course.getDescriptiveTitle());
+    }
+
+    @Override
+    public void termChanged(Course course, byte oldTerm) {
+        record(TERM, rows.get(course));
+        writeByte(course.getTerm());
+    }
+
+    @Override
+    public void yearChanged(Course course, byte oldYear) {
+        record(YEAR, rows.get(course));
+        writeByte(course.getYear());
+    }
+
+    @Override
+    public void unitsChanged(Course course, double oldUnits) {
+        record(UNITS, rows.get(course));
+        writeDouble(course.getUnits());
+    }
+
+    @Override
+    public void gradesChanged(Course course, double oldGrades, boolean oldIsGraded) {
+        record(GRADES, rows.get(course));
+        writeGrades(course);
+    }
+
+    @Override
+    public void isElectiveChanged(Course course, boolean oldIsElective) {
+        record(IS_ELECTIVE, rows.get(course));
+        writeByte(course.getIsElective() ? 1 : 0);
+    }
+
+    /**
+     * This method returns the snapshot file the next snapshot is written to: the one the journal
+     * does not start from.
+     */
+    private Path nextSnapshotFile() {
+        return snapshotFile.equals(baseFile) ? otherSnapshotFile : snapshotFile;
+    }
+
+    /**
+     * This method returns the checksum of a content of the curriculum file: its CRC-32 in the low
+     * half and its length in the high half.
+     *
+     * @param content the content
+     * @return the checksum
+     */
+    private static long checksumOf(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return ((long) content.length << 32) | crc.getValue();
+    }
+
+    /**
+     * This method applies the records of one batch to the course list, and notes the source
+     * checksum of a SOURCE record.
+     */
+    private void replay(byte[] batch, ArrayList<Course> courseList) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+        try {
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException endOfBatch) {
+                    return;
+                }
+                int row = in.readInt();
+                if (type == SOURCE) {
+                    sourceChecksum = in.readLong();
+                    continue;
+                }
+                if (type == REMOVE) {
+                    if (row < 0 || row >= courseList.size()) throw new IOException("Journal refers to missing row " + row);
+                    courseList.remove(row);
+                    continue;
+                }
+                if (type == ADD) {
+                    Course course = new Course();
+                    course.setYear(in.readByte());
+                    course.setTerm(in.readByte());
+                    course.setUnits(in.readDouble());
+                    replayGrades(course, in.readDouble());
+                    course.setIsElective(in.readByte() != 0);
+                    course.setCourseNumber(in.readUTF());
+                    course.setDescriptiveTitle(in.readUTF());
+                    if (row < courseList.size()) courseList.set(row, course);
+                    else courseList.add(course);
+                    continue;
+                }
+                if (row < 0 || row >= courseList.size()) throw new IOException("Journal refers to missing row " + row);
+                Course course = courseList.get(row);
+                switch (type) {
+                    case COURSE_NUMBER -> course.setCourseNumber(in.readUTF());
+                    case TITLE -> course.setDescriptiveTitle(in.readUTF());
+                    case TERM -> course.setTerm(in.readByte());
+                    case YEAR -> course.setYear(in.readByte());
+                    case UNITS -> course.setUnits(in.readDouble());
+                    case GRADES -> replayGrades(course, in.readDouble());
+                    case IS_ELECTIVE -> course.setIsElective(in.readByte() != 0);
+                    default -> throw new IOException("Unknown journal record type " + type);
+                }
+            }
+        } catch (EOFException truncatedRecord) {
+            throw new IOException("Truncated journal record", truncatedRecord);
+        }
+    }
+
+    private static void writeJournal(Path file, Path baseFile, byte[] batches) throws IOException {
+        byte[] name = baseFile.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(7 + name.length);
+        header.putInt(MAGIC).put(VERSION).putShort((short) name.length).put(name).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            ByteBuffer body = ByteBuffer.wrap(batches);
+            while (body.hasRemaining()) channel.write(body);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * This method frames a batch as the journal stores it: its length, its bytes and their CRC-32.
+     */
+    private static ByteBuffer frame(byte[] batch) {
+        CRC32 crc = new CRC32();
+        crc.update(batch);
+        ByteBuffer frame = ByteBuffer.allocate(batch.length + 8);
+        frame.putInt(batch.length).put(batch).putInt((int) crc.getValue()).flip();
+        return frame;
+    }
+
+    /**
+     * This method writes a file through a temporary file, so it is either replaced whole or kept.
+     */
+    private static void writeFile(Path file, byte[] content) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(content);
+            while (bytes.hasRemaining()) channel.write(bytes);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] readFrom(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer tail = ByteBuffer.allocate((int) (channel.size() - position));
+            while (tail.hasRemaining() && channel.read(tail, position + tail.position()) >= 0) ;
+            return tail.array();
+        }
+    }
+
+    /**
+     * This method applies a replayed grade, which is NaN for no grade.
+     */
+    private static void replayGrades(Course course, double grades) {
+        if (Double.isNaN(grades)) course.clearGrades();
+        else course.setGrades(grades);
+    }
+
+    private static Course copyOf(Course course) {
+        return new Course(course.getCourseNumber(), course.getDescriptiveTitle(), course.getPacked());
+    }
+
+    private void record(byte type, int row) {
+        pendingRecords++;
+        writeByte(type);
+        try {
+            pending.writeInt(row);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    private void writeByte(int value) {
+        try {
+            pending.writeByte(value);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    private void writeGrades(Course course) {
+        writeDouble(course.isGraded() ? course.getGrades() : Double.NaN);
+    }
+
+    private void writeDouble(double value) {
+        try {
+            pending.writeDouble(value);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    private void writeString(String value) {
+        try {
+            pending.writeUTF(value);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+}
@@ -1,12 +1,18 @@
-class Course implements Comparable<Course> {
+import java.util.Arrays;
+import java.util.Objects;
+
+class Course implements CourseView, Comparable<Course> {
     protected static final byte DEFAULT_BYTE = 0;
     protected static final double DEFAULT_DOUBLE = 0.0;
     protected static final String DEFAULT_STRING = "";
+    private static final CourseListener[] NO_LISTENERS = {};
 
     private String courseNumber, descriptiveTitle;
-    private byte term, year;
-    private double units, grades;
-    private boolean isElective;
+    // Ids of the course number and title in StringDictionary, equal for Strings equal ignoring case
+    private int courseNumberId, descriptiveTitleId;
+    // Term, year, units, grade and flags, laid out by PackedCourse
+    private long packed;
+    private CourseListener[] listeners = NO_LISTENERS;
 
     /**
      * Default Constructor
@@ -22,6 +28,9 @@ class Course implements Comparable<Course> {
 
     /**
      * Constructor with parameters.
+     * <p>
+     * A grade of 0 means the course has no grade yet, as in the CSV files before grades and
+     * "no grade" were told apart; use setGrades afterwards to give a course a grade of 0.
      * @param courseNumber the given course's number to be set
      * @param descriptiveTitle the given course's descriptive number to be set
      * @param term the given course's term to be set
@@ -31,12 +40,23 @@ class Course implements Comparable<Course> {
      */
     Course(String courseNumber, String descriptiveTitle,
            byte term, byte year, double units, double grades) {
-        this.courseNumber = courseNumber;
-        this.descriptiveTitle = descriptiveTitle;
-        this.term = term;
-        this.year = year;
-        this.units = units;
-        this.grades = grades;
+        this(courseNumber, descriptiveTitle, PackedCourse.pack(term, year, units, grades, grades != 0, false));
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param courseNumber the given course's number to be set
+     * @param descriptiveTitle the given course's descriptive number to be set
+     * @param packed the given course's term, year, units, grade and flags, packed by PackedCourse
+     */
+    Course(String courseNumber, String descriptiveTitle, long packed) {
+        StringDictionary.Entry number = StringDictionary.entry(courseNumber);
+        StringDictionary.Entry title = StringDictionary.entry(descriptiveTitle);
+        this.courseNumber = number.value;
+        this.courseNumberId = number.foldedId;
+        this.descriptiveTitle = title.value;
+        this.descriptiveTitleId = title.foldedId;
+        this.packed = packed;
     }
 
     /**
@@ -52,7 +72,20 @@ class Course implements Comparable<Course> {
      * @param courseNumber the provided number/code to be set
      */
     public void setCourseNumber(String courseNumber) {
-        this.courseNumber = courseNumber;
+        String oldCourseNumber = this.courseNumber;
+        StringDictionary.Entry entry = StringDictionary.entry(courseNumber);
+        this.courseNumber = entry.value;
+        this.courseNumberId = entry.foldedId;
+        if (!Objects.equals(courseNumber, oldCourseNumber))
+            for (CourseListener listener : listeners) listener.courseNumberChanged(this, oldCourseNumber);
+    }
+
+    /**
+     * This method gets the id of the course's number in StringDictionary.
+     * @return the id, the same for every course number equal to this one ignoring case
+     */
+    public int getCourseNumberId() {
+        return courseNumberId;
     }
 
     /**
@@ -68,7 +101,20 @@ class Course implements Comparable<Course> {
      * @param descriptiveTitle the provided descriptive title to be set
      */
     public void setDescriptiveTitle(String descriptiveTitle) {
-        this.descriptiveTitle = descriptiveTitle;
+        String oldDescriptiveTitle = this.descriptiveTitle;
+        StringDictionary.Entry entry = StringDictionary.entry(descriptiveTitle);
+        this.descriptiveTitle = entry.value;
+        this.descriptiveTitleId = entry.foldedId;
+        if (!Objects.equals(descriptiveTitle, oldDescriptiveTitle))
+            for (CourseListener listener : listeners) listener.descriptiveTitleChanged(this, oldDescriptiveTitle);
+    }
+
+    /**
+     * This method gets the id of the course's descriptive title in StringDictionary.
+     * @return the id, the same for every title equal to this one ignoring case
+     */
+    public int getDescriptiveTitleId() {
+        return descriptiveTitleId;
     }
 
     /**
@@ -76,7 +122,7 @@ class Course implements Comparable<Course> {
      * @return the course's term
      */
     public byte getTerm() {
-        return term;
+        return PackedCourse.term(packed);
     }
 
     /**
@@ -84,7 +130,10 @@ class Course implements Comparable<Course> {
      * @param term the provided term to be set
      */
     public void setTerm(byte term) {
-        this.term = term;
+        byte oldTerm = getTerm();
+        packed = PackedCourse.withTerm(packed, term);
+        if (term != oldTerm)
+            for (CourseListener listener : listeners) listener.termChanged(this, oldTerm);
     }
 
     /**
@@ -92,7 +141,7 @@ class Course implements Comparable<Course> {
      * @return the course's year
      */
     public byte getYear() {
-        return year;
+        return PackedCourse.year(packed);
     }
 
     /**
@@ -100,7 +149,10 @@ class Course implements Comparable<Course> {
      * @param year the provided year to be set
      */
     public void setYear(byte year) {
-        this.year = year;
+        byte oldYear = getYear();
+        packed = PackedCourse.withYear(packed, year);
+        if (year != oldYear)
+            for (CourseListener listener : listeners) listener.yearChanged(this, oldYear);
     }
 
     /**
@@ -108,31 +160,62 @@ class Course implements Comparable<Course> {
      * @return the course's number of units
      */
     public double getUnits() {
-        return units;
+        return PackedCourse.units(packed);
     }
 
     /**
-     * This method sets the course's number of units.
+     * This method sets the course's number of units, rounded to hundredths.
      * @param units the provided number of units to be set
+     * @throws IllegalArgumentException if the units are not between -327.68 and 327.67
      */
     public void setUnits(double units) {
-        this.units = units;
+        long oldPacked = packed;
+        double oldUnits = getUnits();
+        packed = PackedCourse.withUnits(packed, units);
+        if (packed != oldPacked)
+            for (CourseListener listener : listeners) listener.unitsChanged(this, oldUnits);
     }
 
     /**
      * This method gets the course's grade.
-     * @return the course's grade
+     * @return the course's grade, or 0 if the course has no grade
      */
     public double getGrades() {
-        return grades;
+        return PackedCourse.grades(packed);
     }
 
     /**
-     * This method sets the course's grade.
+     * This method tells if the course has a grade. A course can have a grade of 0.
+     * @return true if a grade was given
+     */
+    public boolean isGraded() {
+        return PackedCourse.isGraded(packed);
+    }
+
+    /**
+     * This method sets the course's grade, rounded to hundredths. The course then has a grade,
+     * even if it is 0.
      * @param grades the provided grade to be set
+     * @throws IllegalArgumentException if the grade is not between -327.68 and 327.67
      */
     public void setGrades(double grades) {
-        this.grades = grades;
+        changeGrades(PackedCourse.withGrades(packed, grades));
+    }
+
+    /**
+     * This method removes the course's grade.
+     */
+    public void clearGrades() {
+        changeGrades(PackedCourse.withoutGrades(packed));
+    }
+
+    private void changeGrades(long newPacked) {
+        double oldGrades = getGrades();
+        boolean oldIsGraded = isGraded();
+        long oldPacked = packed;
+        packed = newPacked;
+        if (packed != oldPacked)
+            for (CourseListener listener : listeners) listener.gradesChanged(this, oldGrades, oldIsGraded);
     }
 
     /**
@@ -140,7 +223,7 @@ class Course implements Comparable<Course> {
      * @return the course's isElective value
      */
     public boolean getIsElective() {
-        return isElective;
+        return PackedCourse.isElective(packed);
     }
 
     /**
@@ -148,7 +231,44 @@ class Course implements Comparable<Course> {
      * @param isElective the provided true/false value to be set
      */
     public void setIsElective(boolean isElective) {
-        this.isElective = isElective;
+        boolean oldIsElective = getIsElective();
+        packed = PackedCourse.withElective(packed, isElective);
+        if (isElective != oldIsElective)
+            for (CourseListener listener : listeners) listener.isElectiveChanged(this, oldIsElective);
+    }
+
+    /**
+     * This method gets the course's term, year, units, grade and flags, packed by PackedCourse.
+     * @return the packed values
+     */
+    public long getPacked() {
+        return packed;
+    }
+
+    /**
+     * This method registers a listener that is notified whenever a setter changes a value.
+     * @param listener the listener to be added
+     */
+    void addListener(CourseListener listener) {
+        CourseListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    /**
+     * This method unregisters a listener added with addListener.
+     * @param listener the listener to be removed
+     */
+    void removeListener(CourseListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                CourseListener[] removed = new CourseListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, removed, 0, i);
+                System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+                listeners = removed;
+                return;
+            }
+        }
     }
 
     /**
@@ -156,12 +276,12 @@ class Course implements Comparable<Course> {
      * <p>
      * Details such as the course number, descriptive title, number of units, and grades.
      * If grade is not available - N/A
+     * The columns are "%-15s %-110s %-8.1f %-6s", filled in by CourseFormat.
      * @return the formatted string of the course's details
      */
     @Override
     public String toString() {
-        return String.format("%-15s %-110s %-8.1f %-6s", getCourseNumber(),
-                getDescriptiveTitle(), getUnits(), (getGrades() == 0) ? "N\\A" : String.valueOf(getGrades()));
+        return CourseFormat.appendCourse(new StringBuilder(144), this).toString();
     }
 
     /**
@@ -171,6 +291,7 @@ class Course implements Comparable<Course> {
      */
     @Override
     public int compareTo(Course other) {
-        return Double.compare(this.getGrades(), other.getGrades());
+        return Integer.compare(PackedCourse.gradeHundredths(this.getPacked()),
+                PackedCourse.gradeHundredths(other.getPacked()));
     }
 }
\ No newline at end of file
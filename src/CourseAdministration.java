@@ -1,118 +1,365 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class CourseAdministration {
     private static final Scanner keyboard = new Scanner(System.in);
+    // The time spent waiting for the keyboard, left out of the time of a menu item (see readLine)
+    private static long keyboardNanos;
     private static final byte BYTE_SENTINEL_VALUE = Byte.MIN_VALUE;
-    private static final double DOUBLE_SENTINEL_VALUE = Double.MIN_VALUE;
+    private static ArrayList<Course> derivedCourseList;
+    // The modifications of derivedCourseList the structures below have seen (see CourseList)
+    private static int derivedModifications;
+    private static CourseIndex courseIndex;
+    private static TranscriptAggregates transcriptAggregates;
+    private static GradeRanking gradeRanking;
+    private static CourseQuery courseQuery;
+    private static CourseSearch courseSearch;
+    // Number of suggestions shown when a course number is not found
+    private static final int SUGGESTIONS = 5;
+    private static ArrayList<Course> journaledCourseList;
+    private static ChangeJournal changeJournal;
+    private static CurriculumWatcher curriculumWatcher;
+    // The copy files of the last Save while they are being written, or null (see finishSave)
+    private static Future<Path> pendingSave;
+    private static final ExecutorService saver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "curriculum-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // False in batch mode: nothing waits for a key press or asks for confirmation
+    static boolean interactive = true;
+    private static final int PAGE_SIZE = 100;
+    private static final TableRenderer console =
+            new TableRenderer(System.out, PAGE_SIZE, CourseAdministration::pageBuffer);
 
     /**
      * This method returns an ArrayList of type Course that contains
      * data parsed from a CSV file
      * <p>
-     * 1. An ArrayList-Course- is initialized <br>
-     * 2. A buffered read reads a cvs file from the passed fileName parameter<br>
-     * 3. A while loop iterated through all the Courses<br>
-     * 3.1. The data of the course has the separator of a comma - line.split <br>
-     * 3.2. It makes a Course object for each set of data <br>
-     * 3.3. It then adds it to the array of data to the list.
+     * 1. The file is handed to a CsvParser, which tokenizes the bytes of the file in place <br>
+     * 2. Quoted fields (such as the term column of the header) are handled as in RFC 4180 <br>
+     * 3. Each valid row becomes a Course and is added to the list <br>
+     * 4. Malformed rows are skipped and reported with their line numbers
      */
     protected static ArrayList<Course> parseCSV(String fileName) {
-        ArrayList<Course> courseList = new ArrayList<>();
-        String line;
+        return parseCSV(fileName, new ArrayList<>());
+    }
+
+    /**
+     * This method parses a CSV file as parseCSV does and also adds the malformed rows it
+     * reported to a list.
+     *
+     * @param fileName the CSV file to parse
+     * @param errors   the list the malformed rows are added to
+     * @return the ArrayList of courses in the file
+     */
+    private static ArrayList<Course> parseCSV(String fileName, List<String> errors) {
+        CsvParser parser = new CsvParser();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(fileName));
-            br.readLine();
-            while ((line = br.readLine()) != null) {
-                // Split on comma
-                String[] csv = line.split(",");
-                if (csv.length < 6) csv = buildArray(line.split(","));
-
-                // Create a temporary Course Object to store the values
-                Course course = new Course();
-
-                // Parse Values from the CSV and store it to the Course object
-                course.setYear(Byte.parseByte(csv[0]));
-                course.setTerm(Byte.parseByte(csv[1]));
-                course.setCourseNumber(csv[2]);
-                course.setDescriptiveTitle(csv[3]);
-                course.setUnits(Double.parseDouble(csv[4]));
-
-                // Test case if Grade is not defined
-                if (csv[5].equals("")) course.setGrades(0);
-                else course.setGrades(Double.parseDouble(csv[5]));
-
-                // Add the course to the course list
-                courseList.add(course);
-            }
-        } catch (FileNotFoundException fileNotFoundException) {
+            ArrayList<Course> courseList = parser.parse(Path.of(fileName));
+            for (String error : parser.getErrors()) System.out.println("Skipped " + error);
+            errors.addAll(parser.getErrors());
+            return courseList;
+        } catch (NoSuchFileException noSuchFileException) {
             System.out.println("File not found.");
         } catch (IOException ioException) {
             System.out.println("I/O error: " + ioException);
         }
-        return courseList;
+        return new CourseList();
     }
 
     /**
-     * This method allows the construction of the array.
+     * This method loads the courses of a CSV file, using its binary snapshot when possible.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. If the snapshot next to the CSV file is up to date, the courses are read from it, and
+     * the malformed rows it recorded are reported as parseCSV reports them <br>
+     * 2. Otherwise the CSV file is parsed with parseCSV <br>
+     * 3. and a new snapshot is written for the next start
      *
-     * @param line String read by the reader
-     * @return String array containing data for the Course object
+     * @param fileName the CSV file to load
+     * @return the ArrayList of courses in the file
      */
-    private static String[] buildArray(String[] line) {
-        ArrayList<String> courseInfo = new ArrayList<>(Arrays.asList(line));
-        int size = 6 - courseInfo.size();
-        for (int i = 0; i < size; i++) {
-            courseInfo.add("");
+    static ArrayList<Course> loadCourses(String fileName) {
+        Path csvFile = Path.of(fileName);
+        List<String> errors = new ArrayList<>();
+        ArrayList<Course> courseList = CurriculumSnapshot.load(csvFile, errors);
+        if (courseList != null) {
+            for (String error : errors) System.out.println("Skipped " + error);
+            return courseList;
+        }
+
+        courseList = parseCSV(fileName, errors);
+        if (Files.exists(csvFile)) {
+            try {
+                CurriculumSnapshot.write(courseList, errors, csvFile);
+            } catch (IOException ioException) {
+                System.out.println("Could not write the snapshot of " + fileName + ": " + ioException);
+            }
         }
-        return courseInfo.toArray(new String[6]);
+        return courseList;
     }
 
     /**
-     * Overwrites the current data of the file with new data
+     * Makes the changes to the curriculum permanent
      * <p>
      * METHOD ALGORITHM: <br>
      * 1. The method warns the user that changes will be made to the file<br>
      * 2. If input Y <br>
-     * 2.1. A for loop will go through the file and print it out<br>
-     * 2.2. then the writer overwrites the file<br>
-     * 3. If the user inputs otherwise the file does not get overwritten
+     * 2.1. The changes are saved with saveInBackground, which also prints every course<br>
+     * 3. If the user inputs otherwise the changes stay unsaved
      *
      * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
      */
     private static void saveChangesToFile(ArrayList<Course> courseList) {
         System.out.print("The changes will be permanent. Are you sure? Y/N");
-        String confirmation = keyboard.nextLine();
+        String confirmation = readLine();
 
         if (!confirmation.equalsIgnoreCase("y")) {
             System.out.println("The changes were not saved.");
             return;
         }
 
-        try {
-            for (Course c : courseList) System.out.println(c);
-
-            PrintWriter copyWriter =
-                    new PrintWriter(new FileWriter("CurriculumData_Grades_Copy.csv"));
-            for (Course course : courseList) {
-                copyWriter.println(course.getYear() + "," + course.getTerm() + "," +
-                        course.getCourseNumber() + "," + course.getDescriptiveTitle() +
-                        "," + course.getUnits() + "," +
-                        ((course.getGrades() == 0) ? "" : String.valueOf(course.getGrades())));
+        saveInBackground(courseList, Path.of("CurriculumData_Grades_Copy.csv"));
+    }
+
+    /**
+     * This method saves a course list and lets the user go on editing it while its copy files
+     * are written.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Waits for the copy files of the previous save, if they are still being written <br>
+     * 2. Appends the changes made to the journaled curriculum since the last save to the change
+     * journal as one batch <br>
+     * 3. Takes the courses as they are now as a CurriculumVersion and prints every course of it <br>
+     * 4. Writes the copy files of that version on another thread; edits made meanwhile do not
+     * change it. finishSave reports the files once they are written
+     *
+     * @param courseList the ArrayList of courses to save
+     * @param copyFile   the CSV file to write; the TXT copy is written next to it
+     */
+    private static void saveInBackground(ArrayList<Course> courseList, Path copyFile) {
+        finishSave(true);
+        if (changeJournal != null && courseList == journaledCourseList) {
+            int changes = changeJournal.pendingChanges();
+            try {
+                changeJournal.commit();
+            } catch (IOException ioException) {
+                System.out.println("I/O error: " + ioException);
+                return;
+            }
+            System.out.println("Saved " + changes + " changes.");
+        }
+        List<Course> courses = CurriculumVersion.ofCourses(courseList).asCourses();
+        StringBuilder echo = new StringBuilder();
+        for (Course course : courses) {
+            CourseFormat.appendCourse(echo, course).append(System.lineSeparator());
+            if (echo.length() >= 64 * 1024) {
+                System.out.print(echo);
+                echo.setLength(0);
             }
-            copyWriter.close();
+        }
+        System.out.print(echo);
+        System.out.flush();
+        pendingSave = saver.submit(() -> {
+            long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+            try {
+                CourseExporter.export(courses, copyFile);
+            } finally {
+                Metrics.SAVE.record(startNanos, startAllocatedBytes, courses.size());
+            }
+            return copyFile;
+        });
+    }
 
-            PrintWriter textCopyWriter = new PrintWriter(new FileWriter("CurriculumData_Grades_Copy.txt"));
-            textCopyWriter.printf("%-16s %-120s %-10s %-7s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", "GRADE");
-            for (Course course : courseList) textCopyWriter.println(course);
-            textCopyWriter.close();
+    /**
+     * This method reports the copy files of the last save once they are written.
+     *
+     * @param wait if it waits for them to be written; otherwise they are only reported if they already are
+     */
+    private static void finishSave(boolean wait) {
+        if (pendingSave == null || (!wait && !pendingSave.isDone())) return;
+        try {
+            System.out.println("Saved " + pendingSave.get() + ".");
+        } catch (ExecutionException executionException) {
+            System.out.println("I/O error: " + executionException.getCause());
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        pendingSave = null;
+    }
+
+    /**
+     * This method saves a course list without asking for confirmation.
+     * <p>
+     * The changes made to the journaled curriculum since the last save are appended to the
+     * change journal as one batch. Then the list is written to the given copy files by
+     * CourseExporter, as any other list is.
+     *
+     * @param courseList the ArrayList of courses to save
+     * @param copyFile   the CSV file to write; the TXT copy is written next to it
+     * @param echo       if every course is printed while saving
+     * @return true if the changes were saved
+     */
+    static boolean saveChanges(ArrayList<Course> courseList, Path copyFile, boolean echo) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        try {
+            if (changeJournal != null && courseList == journaledCourseList) {
+                int changes = changeJournal.pendingChanges();
+                changeJournal.commit();
+                System.out.println("Saved " + changes + " changes.");
+            }
+            CourseExporter.export(courseList, copyFile, echo ? System.out : null);
+            System.out.println("Saved " + copyFile + ".");
+            return true;
         } catch (IOException ioException) {
             System.out.println("I/O error: " + ioException);
+            return false;
+        } finally {
+            Metrics.SAVE.record(startNanos, startAllocatedBytes, courseList.size());
         }
+    }
+
+    /**
+     * This method loads the curriculum together with its saved changes.
+     * <p>
+     * The change journal names the CSV file it starts from (a copy of the curriculum as it was
+     * when the first change was saved, or the latest compacted snapshot) and holds every change
+     * saved since; until then it has no files. Its snapshots go to files
+     * of its own, CurriculumData_Grades.journal.csv and .journal.1.csv, and not to the copies
+     * that Save exports, which batch mode and the server also write. It also keeps the
+     * curriculum file as last read in CurriculumData_Grades.journal.source.csv (see watchFiles).
+     * If the journal cannot be used, the original curriculum is loaded without its changes.
+     *
+     * @param fileName the original curriculum CSV file
+     * @return the ArrayList of courses with the saved changes applied
+     */
+    private static ArrayList<Course> loadCurriculum(String fileName) {
+        Path curriculumFile = Path.of(fileName);
+        String name = curriculumFile.getFileName().toString();
+        String baseName = name.substring(0, name.lastIndexOf('.'));
+        changeJournal = new ChangeJournal(curriculumFile.resolveSibling(baseName + ".journal"),
+                curriculumFile.resolveSibling(baseName + ".journal.csv"),
+                curriculumFile.resolveSibling(baseName + ".journal.source.csv"),
+                CourseExporter::exportCsv, ChangeJournal.DEFAULT_COMPACTION_THRESHOLD);
+        try {
+            journaledCourseList = changeJournal.load(curriculumFile);
+            return journaledCourseList;
+        } catch (NoSuchFileException noSuchFileException) {
+            changeJournal = null;
+            return loadCourses(fileName);
+        } catch (IOException ioException) {
+            System.out.println("Could not read the saved changes: " + ioException);
+            changeJournal = null;
+            return loadCourses(fileName);
+        }
+    }
+
+    /**
+     * This method loads the curriculum with loadCurriculum, whose electives are marked while it
+     * is parsed, and starts recording the changes made to it in the change journal.
+     *
+     * @param fileName the original curriculum CSV file
+     * @return the ArrayList of courses, ready to be edited
+     */
+    static ArrayList<Course> openCurriculum(String fileName) {
+        ArrayList<Course> courseList = loadCurriculum(fileName);
+        if (changeJournal != null) changeJournal.attach(courseList);
+        courseIndexOf(courseList);
+        return courseList;
+    }
 
+    /**
+     * This method starts watching the curriculum and shifter files for changes made on disk,
+     * which applyFileChanges then brings into the loaded courses.
+     * <p>
+     * The watcher starts from the curriculum file as the change journal last read it, so the
+     * changes made to the file while the program was closed are applied like any other.
+     *
+     * @param curriculumFileName the CSV file the curriculum was loaded from
+     * @param shifterFileName    the CSV file of the shifter
+     */
+    static void watchFiles(String curriculumFileName, String shifterFileName) {
+        byte[] curriculumContent = null;
+        if (changeJournal != null) {
+            try {
+                curriculumContent = changeJournal.sourceContent();
+                if (curriculumContent == null)
+                    System.out.println("The changes made to " + curriculumFileName + " while the program was closed could not be found.");
+            } catch (IOException ioException) {
+                System.out.println("Could not read the last copy of " + curriculumFileName + ": " + ioException);
+            }
+        }
+        try {
+            curriculumWatcher = new CurriculumWatcher(Path.of(curriculumFileName), Path.of(shifterFileName), curriculumContent);
+        } catch (IOException ioException) {
+            System.out.println("The files will not be reloaded when they change: " + ioException);
+        }
+    }
+
+    /**
+     * This method applies the changes made on disk to the curriculum and shifter files since the
+     * last call (see CurriculumWatcher).
+     * <p>
+     * The changes are recorded in the change journal like any edit, along with the content of
+     * the curriculum file they come from. If there were no unsaved edits, they are saved right
+     * away, since the file already holds them; otherwise they are saved with the edits.
+     *
+     * @param courseList the ArrayList of courses loaded from the curriculum file
+     * @return the number of courses added, removed or changed
+     */
+    static int applyFileChanges(ArrayList<Course> courseList) {
+        if (curriculumWatcher == null) return 0;
+        boolean journaled = changeJournal != null && courseList == journaledCourseList;
+        boolean unsavedEdits = journaled && changeJournal.pendingChanges() > 0;
+        int changes = curriculumWatcher.applyPending(courseList);
+        if (journaled && !unsavedEdits) {
+            try {
+                changeJournal.commit();
+            } catch (IOException ioException) {
+                System.out.println("Could not save the changes of the curriculum file: " + ioException);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * This method tells the change journal that the courses now reflect a new content of the
+     * curriculum file, once the watcher has applied its changes.
+     *
+     * @param courseList the ArrayList of courses the changes were applied to
+     * @param content    the content of the curriculum file
+     */
+    static void curriculumFileRead(ArrayList<Course> courseList, byte[] content) {
+        if (changeJournal != null && courseList == journaledCourseList) changeJournal.sourceRead(content);
+    }
+
+    /**
+     * This method returns the courses of the shifter file: copies of the courses the watcher has
+     * read, or else the courses parsed from the file.
+     *
+     * @param shifterFileName the CSV file of the shifter
+     * @return the ArrayList of shifter courses
+     */
+    private static ArrayList<Course> readShifter(String shifterFileName) {
+        ArrayList<Course> shifterCourseList = (curriculumWatcher == null) ? null
+                : curriculumWatcher.coursesOf(Path.of(shifterFileName));
+        return (shifterCourseList != null) ? shifterCourseList : parseCSV(shifterFileName);
     }
 
     /**
@@ -143,8 +390,7 @@ public class CourseAdministration {
             case 2 -> term_text = "Second";
             case 3 -> term_text = "Third";
         }
-        for (int i = 0; i < 145; i++) System.out.print("-");
-        System.out.println("\nYear = " + year_text + " Year\tTerm = " + term_text + " Semester ");
+        console.rule().line("Year = " + year_text + " Year\tTerm = " + term_text + " Semester ");
     }
 
     /**
@@ -162,9 +408,7 @@ public class CourseAdministration {
      */
     private static void displayHeader(int year, int term, boolean hasGrades) {
         displayHeaderText(year, term);
-        System.out.printf("%-15s %-110s %-8s %-6s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", ((hasGrades) ? "GRADE" : ""));
-        for (int i = 0; i < 145; i++) System.out.print("-");
-        System.out.println();
+        console.header(hasGrades).rule();
     }
 
 
@@ -172,9 +416,10 @@ public class CourseAdministration {
      * Buffer between operations
      */
     private static void termBuffer() {
-        System.out.println();
+        console.newLine().flush();
+        if (!interactive) return;
         System.out.print("Press any key to see courses for the next term...");
-        keyboard.nextLine();
+        readLine();
         System.out.println();
     }
 
@@ -184,48 +429,67 @@ public class CourseAdministration {
      * If hasGrades is True then it will also show their Grades
      * <p>
      * METHOD ALGORITHM <br>
-     * 1. Gets the highest year in the curriculum data file. <br>
-     * 2. Displays the courses for each term.
+     * 1. Gets the highest year in the curriculum data file from the running aggregates. <br>
+     * 2. Displays the courses for each term, looked up through the year and term index. <br>
+     * 3. If hasGrades, displays the GPA summary and the courses sorted by grade.
      *
      * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
      * @param hasGrades  if the call pertains to a show Grades call
      */
-    private static void showCourses(ArrayList<Course> courseList, boolean hasGrades) {
-        int highestYear = 1;
-        for (Course c : courseList) {
-            if (c.getYear() > highestYear) highestYear = c.getYear();
-        }
-        System.out.println("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   COURSES");
+    static void showCourses(ArrayList<Course> courseList, boolean hasGrades) {
+        int highestYear = aggregatesOf(courseList).highestYear();
+        CourseIndex index = courseIndexOf(courseList);
+        console.line("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   COURSES");
         for (int y = 1; y <= highestYear; y++) {
             for (int t = 1; t <= 3; t++) {
                 displayHeader(y, t, hasGrades);
-                for (Course c : courseList) {
-                    if (c.getYear() == y && c.getTerm() == t) {
-                        if (hasGrades) {
-                            System.out.println(c);
-                        } else {
-                            System.out.printf("%-15s %-110s %-8s\n", c.getCourseNumber(), c.getDescriptiveTitle(), c.getUnits());
-                        }
-                    }
-                }
+                for (Course c : index.findByTerm(y, t)) displayTermCourse(c, hasGrades);
                 termBuffer();
             }
         }
         if (!hasGrades) return;
 
-        System.out.println();
-        System.out.print("Press enter key to see grades in ascending order...");
-        keyboard.nextLine();
-        System.out.println();
+        displayTranscriptSummary(aggregatesOf(courseList));
 
+        gradesBuffer("ascending");
         sortCoursesByGPA(courseList, 1);
+        gradesBuffer("descending");
+        sortCoursesByGPA(courseList, 2);
+    }
 
-        System.out.println();
-        System.out.print("Press enter key to see grades in descending order...");
-        keyboard.nextLine();
-        System.out.println();
+    /**
+     * Helper method that displays the GPA and unit totals of a transcript.
+     *
+     * @param aggregates the running totals of the transcript
+     */
+    private static void displayTranscriptSummary(TranscriptAggregates aggregates) {
+        console.rule().line(String.format("GPA (unit-weighted) = %.2f\tUnits earned = %.1f of %.1f\tFailed = %d\tWithout grades = %d",
+                aggregates.weightedAverage(), aggregates.earnedUnits(), aggregates.totalUnits(),
+                aggregates.failedCount(), aggregates.ungradedCount()));
+    }
 
-        sortCoursesByGPA(courseList, 2);
+    /**
+     * Helper method that displays one course row of a term listing.
+     *
+     * @param course    the course to display
+     * @param hasGrades if the grade column is displayed
+     */
+    private static void displayTermCourse(Course course, boolean hasGrades) {
+        if (hasGrades) console.row(course);
+        else console.rowWithoutGrade(course);
+    }
+
+    /**
+     * Buffer before the sorted grades are displayed
+     *
+     * @param order the name of the order about to be displayed
+     */
+    private static void gradesBuffer(String order) {
+        console.newLine().flush();
+        if (!interactive) return;
+        System.out.print("Press enter key to see grades in " + order + " order...");
+        readLine();
+        System.out.println();
     }
 
 
@@ -233,25 +497,23 @@ public class CourseAdministration {
      * Displays the failed courses
      * <p>
      * METHOD ALGORITHM: <br>
-     * 1) Create an ArrayList wherein courses with failing grades are added. <br>
-     * 2) Get the highest number of years and terms per year in the curriculum. <br>
-     * 3) Display courses with failing grades for each term.
+     * 1) Get the courses with failing grades from the failed bitmap of the course query. <br>
+     * 2) Display them in curriculum order.
      *
      * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
      */
-    private static void showFailedCourses(ArrayList<Course> courseList) {
-        ArrayList<Course> failedCourseList = new ArrayList<>();
-        for (Course c : courseList) {
-            if (c.getGrades() != 0 && isFailedCourse(c)) {
-                failedCourseList.add(c);
-            }
-        }
+    static void showFailedCourses(ArrayList<Course> courseList) {
+        displayFailedCourses(courseQueryOf(courseList).failedCourses());
+    }
 
-        System.out.println("\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t      FAILED COURSES");
-        for (int i = 0; i < 145; i++) System.out.print("-");
-        System.out.printf("\n%-15s %-110s %-8s %-6s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", "GRADE");
-        for (Course c : failedCourseList) System.out.println(c);
-        System.out.println();
+    /**
+     * Helper method that displays a list of failed courses under the failed courses header.
+     *
+     * @param failedCourseList the courses with failing grades
+     */
+    private static void displayFailedCourses(List<Course> failedCourseList) {
+        console.line("\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t      FAILED COURSES").rule().header(true)
+                .rows(failedCourseList).newLine().flush();
     }
 
     /**
@@ -259,38 +521,60 @@ public class CourseAdministration {
      * main curriculum data, then transfers the shifter's data and course number to their comparable courses.<br>
      * <p>
      * METHOD ALGORITHM: <br>
-     * 1. Compares the Shifters and MainCurriculum arrayList <br>
-     * 2. If the course descriptions are the same <br>
+     * 1. Matches each shifter course to the curriculum through the title index (see ShiftEngine) <br>
+     * 2. Shows the courses matched by a similar title, with their confidence, and asks whether to
+     * keep them; if not, the shifter is matched again by exact and equivalent titles only <br>
+     * 3. If the course descriptions are the same <br>
      * Changes the original course number into the shifter's course number <br>
      * Sets the original course grade to the shifter's course grade <br>
-     * 3. Display courses that had equivalents <br>
-     * 4. Display courses that did not have an equivalent
+     * 4. Display courses that had equivalents <br>
+     * 5. Display courses that did not have an equivalent
+     * <p>
+     * The curriculum is taken as a CurriculumVersion before it is changed. If the shift fails
+     * halfway, the curriculum is put back to that version, so it is never left partly shifted.
+     * <p>
+     * Outside interactive mode the shift is made, similar matches included, without asking for confirmation.
      *
-     * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
+     * @param courseList      the ArrayList of courses from the CurriculumData_Grades.csv file
+     * @param shifterFileName the CSV file with the shifter's courses and grades
      */
-    private static void shiftCourse(ArrayList<Course> courseList) {
-        ArrayList<Course> shifterCourseList = parseCSV("Shifter.csv");
-        String shiftChoice;
+    static void shiftCourse(ArrayList<Course> courseList, String shifterFileName) {
+        ArrayList<Course> shifterCourseList = readShifter(shifterFileName);
+        String shiftChoice = "y";
         System.out.println("Detected Shifter!");
         System.out.println("Shifting to: BSCS 1");
-        System.out.print("Are you sure you want to shift courses?(y/n): ");
-        shiftChoice = Character.toString(keyboard.next().charAt(0));
+        if (interactive) {
+            System.out.print("Are you sure you want to shift courses?(y/n): ");
+            shiftChoice = Character.toString(readWord().charAt(0));
+        }
 
         if (shiftChoice.equalsIgnoreCase("y")) {
-            for (Course sC : shifterCourseList) {
-                for (Course c : courseList) {
-                    if ((sC.getDescriptiveTitle()).compareToIgnoreCase(c.getDescriptiveTitle()) == 0) {
-                        c.setGrades(sC.getGrades());
-                        c.setCourseNumber(sC.getCourseNumber());
-                        break;
-                    }
+            ShiftEngine shiftEngine = new ShiftEngine(courseIndexOf(courseList));
+            ShiftEngine.Result shiftResult = shiftEngine.match(shifterCourseList);
+            List<ShiftEngine.Match> similarMatches = shiftResult.similarMatches();
+            if (!similarMatches.isEmpty()) {
+                showSimilarMatches(similarMatches);
+                if (interactive) {
+                    System.out.print("Carry these courses over?(y/n): ");
+                    if (!Character.toString(readWord().charAt(0)).equalsIgnoreCase("y"))
+                        shiftResult = shiftEngine.match(shifterCourseList, false);
                 }
             }
-            System.out.println();
-            System.out.print("YOUR COURSES");
-            showShifterCourses(shifterCourseList);
+            CurriculumVersion unshifted = CurriculumVersion.ofCourses(courseList);
+            try {
+                ShiftEngine.applyMatches(shiftResult);
+                System.out.println();
+                System.out.print("YOUR COURSES");
+                showShifterCourses(shifterCourseList);
 
-            uncarriedCourses(courseList, shifterCourseList);
+                uncarriedCourses(courseList, shiftResult);
+            } catch (RuntimeException exception) {
+                restore(courseList, unshifted);
+                System.out.println();
+                System.out.print("The shift failed and was undone: " + exception);
+                System.out.println();
+                return;
+            }
 
             System.out.println();
             System.out.print("You have successfully shifted courses!");
@@ -298,6 +582,50 @@ public class CourseAdministration {
         System.out.println();
     }
 
+    /**
+     * This method puts a course list back to a version taken of it. The courses added since are
+     * removed, and the courses changed since get their values back through their setters, so the
+     * derived structures and the change journal follow.
+     *
+     * @param courseList the ArrayList of courses
+     * @param version    the version of the list to go back to
+     */
+    private static void restore(ArrayList<Course> courseList, CurriculumVersion version) {
+        if (courseList.size() > version.size())
+            removeCourses(courseList, new ArrayList<>(courseList.subList(version.size(), courseList.size())));
+        for (int i = 0; i < version.size(); i++) {
+            Course course = courseList.get(i);
+            CourseRecord record = version.get(i);
+            if (!record.courseNumber().equals(course.getCourseNumber())) course.setCourseNumber(record.courseNumber());
+            if (!record.descriptiveTitle().equals(course.getDescriptiveTitle()))
+                course.setDescriptiveTitle(record.descriptiveTitle());
+            if (record.packed() == course.getPacked()) continue;
+            course.setYear(record.year());
+            course.setTerm(record.term());
+            course.setUnits(record.units());
+            course.setIsElective(record.isElective());
+            if (record.isGraded()) course.setGrades(record.grades());
+            else course.clearGrades();
+        }
+    }
+
+    /**
+     * This method displays the shifter courses matched to a curriculum course by a similar title,
+     * with the confidence of each match.
+     *
+     * @param similarMatches the matches to review
+     */
+    private static void showSimilarMatches(List<ShiftEngine.Match> similarMatches) {
+        System.out.println();
+        System.out.println("SIMILAR TITLES");
+        for (ShiftEngine.Match match : similarMatches) {
+            System.out.printf("%-12s %-50s -> %-12s %-50s %5.1f%%%n",
+                    match.shifterCourse.getCourseNumber(), match.shifterCourse.getDescriptiveTitle(),
+                    match.curriculumCourse.getCourseNumber(), match.curriculumCourse.getDescriptiveTitle(),
+                    match.confidence * 100);
+        }
+    }
+
     /**
      * This method is a very bare-bones way of displaying each course in the courseList
      * <p>
@@ -307,66 +635,42 @@ public class CourseAdministration {
      *
      * @param shifterCourseList the ArrayList of courses from the Shifter.csv file
      */
-    private static void showShifterCourses(ArrayList<Course> shifterCourseList) {
-        System.out.printf("\n%-15s %-110s %-8s %-6s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", "GRADE");
-        for (Course shifterCourse : shifterCourseList) {
-            System.out.println(shifterCourse.toString());
-        }
+    private static void showShifterCourses(List<Course> shifterCourseList) {
+        console.newLine().header(true).rows(shifterCourseList).flush();
     }
 
     /**
-     * This method removes courses with equivalents from the original shifter's ArrayList and sorts out the courses
-     * with no counterparts.
+     * This method sorts out the shifter courses with no counterparts in the curriculum.
      * This function is also in responsible for populating the main course ArrayList with the uncarried courses.
      * <p>
      * METHOD ALGORITHM <br>
-     * 1. Compares each course in the Shifter's ArrayList and the original curriculum ArrayList <br>
-     * 2. If the descriptive titles are the same <br>
-     * Removes the shifter course from the shifter's ArrayList <br>
-     * 3. Shows a list of the uncarried courses <br>
-     * 4. Adds the uncarried course to the main curriculum ArrayList <br>
+     * 1. Takes the uncarried courses found by the shift engine, which are the shifter courses
+     * whose descriptive title matches no course of the curriculum, exactly, by an equivalence or by similarity <br>
+     * 2. Shows a list of the uncarried courses <br>
+     * 3. Adds the uncarried course to the main curriculum ArrayList <br>
      * Adds a prefix to the course name <br>
      * Sets the units of the course to 0
      *
-     * @param shifterCourseList the ArrayList of courses from the Shifter.csv file
-     * @param courseList        the ArrayList of courses from the CurriculumData_Grades.csv file
+     * @param courseList  the ArrayList of courses from the CurriculumData_Grades.csv file
+     * @param shiftResult the matched and uncarried courses of the shifter
      */
-    private static void uncarriedCourses(ArrayList<Course> courseList, ArrayList<Course> shifterCourseList) {
-        int prevSize;
-        int curSize = 0;
-
-        do {
-            prevSize = curSize;
-            for (int i = 0; i < shifterCourseList.size(); i++) {
-                for (Course c : courseList) {
-                    if ((shifterCourseList.get(i)).getDescriptiveTitle().compareToIgnoreCase(c.getDescriptiveTitle()) == 0) {
-                        shifterCourseList.remove(i);
-                        break;
-                    }
-                }
-            }
-            curSize = shifterCourseList.size();
-        } while (prevSize != curSize);
-
+    private static void uncarriedCourses(ArrayList<Course> courseList, ShiftEngine.Result shiftResult) {
         System.out.println();
         System.out.print("UNCARRIED COURSES");
-        showShifterCourses(shifterCourseList);
+        showShifterCourses(shiftResult.uncarried);
 
-        for (Course sC : shifterCourseList) {
-            sC.setCourseNumber("*" + sC.getCourseNumber());
-            sC.setUnits(0);
-            courseList.add(sC);
-        }
+        ShiftEngine.markUncarried(shiftResult);
+        for (Course sC : shiftResult.uncarried) addCourse(courseList, sC);
     }
 
     /**
      * Helper Method that Checks if a Course is failed or not
      *
      * @param course receives the Course instance
-     * @return true if the grade is lesser than 75
+     * @return true if the course has a grade and it is lesser than 75
      */
-    private static boolean isFailedCourse(Course course) {
-        return course.getGrades() < 75 && course.getGrades() != 0;
+    static boolean isFailedCourse(Course course) {
+        return PackedCourse.isFailed(course.getPacked());
     }
 
 
@@ -374,31 +678,32 @@ public class CourseAdministration {
      * This method sorts courses by GPA, either in ascending or descending order.
      * <p>
      * METHOD ALGORITHM: <br>
-     * 1) Create a new ArrayList wherein courses with grades are added. <br>
-     * 2) If choice is 1, return an ArrayList of courses with GPAs in ascending order. <br>
-     * Else, return an ArrayList of courses with GPAs in descending order.
+     * 1) Get the grade ranking of the list, which keeps the graded courses sorted as grades change. <br>
+     * 2) If choice is 1, display the courses with GPAs in ascending order. <br>
+     * Else, display the courses with GPAs in descending order.
      *
      * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
      * @param aOrD       the choice indicating if the ArrayList should be sorted in descending or ascending order
      */
-    private static void sortCoursesByGPA(ArrayList<Course> courseList, int aOrD) {
-        ArrayList<Course> courseListCopy = new ArrayList<>();
-        for (Course c : courseList) {
-            if (c.getGrades() != 0)
-                courseListCopy.add(c);
-        }
-        Collections.sort(courseListCopy);
+    static void sortCoursesByGPA(ArrayList<Course> courseList, int aOrD) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        GradeRanking ranking = gradeRankingOf(courseList);
+        displaySortedCourses((aOrD == 2) ? ranking.descending() : ranking.ascending(), aOrD);
+        Metrics.SORT.record(startNanos, startAllocatedBytes, courseList.size());
+    }
+
+    /**
+     * Helper method that displays courses that are already sorted by grade.
+     *
+     * @param sortedCourseList the sorted courses
+     * @param aOrD             1 if the courses are in ascending order, 2 if in descending order
+     */
+    private static void displaySortedCourses(Iterable<Course> sortedCourseList, int aOrD) {
         switch (aOrD) {
-            case 1 -> System.out.print("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   ASCENDING ORDER");
-            case 2 -> { // Descending Order
-                Collections.reverse(courseListCopy);
-                System.out.print("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   DESCENDING ORDER");
-            }
+            case 1 -> console.text("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   ASCENDING ORDER");
+            case 2 -> console.text("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   DESCENDING ORDER");
         }
-        System.out.printf("\n%-15s %-110s %-8s %-6s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", "GRADE");
-        for (int i = 0; i < 145; i++) System.out.print("-");
-        System.out.println();
-        for (Course c : courseListCopy) System.out.println(c);
+        console.newLine().header(true).rule().rows(sortedCourseList).flush();
     }
 
     /**
@@ -407,6 +712,7 @@ public class CourseAdministration {
      * 2. Prompt user if they want to edit an elective <br>
      * if choice == 1, invoke the editCourse method,
      * then print the updated electives list <br>
+     * if choice == 3, reload the elective rules and reclassify the courses <br>
      * else return to main menu <br>
      *
      * @param courseList the passed ArrayList contains the courses parsed from the CSV
@@ -415,60 +721,268 @@ public class CourseAdministration {
     private static void manageElectiveCourses(ArrayList<Course> courseList) {
         int choice;
         do {
-            System.out.println("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   ELECTIVE COURSES");
-            for (int i = 0; i < 145; i++) System.out.print("-");
-            System.out.printf("\n%-15s %-110s %-8s %-6s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", "GRADE");
-            for (Course c : courseList)
-                if (c.getIsElective())
-                    System.out.println(c);
+            showElectiveCourses(courseList);
 
             System.out.println("\nWhat would you like to do?\n");
             System.out.println("1. Manage an elective course.");
-            System.out.println("2. Return to the main menu.\n");
+            System.out.println("2. Return to the main menu.");
+            System.out.println("3. Reload the elective rules from " + ElectiveRules.CONFIG_FILE + ".\n");
             choice = acceptByteInput();
-            if (choice < 1 || choice > 2)
-                System.out.println("The number must be from 1 to 2.");
+            if (choice < 1 || choice > 3)
+                System.out.println("The number must be from 1 to 3.");
 
             if (choice == 1) {
                 editCourse(courseList);
+            } else if (choice == 3 && useElectiveRules(Path.of(ElectiveRules.CONFIG_FILE))) {
+                System.out.println(reclassifyElectives(courseList) + " courses were reclassified.");
             }
         } while (choice != 2);
     }
 
+    /**
+     * This method displays the elective courses under the elective courses header.
+     *
+     * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
+     */
+    static void showElectiveCourses(ArrayList<Course> courseList) {
+        console.line("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   ELECTIVE COURSES").rule().header(true)
+                .rows(courseQueryOf(courseList).electiveCourses()).flush();
+    }
+
     /**
      * This method shows courses that have no GPA.
      * <p>
      * METHOD ALGORITHM: <br>
-     * 1) Print out courses from courseList that do not have a GPA.
+     * 1) Print out the courses of the ungraded bitmap of the course query.
+     *
+     * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
+     */
+    static void showCoursesWithoutGPA(ArrayList<Course> courseList) {
+        console.line("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   SHOWING COURSES WITHOUT GPA").rule().header(true)
+                .rows(courseQueryOf(courseList).ungradedCourses()).flush();
+    }
+
+    /**
+     * This method shows the courses matching a query, such as "failed elective year=3 term=2".
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1) Parse the conditions of the query (see CourseQuery). <br>
+     * 2) AND the bitmaps of the conditions and test the grade and units comparisons. <br>
+     * 3) Display the matching courses in curriculum order.
      *
      * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
+     * @param query      the conditions of the query
+     * @throws IllegalArgumentException if a condition is not understood
      */
-    private static void showCoursesWithoutGPA(ArrayList<Course> courseList) {
-        System.out.println("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   SHOWING COURSES WITHOUT GPA");
-        for (int i = 0; i < 145; i++) System.out.print("-");
-        System.out.printf("\n%-15s %-110s %-8s %-6s\n", "COURSE NO.", "COURSE DESCRIPTION", "UNITS", "GRADE");
-        for (Course c : courseList)
-            if (c.getGrades() == 0.0) System.out.println(c);
+    static void showQueriedCourses(ArrayList<Course> courseList, String query) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        List<Course> matches = courseQueryOf(courseList).find(query);
+        Metrics.QUERY.record(startNanos, startAllocatedBytes, courseList.size());
+        console.line("\t\t\t\t\t\t\t\t\t\t\t\t\t\t   QUERY: " + query.strip()).rule().header(true)
+                .rows(matches).flush();
+        System.out.println(matches.size() + " of " + courseList.size() + " courses match.");
+    }
+
+    /**
+     * This method asks for a query and shows the courses matching it, until a valid query is entered.
+     *
+     * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
+     */
+    private static void queryCourses(ArrayList<Course> courseList) {
+        System.out.println("Conditions: failed, passed, graded, ungraded, elective, year=N, term=N,");
+        System.out.println("grade or units compared with = != < <= > >= (e.g. grade>=90), each optionally preceded by \"not\".");
+        while (true) {
+            String query = acceptStringInput("Enter the conditions (ex. failed elective year=3 term=2): ");
+            try {
+                showQueriedCourses(courseList, query);
+                return;
+            } catch (IllegalArgumentException exception) {
+                System.out.println("Invalid query: " + exception.getMessage() + ". Try again.");
+            }
+        }
     }
 
     /**
      * METHOD ALGORITHM: <br>
-     * 1. Use a for-each loop to iterate for every Course object in the loop <br>
-     * 2. If a course object's course number is equal to the search key, return this <br>
-     * course object and terminate this method <br>
-     * 3. Else return an empty course
+     * 1. Gets the course index of the list <br>
+     * 2. Looks up the search key in the course number index, ignoring case <br>
+     * 3. Returns the first matching course, or null if there is none
      *
      * @param courseList the passed ArrayList contains the courses parsed from the CSV
      * @param searchKey  a String parameter to be used for searching the ArrayList
-     * @return return a matching course, or if no course is found, return an empty Course object
+     * @return return a matching course, or null if no course is found
      */
-    private static Course searchCourseList(ArrayList<Course> courseList,
-                                           String searchKey) {
-        for (Course course : courseList) {
-            if (course.getCourseNumber().equalsIgnoreCase(searchKey))
-                return course;
+    static Course searchCourseList(ArrayList<Course> courseList,
+                                   String searchKey) {
+        return courseIndexOf(courseList).findByCourseNumber(searchKey);
+    }
+
+    /**
+     * This method returns the CourseIndex of a course list.
+     *
+     * @param courseList the ArrayList of courses to be indexed
+     * @return the index of the list
+     */
+    static CourseIndex courseIndexOf(ArrayList<Course> courseList) {
+        refreshDerivedState(courseList);
+        return courseIndex;
+    }
+
+    /**
+     * This method returns the running totals (GPA, units, failed and ungraded counts) of a course list.
+     *
+     * @param courseList the ArrayList of courses to be aggregated
+     * @return the aggregates of the list
+     */
+    static TranscriptAggregates aggregatesOf(ArrayList<Course> courseList) {
+        refreshDerivedState(courseList);
+        return transcriptAggregates;
+    }
+
+    /**
+     * This method returns the graded courses of a course list, kept sorted by grade.
+     *
+     * @param courseList the ArrayList of courses to be ranked
+     * @return the grade ranking of the list
+     */
+    static GradeRanking gradeRankingOf(ArrayList<Course> courseList) {
+        refreshDerivedState(courseList);
+        return gradeRanking;
+    }
+
+    /**
+     * This method returns the bitmap query engine of a course list.
+     *
+     * @param courseList the ArrayList of courses to be queried
+     * @return the course query of the list
+     */
+    static CourseQuery courseQueryOf(ArrayList<Course> courseList) {
+        refreshDerivedState(courseList);
+        return courseQuery;
+    }
+
+    /**
+     * This method returns the course number and title search of a course list.
+     *
+     * @param courseList the ArrayList of courses to be searched
+     * @return the course search of the list
+     */
+    static CourseSearch courseSearchOf(ArrayList<Course> courseList) {
+        refreshDerivedState(courseList);
+        return courseSearch;
+    }
+
+    /**
+     * This method shows the courses whose number starts with a text or whose title contains it,
+     * best match first.
+     *
+     * @param courseList the ArrayList of courses
+     * @param text       the beginning of a course number, or a part of a title
+     * @param limit      the largest number of courses to show
+     * @return the number of courses shown
+     */
+    static int showSearchResults(ArrayList<Course> courseList, String text, int limit) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        List<Course> results = courseSearchOf(courseList).search(text, limit);
+        Metrics.SEARCH.record(startNanos, startAllocatedBytes, courseList.size());
+        if (!results.isEmpty()) console.header(true).rows(results).flush();
+        return results.size();
+    }
+
+    /**
+     * Helper method that tells the user a course number was not found and suggests the courses
+     * they may have meant.
+     *
+     * @param courseList the ArrayList of courses
+     * @param searchKey  the course number that was not found
+     */
+    private static void suggestCourses(ArrayList<Course> courseList, String searchKey) {
+        if (searchKey.isBlank()) return;
+        System.out.println("Did you mean:");
+        if (showSearchResults(courseList, searchKey, SUGGESTIONS) == 0) System.out.println("No similar course was found.");
+    }
+
+    /**
+     * This method appends a course to a course list and to the structures derived from it.
+     *
+     * @param courseList the ArrayList of courses
+     * @param course     the course to be added
+     */
+    static void addCourse(ArrayList<Course> courseList, Course course) {
+        refreshDerivedState(courseList);
+        courseList.add(course);
+        courseIndex.add(course);
+        transcriptAggregates.add(course);
+        gradeRanking.add(course);
+        courseQuery.add(course);
+        courseSearch.add(course);
+        derivedModifications = modificationsOf(courseList);
+        if (changeJournal != null && courseList == journaledCourseList) changeJournal.courseAdded(course);
+    }
+
+    /**
+     * This method removes courses from a course list and from the structures derived from it.
+     * <p>
+     * The list is walked once however many courses are removed, and the index and the change
+     * journal take them as one batch, so removing k courses does not cost k walks of the list.
+     *
+     * @param courseList the ArrayList of courses
+     * @param courses    the courses to be removed
+     * @return the number of courses that were in the list
+     */
+    static int removeCourses(ArrayList<Course> courseList, Collection<Course> courses) {
+        if (courses.isEmpty()) return 0;
+        refreshDerivedState(courseList);
+        Set<Course> removing = Collections.newSetFromMap(new IdentityHashMap<>());
+        removing.addAll(courses);
+        List<Course> removed = new ArrayList<>(removing.size());
+        courseList.removeIf(course -> removing.remove(course) && removed.add(course));
+        if (removed.isEmpty()) return 0;
+        courseIndex.removeAll(removed);
+        for (Course course : removed) {
+            transcriptAggregates.remove(course);
+            gradeRanking.remove(course);
+            courseQuery.remove(course);
+            courseSearch.remove(course);
+        }
+        derivedModifications = modificationsOf(courseList);
+        if (changeJournal != null && courseList == journaledCourseList) changeJournal.coursesRemoved(removed);
+        return removed.size();
+    }
+
+    /**
+     * This method makes sure the index, aggregates, grade ranking, course query and course search belong to the given course list.
+     * <p>
+     * The structures of the last list are kept and reused; they follow the changes made through
+     * the setters of its courses. They are rebuilt when another list is passed in, or when the
+     * list was modified without going through addCourse or removeCourses: a CourseList counts its
+     * modifications, including replaced courses. The size is all that is known of other lists.
+     *
+     * @param courseList the ArrayList of courses
+     */
+    private static void refreshDerivedState(ArrayList<Course> courseList) {
+        if (courseList == derivedCourseList && modificationsOf(courseList) == derivedModifications) return;
+        if (derivedCourseList != null) {
+            courseIndex.detach();
+            transcriptAggregates.detach();
+            gradeRanking.detach();
+            courseQuery.detach();
+            courseSearch.detach();
         }
-        return new Course();
+        courseIndex = CourseIndex.of(courseList);
+        transcriptAggregates = TranscriptAggregates.of(courseList);
+        gradeRanking = GradeRanking.of(courseList);
+        courseQuery = CourseQuery.of(courseList);
+        courseSearch = CourseSearch.of(courseList);
+        derivedCourseList = courseList;
+        derivedModifications = modificationsOf(courseList);
+    }
+
+    /**
+     * This method returns the modification count of a CourseList, or the size of any other list.
+     */
+    private static int modificationsOf(ArrayList<Course> courseList) {
+        return (courseList instanceof CourseList counted) ? counted.modifications() : courseList.size();
     }
 
     /**
@@ -477,7 +991,8 @@ public class CourseAdministration {
      * METHOD ALGORITHM: <br>
      * 1) Displays the list of courses without GPAs <br>
      * 2) Asks the user to input a course number from the displayed list <br>
-     * 3) If the inputted course number is not found or null, the user is asked to input a valid input <br>
+     * 3) If the inputted course number is not found, the closest course numbers and titles are
+     * suggested and the user is asked to input a valid input <br>
      * 4) Asks the user to input GPA for the selected course number. <br>
      *
      * @param courseList the ArrayList of courses from the CurriculumData_Grades.csv file
@@ -485,16 +1000,16 @@ public class CourseAdministration {
     private static void inputGrades(ArrayList<Course> courseList) {
         Course selectedCourse;
         String searchKey;
+        showCoursesWithoutGPA(courseList);
         do {
-            showCoursesWithoutGPA(courseList);
             searchKey = acceptStringInput("\nEnter a course number: ");
             selectedCourse = searchCourseList(courseList, searchKey);
-            if (selectedCourse.getCourseNumber().equals("")) {
-                System.out.println("Invalid Course Number inputted. Try again.");
-                System.out.print("Press enter to continue.");
-                keyboard.nextLine();
+            if (selectedCourse == null) {
+                System.out.println("Invalid Course Number inputted.");
+                suggestCourses(courseList, searchKey);
+                System.out.println("Try again.");
             }
-        } while (selectedCourse.getCourseNumber().equals(""));
+        } while (selectedCourse == null);
         selectedCourse.setGrades(acceptDoubleInput());
 
     }
@@ -505,7 +1020,8 @@ public class CourseAdministration {
      * METHOD ALGORITHM: <br>
      * 1) Display the courses from courseList. <br>
      * 2) Ask user for the course number to be changed. <br>
-     * 3) If the course entered is null or not found in the list, the user has to input a valid course.
+     * 3) If the course entered is null or not found in the list, the closest course numbers and titles
+     * are suggested and the user has to input a valid course.
      * Else, the user is asked to enter a new course number and its new respective description
      * for the chosen course. <br>
      * 4) Display the new course number and its respective description.
@@ -519,22 +1035,19 @@ public class CourseAdministration {
         do {
             searchKey = acceptStringInput("Enter course number to be changed (ex. CS 122): ");
             courseToBeChanged = searchCourseList(courseList, searchKey);
-            if (courseToBeChanged.getCourseNumber().equals(""))
-                System.out.println("Invalid Course Number inputted. Try again.");
-            else {
-                for (Course c : courseList) {
-                    if (c.getCourseNumber().compareToIgnoreCase(courseToBeChanged.getCourseNumber()) == 0) {
-                        String newCN = acceptStringInput("Enter the new course number: ");
-                        String newTitle = acceptStringInput("Enter the new descriptive title: ");
-                        c.setCourseNumber(newCN);
-                        c.setDescriptiveTitle(newTitle);
-                        System.out.println("New course number: " + c.getCourseNumber());
-                        System.out.println("New course description: " + c.getDescriptiveTitle());
-                        break;
-                    }
-                }
+            if (courseToBeChanged == null) {
+                System.out.println("Invalid Course Number inputted.");
+                suggestCourses(courseList, searchKey);
+                System.out.println("Try again.");
+            } else {
+                String newCN = acceptStringInput("Enter the new course number: ");
+                String newTitle = acceptStringInput("Enter the new descriptive title: ");
+                courseToBeChanged.setCourseNumber(newCN);
+                courseToBeChanged.setDescriptiveTitle(newTitle);
+                System.out.println("New course number: " + courseToBeChanged.getCourseNumber());
+                System.out.println("New course description: " + courseToBeChanged.getDescriptiveTitle());
             }
-        } while (courseToBeChanged.getCourseNumber().equals(""));
+        } while (courseToBeChanged == null);
     }
 
     /**
@@ -568,7 +1081,7 @@ public class CourseAdministration {
      * <p>
      * METHOD DESCRIPTION: <br>
      * Accepts the input given by the user within the
-     * range of the double data type. The method is
+     * range a course can store (-327.68 to 327.67). The method is
      * enclosed in a loop and will continue till the
      * user either enters a valid input or hits an error.
      *
@@ -579,7 +1092,8 @@ public class CourseAdministration {
         while (true) {
             try {
                 input = Double.parseDouble(acceptStringInput("Input GPA: "));
-                if (input != DOUBLE_SENTINEL_VALUE) return input;
+                if (PackedCourse.fits(input)) return input;
+                System.out.println("The GPA must be between " + PackedCourse.MIN_VALUE + " and " + PackedCourse.MAX_VALUE + ".");
             } catch (NumberFormatException exception) {
                 System.out.println("You have entered an invalid Double value.");
             } catch (Exception exception) {
@@ -599,17 +1113,57 @@ public class CourseAdministration {
         String userInput;
         while (true) {
             System.out.print(message);
-            userInput = keyboard.nextLine();
+            userInput = readLine();
             if (userInput != null) return userInput;
         }
     }
 
+    /**
+     * This method reads a line from the keyboard. The time spent waiting for it is added to
+     * keyboardNanos, so the metrics of a menu item count only its own work.
+     *
+     * @return the line, without its line separator
+     */
+    private static String readLine() {
+        long startNanos = System.nanoTime();
+        try {
+            return keyboard.nextLine();
+        } finally {
+            keyboardNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * This method reads a word from the keyboard, adding the time spent waiting for it to
+     * keyboardNanos like readLine.
+     *
+     * @return the word
+     */
+    private static String readWord() {
+        long startNanos = System.nanoTime();
+        try {
+            return keyboard.next();
+        } finally {
+            keyboardNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * Buffer between two pages of a long table
+     */
+    private static void pageBuffer() {
+        if (!interactive) return;
+        System.out.print("Press enter key to see more courses...");
+        readLine();
+    }
+
     /**
      * Serves as buffer in between operations.
      */
     private static void inputBuffer() {
+        if (!interactive) return;
         System.out.print("Press enter key to choose another item.");
-        keyboard.nextLine();
+        readLine();
         System.out.println();
     }
 
@@ -637,7 +1191,7 @@ public class CourseAdministration {
                 + "\n Lawrence Miguel" + man + "\n Rhyen Natividad" + man);
         System.out.println("\n");
         System.out.print("Please press a key to start the program...");
-        keyboard.nextLine();
+        readLine();
 
         System.out.println();
         System.out.println();
@@ -663,14 +1217,85 @@ public class CourseAdministration {
                  7: Shift from another program
                  8: Save changes
                  9: Quit
+                 10: Query courses (ex. failed elective year=3 term=2)
                 [--------------------------------------------------]
                 """);
     }
 
-    private static void searchForElectives(ArrayList<Course> courseList) {
+    /**
+     * This method marks the electives of a course list again with the current elective rules,
+     * after the rules have changed. Only the courses whose flag changes are set, so the indexes
+     * and the change journal see just those.
+     *
+     * @param courseList the ArrayList of courses
+     * @return the number of courses whose elective flag changed
+     */
+    static int reclassifyElectives(ArrayList<Course> courseList) {
+        ElectiveRules rules = ElectiveRules.current();
+        int changed = 0;
         for (Course course : courseList) {
-            if (course.getCourseNumber().equalsIgnoreCase("CSE"))
-                course.setIsElective(true);
+            boolean isElective = rules.isElective(course.getCourseNumber(), course.getDescriptiveTitle());
+            if (isElective != course.getIsElective()) {
+                course.setIsElective(isElective);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * This method makes the rules of a rule file the current elective rules. Without the file,
+     * the default rules are used.
+     *
+     * @param ruleFile the rule file (see ElectiveRules)
+     * @return true if the rules were read, false if the file is invalid and the rules were kept
+     */
+    static boolean useElectiveRules(Path ruleFile) {
+        try {
+            ElectiveRules.use(Files.exists(ruleFile) ? ElectiveRules.load(ruleFile) : ElectiveRules.DEFAULT);
+            return true;
+        } catch (IOException ioException) {
+            System.out.println("Could not read " + ruleFile + ": " + ioException);
+        } catch (IllegalArgumentException exception) {
+            System.out.println("Invalid rule in " + ruleFile + ", " + exception.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * This method makes the equivalences of an equivalence file the ones shifts use. Without the
+     * file, there are none.
+     *
+     * @param equivalenceFile the equivalence file (see TitleEquivalences)
+     * @return true if the equivalences were read, false if the file is invalid and the equivalences were kept
+     */
+    static boolean useTitleEquivalences(Path equivalenceFile) {
+        try {
+            TitleEquivalences.use(Files.exists(equivalenceFile) ? TitleEquivalences.load(equivalenceFile) : TitleEquivalences.NONE);
+            return true;
+        } catch (IOException ioException) {
+            System.out.println("Could not read " + equivalenceFile + ": " + ioException);
+        } catch (IllegalArgumentException exception) {
+            System.out.println("Invalid equivalence in " + equivalenceFile + ", " + exception.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * This method loads every transcript matched by a directory or glob in parallel
+     * and prints the load summary.
+     *
+     * @param directoryOrGlob the directory of transcripts, or a glob such as "transcripts/*.csv"
+     * @return the summary of the load, or null if the files could not be listed
+     */
+    static TranscriptIngest.Summary ingestTranscripts(String directoryOrGlob) {
+        try {
+            TranscriptIngest.Summary summary = TranscriptIngest.ingest(TranscriptIngest.findFiles(directoryOrGlob));
+            summary.print();
+            return summary;
+        } catch (IOException ioException) {
+            System.out.println("I/O error: " + ioException);
+            return null;
         }
     }
 
@@ -678,38 +1303,78 @@ public class CourseAdministration {
      * Main Method.
      * <p>
      * METHOD ALGORITHM: <br>
+     * 0. Reads the elective rules from electives.rules, if the file exists <br>
+     * 1. If started with "--ingest directoryOrGlob", loads those transcripts in parallel and exits <br>
+     * 2. If started with "--batch", runs the given commands without prompting (see BatchCommands) and exits <br>
+     * 3. Otherwise loads the curriculum, watches it and the shifter file for changes on disk, and
+     * runs the interactive menu, applying those changes before each action
      *
      * @param args command line argument
      */
     public static void main(String[] args) {
-        ArrayList<Course> courseList = parseCSV("CurriculumData_Grades.csv");
-        searchForElectives(courseList);
+        useElectiveRules(Path.of(ElectiveRules.CONFIG_FILE));
+        useTitleEquivalences(Path.of(TitleEquivalences.CONFIG_FILE));
+        if (args.length == 2 && args[0].equals("--ingest")) {
+            ingestTranscripts(args[1]);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            if (CurriculumServer.run(Arrays.copyOfRange(args, 1, args.length)) != 0) System.exit(1);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            interactive = false;
+            int failures;
+            try {
+                failures = BatchCommands.run(Arrays.copyOfRange(args, 1, args.length));
+            } finally {
+                if (changeJournal != null) changeJournal.close();
+            }
+            if (failures > 0) System.exit(1);
+            return;
+        }
+        ArrayList<Course> courseList = openCurriculum("CurriculumData_Grades.csv");
+        watchFiles("CurriculumData_Grades.csv", "Shifter.csv");
         showIntroduction();
         byte choice = 0;
-        do {
-            showMenu();
-            try {
-                choice = acceptByteInput();
-                if (choice < 1 || choice > 10)
-                    System.out.println("The number must be from 1 to 10.");
-                switch (choice) {
-                    case 1 -> showCourses(courseList, false);
-                    case 2 -> showCourses(courseList, true);
-                    case 3 -> manageElectiveCourses(courseList);
-                    case 4 -> showFailedCourses(courseList);
-                    case 5 -> inputGrades(courseList);
-                    case 6 -> {
-                        showCourses(courseList, false);
-                        editCourse(courseList);
+        // The watcher and the journal are closed even if an action fails, so a compaction or a
+        // copy of the curriculum file still being written is finished
+        try {
+            do {
+                showMenu();
+                try {
+                    choice = acceptByteInput();
+                    if (choice < 1 || choice > 10)
+                        System.out.println("The number must be from 1 to 10.");
+                    applyFileChanges(courseList);
+                    finishSave(false);
+                    long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+                    keyboardNanos = 0;
+                    switch (choice) {
+                        case 1 -> showCourses(courseList, false);
+                        case 2 -> showCourses(courseList, true);
+                        case 3 -> manageElectiveCourses(courseList);
+                        case 4 -> showFailedCourses(courseList);
+                        case 5 -> inputGrades(courseList);
+                        case 6 -> {
+                            showCourses(courseList, false);
+                            editCourse(courseList);
+                        }
+                        case 7 -> shiftCourse(courseList, "Shifter.csv");
+                        case 8 -> saveChangesToFile(courseList);
+                        case 10 -> queryCourses(courseList);
                     }
-                    case 7 -> shiftCourse(courseList);
-                    case 8 -> saveChangesToFile(courseList);
-
+                    // Waiting for the keyboard is left out, as if the item had started that much later
+                    Metrics.recordMenu(choice, startNanos + keyboardNanos, startAllocatedBytes, courseList.size());
+                    if (choice % 3 != 0) inputBuffer();
+                } catch (NumberFormatException x) {
+                    System.out.println("You entered an invalid integer.");
                 }
-                if (choice % 3 != 0) inputBuffer();
-            } catch (NumberFormatException x) {
-                System.out.println("You entered an invalid integer.");
-            }
-        } while (choice != 9);
+            } while (choice != 9);
+        } finally {
+            finishSave(true);
+            if (curriculumWatcher != null) curriculumWatcher.close();
+            if (changeJournal != null) changeJournal.close();
+        }
     }
 }
@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes the CSV and TXT copies of a course list in a single pass over the courses.
+ * <p>
+ * Each row is appended to a text buffer per format with CourseFormat and the buffers are
+ * encoded to UTF-8 and written to their file channels in blocks. Both files are written to
+ * temporary files next to them, forced to disk and then moved over the old copies, so a failed
+ * or interrupted export leaves the previous copies as they were.
+ */
+class CourseExporter {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    // The column headers of the TXT copy, as "%-16s %-120s %-10s %-7s"
+    private static final String TXT_HEADER = textHeader();
+
+    private CourseExporter() {
+    }
+
+    /**
+     * This method writes the CSV and TXT copies of a list of courses.
+     *
+     * @param courseList the courses to be written
+     * @param csvFile    the CSV file; the TXT file gets the same name with a .txt extension
+     * @throws IOException if one of the files cannot be written
+     */
+    static void export(List<Course> courseList, Path csvFile) throws IOException {
+        export(courseList, csvFile, null);
+    }
+
+    /**
+     * This method writes the CSV and TXT copies of a list of courses.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Opens a temporary file for each format <br>
+     * 2. For each course, appends its CSV row and its TXT row (and the console row if echoed) <br>
+     * 3. Whenever a buffer is full, it is encoded and written to its channel <br>
+     * 4. The temporary files are forced to disk and moved over the CSV and TXT files <br>
+     * 5. If anything fails, the temporary files are deleted and the old copies are kept
+     * <p>
+     * The CSV file starts with the same header as CurriculumData_Grades.csv, so it can be read
+     * back with parseCSV.
+     *
+     * @param courseList the courses to be written
+     * @param csvFile    the CSV file; the TXT file gets the same name with a .txt extension
+     * @param echo       where to print every course as it is written, or null to print nothing
+     * @throws IOException if one of the files cannot be written
+     */
+    static void export(List<Course> courseList, Path csvFile, PrintStream echo) throws IOException {
+        Path textFile = textFileOf(csvFile);
+        Path csvTemporary = temporaryFileOf(csvFile);
+        Path textTemporary = temporaryFileOf(textFile);
+        try {
+            try (ChannelSink csv = new ChannelSink(csvTemporary);
+                 ChannelSink text = new ChannelSink(textTemporary)) {
+                csv.text.append(CourseFormat.CSV_HEADER).append(System.lineSeparator());
+                text.text.append(TXT_HEADER);
+                StringBuilder console = (echo == null) ? null : new StringBuilder(BLOCK_SIZE);
+
+                for (Course course : courseList) {
+                    CourseFormat.appendCsvRow(csv.text, course).append(System.lineSeparator());
+                    int start = text.text.length();
+                    CourseFormat.appendCourse(text.text, course).append(System.lineSeparator());
+                    if (console != null) {
+                        console.append(text.text, start, text.text.length());
+                        if (console.length() >= BLOCK_SIZE) flush(console, echo);
+                    }
+                    csv.flushIfFull();
+                    text.flushIfFull();
+                }
+                csv.finish();
+                text.finish();
+                if (console != null) flush(console, echo);
+            }
+            Files.move(csvTemporary, csvFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(textTemporary, textFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(csvTemporary);
+            Files.deleteIfExists(textTemporary);
+        }
+    }
+
+    /**
+     * This method writes only the CSV copy of a list of courses, for files that are read back
+     * with parseCSV but never shown to the user, such as the snapshots of the change journal.
+     *
+     * @param courseList the courses to be written
+     * @param csvFile    the CSV file
+     * @throws IOException if the file cannot be written
+     */
+    static void exportCsv(List<Course> courseList, Path csvFile) throws IOException {
+        Path csvTemporary = temporaryFileOf(csvFile);
+        try {
+            try (ChannelSink csv = new ChannelSink(csvTemporary)) {
+                csv.text.append(CourseFormat.CSV_HEADER).append(System.lineSeparator());
+                for (Course course : courseList) {
+                    CourseFormat.appendCsvRow(csv.text, course).append(System.lineSeparator());
+                    csv.flushIfFull();
+                }
+                csv.finish();
+            }
+            Files.move(csvTemporary, csvFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(csvTemporary);
+        }
+    }
+
+    /**
+     * This method returns the TXT copy that belongs to a CSV copy, e.g. Student_Copy.txt for Student_Copy.csv.
+     */
+    static Path textFileOf(Path csvFile) {
+        String csvName = csvFile.getFileName().toString();
+        int dot = csvName.lastIndexOf('.');
+        return csvFile.resolveSibling(((dot < 0) ? csvName : csvName.substring(0, dot)) + ".txt");
+    }
+
+    private static String textHeader() {
+        StringBuilder header = new StringBuilder();
+        CourseFormat.appendPadded(header, "COURSE NO.", 16).append(' ');
+        CourseFormat.appendPadded(header, "COURSE DESCRIPTION", 120).append(' ');
+        CourseFormat.appendPadded(header, "UNITS", 10).append(' ');
+        return CourseFormat.appendPadded(header, "GRADE", 7).append('\n').toString();
+    }
+
+    private static Path temporaryFileOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private static void flush(StringBuilder console, PrintStream out) {
+        out.append(console);
+        out.flush();
+        console.setLength(0);
+    }
+
+    /**
+     * A text buffer in front of a file channel. The text is encoded to UTF-8 and written
+     * whenever it grows past one block.
+     */
+    private static final class ChannelSink implements AutoCloseable {
+        final StringBuilder text = new StringBuilder(BLOCK_SIZE + 1024);
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BLOCK_SIZE * 3);
+
+        ChannelSink(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void flushIfFull() throws IOException {
+            if (text.length() >= BLOCK_SIZE) flush();
+        }
+
+        /**
+         * This method writes the rest of the text and forces the file to disk.
+         */
+        void finish() throws IOException {
+            flush();
+            channel.force(true);
+        }
+
+        /**
+         * This method encodes the buffered text, which always ends at a row boundary, and writes it.
+         */
+        private void flush() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, true);
+                if (result.isError()) result.throwException();
+                write();
+            } while (result.isOverflow());
+            while (encoder.flush(bytes).isOverflow()) write();
+            write();
+            text.setLength(0);
+        }
+
+        private void write() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) channel.write(bytes);
+            bytes.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Appends course rows and their fields to a StringBuilder without String.format.
+ * <p>
+ * The rows come out exactly as Course.toString and the CSV copy files have always written
+ * them, but no Formatter, format string or intermediate String is created per row.
+ */
+class CourseFormat {
+    static final String CSV_HEADER =
+            "year,\"term(1=first term, 2=second term, 3=short term)\",course number,descriptive title,units,grade";
+
+    private CourseFormat() {
+    }
+
+    /**
+     * This method appends a course as Course.toString formats it:
+     * "%-15s %-110s %-8.1f %-6s" of course number, title, units and grade (N\A without a grade).
+     *
+     * @param out    the builder to append to
+     * @param course the course to append
+     * @return the builder
+     */
+    static StringBuilder appendCourse(StringBuilder out, CourseView course) {
+        appendPadded(out, course.getCourseNumber(), 15).append(' ');
+        appendPadded(out, course.getDescriptiveTitle(), 110).append(' ');
+        int start = out.length();
+        appendPadded(appendFixed1(out, course.getUnits()), start, 8).append(' ');
+        start = out.length();
+        if (!course.isGraded()) out.append("N\\A");
+        else out.append(course.getGrades());
+        return appendPadded(out, start, 6);
+    }
+
+    /**
+     * This method appends a course as a row of the CSV copy file: year, term, course number,
+     * title, units and grade (empty without a grade).
+     *
+     * @param out    the builder to append to
+     * @param course the course to append
+     * @return the builder
+     */
+    static StringBuilder appendCsvRow(StringBuilder out, CourseView course) {
+        out.append(course.getYear()).append(',').append(course.getTerm()).append(',');
+        appendCsvField(out, course.getCourseNumber()).append(',');
+        appendCsvField(out, course.getDescriptiveTitle()).append(',');
+        out.append(course.getUnits()).append(',');
+        if (course.isGraded()) out.append(course.getGrades());
+        return out;
+    }
+
+    /**
+     * This method appends a CSV field, quoted if it contains a comma, a quote or a line break.
+     *
+     * @param out   the builder to append to
+     * @param value the field value
+     * @return the builder
+     */
+    static StringBuilder appendCsvField(StringBuilder out, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return out.append(value);
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    /**
+     * This method appends a value left-aligned in a column, like %-Ns. Longer values are not cut.
+     *
+     * @param out   the builder to append to
+     * @param value the value
+     * @param width the column width
+     * @return the builder
+     */
+    static StringBuilder appendPadded(StringBuilder out, String value, int width) {
+        return appendPadded(out.append(value), out.length() - value.length(), width);
+    }
+
+    /**
+     * This method pads everything appended since start with spaces up to the column width.
+     *
+     * @param out   the builder to pad
+     * @param start where the column starts in the builder
+     * @param width the column width
+     * @return the builder
+     */
+    static StringBuilder appendPadded(StringBuilder out, int start, int width) {
+        for (int i = out.length() - start; i < width; i++) out.append(' ');
+        return out;
+    }
+
+    /**
+     * This method appends a number with one decimal place, rounded half up like %.1f.
+     * <p>
+     * Units and grades usually have at most one decimal already, so the digits of
+     * Double.toString are appended as they are. Other values are rounded through BigDecimal.
+     *
+     * @param out   the builder to append to
+     * @param value the number
+     * @return the builder
+     */
+    static StringBuilder appendFixed1(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return out.append(value);
+        String digits = Double.toString(value);
+        int dot = digits.indexOf('.');
+        if (dot == digits.length() - 2 && digits.indexOf('E') < 0) return out.append(digits);
+
+        BigDecimal rounded = new BigDecimal(digits).setScale(1, RoundingMode.HALF_UP);
+        if (rounded.signum() == 0 && value < 0) out.append('-');
+        return out.append(rounded.toPlainString());
+    }
+}
@@ -0,0 +1,334 @@
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hash and secondary indexes over a list of courses.
+ * <p>
+ * Three indexes are kept: course number (ignoring case), year and term, and descriptive
+ * title (ignoring case). The index registers itself as a CourseListener on every course it
+ * holds, so renaming a course or moving it to another term updates the indexes right away.
+ * Course numbers and titles are keyed by their StringDictionary ids, so a lookup compares ints;
+ * a search key that is not in the dictionary matches nothing and is not added to it.
+ * <p>
+ * The titles can also be looked up by similarity (see TitleMatcher). That index is built the
+ * first time it is used, since only shifts need it, and is kept up to date from then on.
+ */
+class CourseIndex implements CourseListener {
+    private final IdTable byCourseNumber = new IdTable();
+    private final IdTable byTitle = new IdTable();
+    private ArrayList<Course>[][] byTerm = newTermTable(0);
+    // In the order they were added; a Course is only equal to itself, so removing one is O(1)
+    private final LinkedHashSet<Course> courses = new LinkedHashSet<>();
+    // Built by similarTitles on first use
+    private TitleMatcher similarTitles;
+
+    /**
+     * This method builds an index over the given courses.
+     *
+     * @param courseList the courses to index
+     * @return the new index
+     */
+    static CourseIndex of(List<Course> courseList) {
+        CourseIndex index = new CourseIndex();
+        for (Course course : courseList) index.add(course);
+        return index;
+    }
+
+    /**
+     * This method adds a course to every index and starts listening to its changes.
+     *
+     * @param course the course to add
+     */
+    void add(Course course) {
+        courses.add(course);
+        byCourseNumber.add(course.getCourseNumberId(), course);
+        byTitle.add(course.getDescriptiveTitleId(), course);
+        addSimilarTitle(course);
+        termList(course.getYear(), course.getTerm(), true).add(course);
+        course.addListener(this);
+    }
+
+    /**
+     * This method removes courses from every index and stops listening to their changes.
+     * <p>
+     * A year and term can hold a large share of the courses, so each list of a year and term is
+     * walked once for all of its removed courses, not once per course.
+     *
+     * @param removed the courses to remove
+     */
+    void removeAll(Collection<Course> removed) {
+        Set<Course> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<ArrayList<Course>> termLists = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Course course : removed) {
+            if (!courses.remove(course)) continue;
+            gone.add(course);
+            course.removeListener(this);
+            byCourseNumber.remove(course.getCourseNumberId(), course);
+            byTitle.remove(course.getDescriptiveTitleId(), course);
+            removeSimilarTitle(course.getDescriptiveTitleId());
+            ArrayList<Course> termCourses = termList(course.getYear(), course.getTerm(), false);
+            if (termCourses != null) termLists.add(termCourses);
+        }
+        for (ArrayList<Course> termCourses : termLists) termCourses.removeIf(gone::contains);
+    }
+
+    /**
+     * This method stops listening to every indexed course. The index must not be used afterwards.
+     */
+    void detach() {
+        for (Course course : courses) course.removeListener(this);
+        courses.clear();
+    }
+
+    int size() {
+        return courses.size();
+    }
+
+    /**
+     * This method finds a course by its course number, ignoring case.
+     *
+     * @param courseNumber the course number to look up
+     * @return the first course added with that number, or null if there is none
+     */
+    Course findByCourseNumber(String courseNumber) {
+        ArrayList<Course> matches = byCourseNumber.get(StringDictionary.findFoldedId(courseNumber));
+        return (matches == null) ? null : matches.get(0);
+    }
+
+    /**
+     * This method finds every course with the given course number, ignoring case.
+     *
+     * @param courseNumber the course number to look up
+     * @return the matching courses, in the order they were added
+     */
+    List<Course> findAllByCourseNumber(String courseNumber) {
+        return readOnly(byCourseNumber.get(StringDictionary.findFoldedId(courseNumber)));
+    }
+
+    /**
+     * This method finds every course with the given descriptive title, ignoring case.
+     *
+     * @param descriptiveTitle the title to look up
+     * @return the matching courses, in the order they were added
+     */
+    List<Course> findByTitle(String descriptiveTitle) {
+        return findByTitleId(StringDictionary.findFoldedId(descriptiveTitle));
+    }
+
+    /**
+     * This method finds every course whose descriptive title has the given StringDictionary id.
+     *
+     * @param descriptiveTitleId the id, as returned by Course.getDescriptiveTitleId
+     * @return the matching courses, in the order they were added
+     */
+    List<Course> findByTitleId(int descriptiveTitleId) {
+        return readOnly(byTitle.get(descriptiveTitleId));
+    }
+
+    /**
+     * This method returns the index of the titles by similarity, building it on first use. The
+     * ids of its titles are the ids of findByTitleId.
+     *
+     * @return the title matcher, with one entry per distinct title
+     */
+    TitleMatcher similarTitles() {
+        if (similarTitles == null) {
+            similarTitles = new TitleMatcher(TitleMatcher.DEFAULT_THRESHOLD);
+            for (Course course : courses) addSimilarTitle(course);
+        }
+        return similarTitles;
+    }
+
+    /**
+     * This method finds every course offered in the given year and term.
+     *
+     * @param year the year level
+     * @param term the term
+     * @return the matching courses, in the order they were added
+     */
+    List<Course> findByTerm(int year, int term) {
+        return readOnly(termList(year, term, false));
+    }
+
+    @Override
+    public void courseNumberChanged(Course course, String oldCourseNumber) {
+        byCourseNumber.remove(StringDictionary.findFoldedId(oldCourseNumber), course);
+        byCourseNumber.add(course.getCourseNumberId(), course);
+    }
+
+    @Override
+    public void descriptiveTitleChanged(Course course, String oldDescriptiveTitle) {
+        int oldTitleId = StringDictionary.findFoldedId(oldDescriptiveTitle);
+        byTitle.remove(oldTitleId, course);
+        byTitle.add(course.getDescriptiveTitleId(), course);
+        removeSimilarTitle(oldTitleId);
+        addSimilarTitle(course);
+    }
+
+    private void addSimilarTitle(Course course) {
+        int titleId = course.getDescriptiveTitleId();
+        if (similarTitles != null && titleId != StringDictionary.NO_ID && !similarTitles.contains(titleId))
+            similarTitles.add(titleId, course.getDescriptiveTitle());
+    }
+
+    /**
+     * This method removes a title from the similarity index once no course has it.
+     */
+    private void removeSimilarTitle(int titleId) {
+        if (similarTitles != null && byTitle.get(titleId) == null) similarTitles.remove(titleId);
+    }
+
+    @Override
+    public void termChanged(Course course, byte oldTerm) {
+        removeFromTerm(course, course.getYear(), oldTerm);
+        termList(course.getYear(), course.getTerm(), true).add(course);
+    }
+
+    @Override
+    public void yearChanged(Course course, byte oldYear) {
+        removeFromTerm(course, oldYear, course.getTerm());
+        termList(course.getYear(), course.getTerm(), true).add(course);
+    }
+
+    private void removeFromTerm(Course course, int year, int term) {
+        ArrayList<Course> termCourses = termList(year, term, false);
+        if (termCourses != null) termCourses.remove(course);
+    }
+
+    private static List<Course> readOnly(ArrayList<Course> matches) {
+        return (matches == null) ? List.of() : Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * This method returns the list of courses for a year and term.
+     *
+     * @param create whether to create the list (and grow the table) if it does not exist yet
+     * @return the list, or null if it does not exist and create is false
+     */
+    private ArrayList<Course> termList(int year, int term, boolean create) {
+        int y = year & 0xFF, t = term & 0xFF;
+        if (y >= byTerm.length || byTerm[y] == null || t >= byTerm[y].length || byTerm[y][t] == null) {
+            if (!create) return null;
+            if (y >= byTerm.length) {
+                ArrayList<Course>[][] grown = newTermTable(y + 1);
+                System.arraycopy(byTerm, 0, grown, 0, byTerm.length);
+                byTerm = grown;
+            }
+            if (byTerm[y] == null || t >= byTerm[y].length) {
+                ArrayList<Course>[] terms = newCourseLists(t + 1);
+                if (byTerm[y] != null) System.arraycopy(byTerm[y], 0, terms, 0, byTerm[y].length);
+                byTerm[y] = terms;
+            }
+            byTerm[y][t] = new ArrayList<>();
+        }
+        return byTerm[y][t];
+    }
+
+    /**
+     * This method creates the table of course lists by year and term. An array of ArrayList of
+     * Course cannot be created with new, so it is created from its class and cast once here.
+     */
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Course>[][] newTermTable(int years) {
+        return (ArrayList<Course>[][]) Array.newInstance(ArrayList[].class, years);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Course>[] newCourseLists(int terms) {
+        return (ArrayList<Course>[]) Array.newInstance(ArrayList.class, terms);
+    }
+
+    /**
+     * An open-addressing hash table from a StringDictionary id to the courses with that id.
+     * <p>
+     * Empty slots hold NO_ID. Empty entries are deleted by shifting the following entries of the
+     * probe sequence back, so the table never accumulates tombstones.
+     */
+    private static final class IdTable {
+        private int[] keys = new int[16];
+        private ArrayList<Course>[] values = newCourseLists(16);
+        private int size;
+
+        ArrayList<Course> get(int key) {
+            if (key == StringDictionary.NO_ID) return null;
+            int slot = find(key);
+            return (keys[slot] == StringDictionary.NO_ID) ? null : values[slot];
+        }
+
+        void add(int key, Course course) {
+            if (key == StringDictionary.NO_ID) return;
+            int slot = find(key);
+            if (keys[slot] == StringDictionary.NO_ID) {
+                keys[slot] = key;
+                values[slot] = new ArrayList<>(1);
+                if (++size * 2 > keys.length) {
+                    resize();
+                    slot = find(key);
+                }
+            }
+            values[slot].add(course);
+        }
+
+        void remove(int key, Course course) {
+            if (key == StringDictionary.NO_ID) return;
+            int slot = find(key);
+            if (keys[slot] == StringDictionary.NO_ID) return;
+            ArrayList<Course> matches = values[slot];
+            matches.remove(course);
+            if (matches.isEmpty()) delete(slot);
+        }
+
+        private int find(int key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != StringDictionary.NO_ID && keys[slot] != key) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            keys[hole] = StringDictionary.NO_ID;
+            values[hole] = null;
+            size--;
+            for (int next = (hole + 1) & mask; keys[next] != StringDictionary.NO_ID; next = (next + 1) & mask) {
+                int home = hash(keys[next]) & mask;
+                // Move the entry into the hole unless its home slot lies cyclically in (hole, next]
+                boolean reachable = (hole <= next) ? (home > hole && home <= next) : (home > hole || home <= next);
+                if (reachable) continue;
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                keys[next] = StringDictionary.NO_ID;
+                values[next] = null;
+                hole = next;
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            ArrayList<Course>[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = newCourseLists(oldKeys.length * 2);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == StringDictionary.NO_ID) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != StringDictionary.NO_ID) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        // Ids are consecutive, so they are spread over the table by a multiplicative hash
+        private static int hash(int key) {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.ArrayList;
+
+/**
+ * An ArrayList of courses that counts its modifications.
+ * <p>
+ * CourseAdministration keeps indexes, totals and rankings derived from one course list and
+ * rebuilds them when the list changes without going through addCourse or removeCourses. The size
+ * of the list does not tell: replacing a course, or removing one and adding another, keeps it.
+ * The count grows with every add, remove, clear and sort, as ArrayList's own modification count
+ * does, and also with every set. Only a set made through a subList is not counted.
+ * <p>
+ * CsvParser, CurriculumSnapshot and the change journal load curricula into CourseLists.
+ */
+class CourseList extends ArrayList<Course> {
+    private static final long serialVersionUID = 1L;
+
+    CourseList() {
+    }
+
+    CourseList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * This method returns the number of modifications made to the list so far.
+     */
+    int modifications() {
+        return modCount;
+    }
+
+    @Override
+    public Course set(int index, Course course) {
+        modCount++;
+        return super.set(index, course);
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Receives a callback whenever a setter of a Course changes one of its values.
+ * <p>
+ * Structures derived from a list of courses (indexes, totals, sorted views) register a
+ * listener on every course they hold, so edits made anywhere in the program keep them
+ * up to date. Each callback receives the course, which already holds the new value,
+ * and the value it replaced (for the grade, also whether the course had one). Setters that do
+ * not change the value do not notify.
+ */
+interface CourseListener {
+    default void courseNumberChanged(Course course, String oldCourseNumber) {
+    }
+
+    default void descriptiveTitleChanged(Course course, String oldDescriptiveTitle) {
+    }
+
+    default void termChanged(Course course, byte oldTerm) {
+    }
+
+    default void yearChanged(Course course, byte oldYear) {
+    }
+
+    default void unitsChanged(Course course, double oldUnits) {
+    }
+
+    default void gradesChanged(Course course, double oldGrades, boolean oldIsGraded) {
+    }
+
+    default void isElectiveChanged(Course course, boolean oldIsElective) {
+    }
+}
@@ -0,0 +1,405 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bitmap indexes over a list of courses, answering filters such as "failed electives in year 3,
+ * term 2" without looking at the courses.
+ * <p>
+ * Every course gets a row, in the order it was added, and one bitmap is kept per predicate: all
+ * courses, failed, ungraded, elective, each year and each term. A query ANDs the bitmaps of its
+ * conditions a 64-bit word at a time. Grade and units comparisons have no bitmap; they are tested
+ * on a packed copy of each course's values, and only for the rows still set after the bitmaps.
+ * The query listens to every course it holds, so its bitmaps follow the setters. A removed
+ * course leaves a free row, and once more rows are free than used, the rows left are renumbered
+ * in the same order and the bitmaps are rebuilt, so removing costs O(1) amortized.
+ * <p>
+ * QUERY SYNTAX: <br>
+ * Conditions are separated by spaces and must all hold; "and" between them is ignored. <br>
+ * failed, passed, graded, ungraded, elective - the courses in that state <br>
+ * year=N, term=N - the courses of a year level or a term <br>
+ * grade OP N, units OP N - where OP is one of = != &lt; &lt;= &gt; &gt;=; a course without a grade
+ * matches no grade comparison <br>
+ * not CONDITION, !CONDITION - the courses the condition does not match <br>
+ * For example: failed elective year=3 term=2, or ungraded not elective units&gt;=3
+ */
+class CourseQuery implements CourseListener {
+    private static final int INITIAL_ROWS = 16;
+    // The queries of failedCourses, ungradedCourses and electiveCourses
+    private static final Query FAILED = parse("failed"), UNGRADED = parse("ungraded"), ELECTIVE = parse("elective");
+
+    // The course of each row, or null for a free row
+    private final ArrayList<Course> courses = new ArrayList<>();
+    private final Map<Course, Integer> rows = new IdentityHashMap<>();
+    private long[] packed = new long[INITIAL_ROWS];
+    private BitSet all = new BitSet(), failed = new BitSet(), ungraded = new BitSet(), elective = new BitSet();
+    private BitSet[] byYear = new BitSet[0], byTerm = new BitSet[0];
+
+    /**
+     * One condition of a query.
+     */
+    private static final class Condition {
+        final String field;
+        final String operator;
+        final long value;
+        final boolean negated;
+
+        Condition(String field, String operator, long value, boolean negated) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+            this.negated = negated;
+        }
+
+        /**
+         * This method tells if the condition is a grade or units comparison, which has no bitmap.
+         */
+        boolean isComparison() {
+            return field.equals("grade") || field.equals("units");
+        }
+    }
+
+    /**
+     * A parsed query, which can be run any number of times.
+     */
+    static final class Query {
+        private final List<Condition> conditions;
+
+        private Query(List<Condition> conditions) {
+            this.conditions = conditions;
+        }
+    }
+
+    /**
+     * This method builds the bitmaps of the given courses.
+     *
+     * @param courseList the courses to index
+     * @return the new query engine
+     */
+    static CourseQuery of(List<Course> courseList) {
+        CourseQuery query = new CourseQuery();
+        for (Course course : courseList) query.add(course);
+        return query;
+    }
+
+    /**
+     * This method gives a course the next row and starts listening to its changes.
+     *
+     * @param course the course to add
+     */
+    void add(Course course) {
+        int row = courses.size();
+        courses.add(course);
+        rows.put(course, row);
+        if (row == packed.length) packed = Arrays.copyOf(packed, row * 2);
+        packed[row] = course.getPacked();
+        all.set(row);
+        mark(row, packed[row], true);
+        course.addListener(this);
+    }
+
+    /**
+     * This method frees the row of a course and stops listening to its changes. Once more rows
+     * are free than used, the rows are compacted.
+     *
+     * @param course the course to remove
+     */
+    void remove(Course course) {
+        Integer row = rows.remove(course);
+        if (row == null) return;
+        course.removeListener(this);
+        all.clear(row);
+        mark(row, packed[row], false);
+        courses.set(row, null);
+        if (courses.size() - rows.size() > Math.max(INITIAL_ROWS, rows.size())) compact();
+    }
+
+    /**
+     * This method renumbers the courses left from 0, in the order of their rows, and rebuilds
+     * the bitmaps and the packed values for the new rows.
+     */
+    private void compact() {
+        int count = 0;
+        for (int row = 0; row < courses.size(); row++) {
+            Course course = courses.get(row);
+            if (course == null) continue;
+            courses.set(count, course);
+            packed[count] = packed[row];
+            rows.put(course, count);
+            count++;
+        }
+        courses.subList(count, courses.size()).clear();
+        courses.trimToSize();
+        packed = Arrays.copyOf(packed, Math.max(INITIAL_ROWS, count * 2));
+        all = new BitSet(count);
+        failed = new BitSet();
+        ungraded = new BitSet();
+        elective = new BitSet();
+        byYear = new BitSet[0];
+        byTerm = new BitSet[0];
+        all.set(0, count);
+        for (int row = 0; row < count; row++) mark(row, packed[row], true);
+    }
+
+    /**
+     * This method stops listening to every course. The query must not be used afterwards.
+     */
+    void detach() {
+        for (Course course : rows.keySet()) course.removeListener(this);
+        rows.clear();
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    /**
+     * This method parses a query.
+     *
+     * @param query the conditions, as described in the class comment
+     * @return the parsed query
+     * @throws IllegalArgumentException if a condition is not understood
+     */
+    static Query parse(String query) {
+        // "grade >= 90" is read as "grade>=90"
+        String[] words = query.strip().toLowerCase(Locale.ROOT).replaceAll("\\s*(!=|<=|>=|<|>|=)\\s*", "$1").split("\\s+");
+        List<Condition> conditions = new ArrayList<>();
+        boolean negated = false;
+        for (String word : words) {
+            if (word.isEmpty() || word.equals("and")) continue;
+            if (word.equals("not")) {
+                negated = !negated;
+                continue;
+            }
+            while (word.startsWith("!") && !word.startsWith("!=")) {
+                negated = !negated;
+                word = word.substring(1);
+            }
+            if (word.isEmpty()) continue;
+            conditions.add(parseCondition(word, negated));
+            negated = false;
+        }
+        if (negated) throw new IllegalArgumentException("\"not\" must be followed by a condition");
+        if (conditions.isEmpty()) throw new IllegalArgumentException("the query has no conditions");
+        return new Query(conditions);
+    }
+
+    /**
+     * This method returns the courses matching a query.
+     *
+     * @param query the conditions, as described in the class comment
+     * @return the matching courses, in the order they were added
+     * @throws IllegalArgumentException if a condition is not understood
+     */
+    List<Course> find(String query) {
+        return find(parse(query));
+    }
+
+    /**
+     * This method returns the courses matching a parsed query.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Starts from the bitmap of all courses <br>
+     * 2. ANDs in the bitmap of each condition that has one, or ANDs out the bitmap of a negated one <br>
+     * 3. Tests the grade and units comparisons on the packed values of the rows still set <br>
+     * 4. Returns the courses of the rows left
+     *
+     * @param query the parsed query
+     * @return the matching courses, in the order they were added
+     */
+    List<Course> find(Query query) {
+        BitSet result = matches(query);
+        List<Course> matches = new ArrayList<>(result.cardinality());
+        for (int row = result.nextSetBit(0); row >= 0; row = result.nextSetBit(row + 1)) matches.add(courses.get(row));
+        return matches;
+    }
+
+    /**
+     * This method returns the number of courses matching a parsed query.
+     */
+    int count(Query query) {
+        return matches(query).cardinality();
+    }
+
+    List<Course> failedCourses() {
+        return find(FAILED);
+    }
+
+    List<Course> ungradedCourses() {
+        return find(UNGRADED);
+    }
+
+    List<Course> electiveCourses() {
+        return find(ELECTIVE);
+    }
+
+    private BitSet matches(Query query) {
+        BitSet result = (BitSet) all.clone();
+        for (Condition condition : query.conditions) {
+            if (condition.isComparison()) continue;
+            BitSet bits = bitmapOf(condition);
+            if (condition.negated) result.andNot(bits);
+            else result.and(bits);
+        }
+        for (Condition condition : query.conditions) {
+            if (!condition.isComparison()) continue;
+            for (int row = result.nextSetBit(0); row >= 0; row = result.nextSetBit(row + 1))
+                if (compare(condition, packed[row]) == condition.negated) result.clear(row);
+        }
+        return result;
+    }
+
+    /**
+     * This method returns the bitmap of a condition that is not a comparison. The bitmap may be
+     * one of the indexes, so it must not be changed.
+     */
+    private BitSet bitmapOf(Condition condition) {
+        return switch (condition.field) {
+            case "failed" -> failed;
+            case "ungraded" -> ungraded;
+            case "elective" -> elective;
+            case "graded" -> without(all, ungraded);
+            case "passed" -> {
+                BitSet passed = without(all, ungraded);
+                passed.andNot(failed);
+                yield passed;
+            }
+            case "year" -> bitmap(byYear, condition.value);
+            case "term" -> bitmap(byTerm, condition.value);
+            default -> throw new IllegalStateException(condition.field);
+        };
+    }
+
+    private static BitSet without(BitSet bits, BitSet removed) {
+        BitSet result = (BitSet) bits.clone();
+        result.andNot(removed);
+        return result;
+    }
+
+    private static BitSet bitmap(BitSet[] bitmaps, long value) {
+        return (value >= 0 && value < bitmaps.length && bitmaps[(int) value] != null) ? bitmaps[(int) value] : new BitSet();
+    }
+
+    /**
+     * This method tests a grade or units comparison on the packed values of a course.
+     */
+    private static boolean compare(Condition condition, long packed) {
+        long value;
+        if (condition.field.equals("grade")) {
+            if (!PackedCourse.isGraded(packed)) return false;
+            value = PackedCourse.gradeHundredths(packed);
+        } else {
+            value = PackedCourse.unitsHundredths(packed);
+        }
+        return switch (condition.operator) {
+            case "=" -> value == condition.value;
+            case "!=" -> value != condition.value;
+            case "<" -> value < condition.value;
+            case "<=" -> value <= condition.value;
+            case ">" -> value > condition.value;
+            default -> value >= condition.value;
+        };
+    }
+
+    private static Condition parseCondition(String word, boolean negated) {
+        switch (word) {
+            case "failed", "passed", "graded", "ungraded" -> {
+                return new Condition(word, "", 0, negated);
+            }
+            case "elective", "electives" -> {
+                return new Condition("elective", "", 0, negated);
+            }
+        }
+        int operatorStart = 0;
+        while (operatorStart < word.length() && Character.isLetter(word.charAt(operatorStart))) operatorStart++;
+        int valueStart = operatorStart;
+        while (valueStart < word.length() && "!=<>".indexOf(word.charAt(valueStart)) >= 0) valueStart++;
+        String field = word.substring(0, operatorStart), operator = word.substring(operatorStart, valueStart),
+                value = word.substring(valueStart);
+        switch (field) {
+            case "year", "term" -> {
+                if (!operator.equals("=")) throw new IllegalArgumentException("use " + field + "=N, not \"" + word + "\"");
+                try {
+                    return new Condition(field, operator, Integer.parseInt(value), negated);
+                } catch (NumberFormatException exception) {
+                    throw new IllegalArgumentException("invalid " + field + " \"" + value + "\"");
+                }
+            }
+            case "grade", "units" -> {
+                if (!List.of("=", "!=", "<", "<=", ">", ">=").contains(operator))
+                    throw new IllegalArgumentException("invalid comparison \"" + word + "\"");
+                try {
+                    double number = Double.parseDouble(value);
+                    if (!Double.isFinite(number)) throw new NumberFormatException();
+                    return new Condition(field, operator, Math.round(number * PackedCourse.SCALE), negated);
+                } catch (NumberFormatException exception) {
+                    throw new IllegalArgumentException("invalid " + field + " \"" + value + "\"");
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown condition \"" + word + "\"");
+        }
+    }
+
+    /**
+     * This method sets or clears the bits of a row in every bitmap that depends on its values.
+     */
+    private void mark(int row, long values, boolean set) {
+        failed.set(row, set && PackedCourse.isFailed(values));
+        ungraded.set(row, set && !PackedCourse.isGraded(values));
+        elective.set(row, set && PackedCourse.isElective(values));
+        byYear = markIn(byYear, PackedCourse.year(values) & 0xFF, row, set);
+        byTerm = markIn(byTerm, PackedCourse.term(values) & 0xFF, row, set);
+    }
+
+    private static BitSet[] markIn(BitSet[] bitmaps, int value, int row, boolean set) {
+        if (!set) {
+            if (value < bitmaps.length && bitmaps[value] != null) bitmaps[value].clear(row);
+            return bitmaps;
+        }
+        if (value >= bitmaps.length) bitmaps = Arrays.copyOf(bitmaps, value + 1);
+        if (bitmaps[value] == null) bitmaps[value] = new BitSet();
+        bitmaps[value].set(row);
+        return bitmaps;
+    }
+
+    /**
+     * This method moves the row of a changed course from the bitmaps of its old values to those
+     * of its new values.
+     */
+    private void update(Course course) {
+        Integer row = rows.get(course);
+        if (row == null) return;
+        mark(row, packed[row], false);
+        packed[row] = course.getPacked();
+        mark(row, packed[row], true);
+    }
+
+    @Override
+    public void termChanged(Course course, byte oldTerm) {
+        update(course);
+    }
+
+    @Override
+    public void yearChanged(Course course, byte oldYear) {
+        update(course);
+    }
+
+    @Override
+    public void unitsChanged(Course course, double oldUnits) {
+        update(course);
+    }
+
+    @Override
+    public void gradesChanged(Course course, double oldGrades, boolean oldIsGraded) {
+        update(course);
+    }
+
+    @Override
+    public void isElectiveChanged(Course course, boolean oldIsElective) {
+        update(course);
+    }
+}
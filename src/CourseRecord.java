@@ -0,0 +1,96 @@
+/**
+ * An immutable course: the values of a Course at one point in time.
+ * <p>
+ * A change is made by creating a new record with one of the with methods, so a record can be
+ * shared by any number of curriculum versions and read by any thread without locking. The course
+ * number and title are the shared instances of StringDictionary, and the other values are one
+ * long laid out by PackedCourse.
+ *
+ * @param courseNumber     the course number, e.g. "CS 111"
+ * @param descriptiveTitle the descriptive title
+ * @param packed           the term, year, units, grade and flags, packed by PackedCourse
+ */
+record CourseRecord(String courseNumber, String descriptiveTitle, long packed) {
+    CourseRecord {
+        courseNumber = StringDictionary.entry(courseNumber).value;
+        descriptiveTitle = StringDictionary.entry(descriptiveTitle).value;
+    }
+
+    /**
+     * This method returns the record of a course's current values.
+     */
+    static CourseRecord of(Course course) {
+        return new CourseRecord(course.getCourseNumber(), course.getDescriptiveTitle(), course.getPacked());
+    }
+
+    /**
+     * This method returns a new mutable Course with the values of this record.
+     */
+    Course toCourse() {
+        return new Course(courseNumber, descriptiveTitle, packed);
+    }
+
+    /**
+     * This method returns the term (1 = first, 2 = second, 3 = short term).
+     */
+    byte term() {
+        return PackedCourse.term(packed);
+    }
+
+    byte year() {
+        return PackedCourse.year(packed);
+    }
+
+    double units() {
+        return PackedCourse.units(packed);
+    }
+
+    /**
+     * This method returns the grade, or 0 if the course has no grade.
+     */
+    double grades() {
+        return PackedCourse.grades(packed);
+    }
+
+    boolean isElective() {
+        return PackedCourse.isElective(packed);
+    }
+
+    /**
+     * This method returns the record with a grade, which may be 0.
+     */
+    CourseRecord withGrades(double grades) {
+        return new CourseRecord(courseNumber, descriptiveTitle, PackedCourse.withGrades(packed, grades));
+    }
+
+    /**
+     * This method returns the record with the grade of a course, or without a grade if it has none.
+     */
+    CourseRecord withGradesOf(Course course) {
+        return new CourseRecord(courseNumber, descriptiveTitle, course.isGraded()
+                ? PackedCourse.withGrades(packed, course.getGrades()) : PackedCourse.withoutGrades(packed));
+    }
+
+    CourseRecord withCourseNumber(String courseNumber) {
+        return new CourseRecord(courseNumber, descriptiveTitle, packed);
+    }
+
+    CourseRecord withDescriptiveTitle(String descriptiveTitle) {
+        return new CourseRecord(courseNumber, descriptiveTitle, packed);
+    }
+
+    CourseRecord withUnits(double units) {
+        return new CourseRecord(courseNumber, descriptiveTitle, PackedCourse.withUnits(packed, units));
+    }
+
+    boolean isGraded() {
+        return PackedCourse.isGraded(packed);
+    }
+
+    /**
+     * This method tells if the course is failed, as CourseAdministration.isFailedCourse does.
+     */
+    boolean isFailed() {
+        return PackedCourse.isFailed(packed);
+    }
+}
@@ -0,0 +1,431 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe store of the curricula of many students.
+ * <p>
+ * The courses of a student are published as immutable CurriculumVersions. Readers take the
+ * current version and use it for as long as they like, without any lock: it never changes, and a
+ * report, a save or a search over it sees the curriculum exactly as it was when the version was
+ * published. Writers of one student take turns on a lock of that student only. An update builds
+ * new versions from the current one in O(log n) per changed course and publishes the last of
+ * them when it finishes, so a whole update (e.g. a shift, which changes grades and course numbers
+ * and adds the uncarried courses) appears at once. An update that fails publishes nothing, which
+ * rolls it back.
+ * <p>
+ * The writers also keep the positions of the courses by course number and by title, keyed by
+ * their StringDictionary ids so that case is ignored, to find the course to change; these are
+ * only used under the lock. A shift also looks titles up by similarity, through a TitleMatcher
+ * that is built the first time a shift needs it and follows the positions from then on.
+ */
+class CourseRepository {
+    private static final LongAdder VERSIONS = Metrics.counter("repository versions published");
+
+    private final Map<String, Curriculum> curricula = new ConcurrentHashMap<>();
+
+    /**
+     * The published version of one student's curriculum and what its writers need.
+     */
+    private static final class Curriculum {
+        final String studentId;
+        final Path source;
+        volatile CurriculumVersion current;
+        final ReentrantLock writeLock = new ReentrantLock();
+        // Positions by course number id and by title id; they follow the current version
+        final Map<Integer, TreeSet<Integer>> byCourseNumber = new HashMap<>();
+        final Map<Integer, TreeSet<Integer>> byTitle = new HashMap<>();
+        // The titles of byTitle by similarity, or null until a shift needs them
+        TitleMatcher similarTitles;
+        boolean positionsStale = true;
+
+        Curriculum(String studentId, Path source, CurriculumVersion current) {
+            this.studentId = studentId;
+            this.source = source;
+            this.current = current;
+        }
+    }
+
+    /**
+     * The changes of one update, made on top of the version that was current when it started.
+     * It may only be used inside the update.
+     */
+    static final class Editor {
+        private final Curriculum curriculum;
+        private CurriculumVersion version;
+
+        private Editor(Curriculum curriculum) {
+            this.curriculum = curriculum;
+            this.version = curriculum.current;
+        }
+
+        String studentId() {
+            return curriculum.studentId;
+        }
+
+        /**
+         * This method returns the version with the changes made so far.
+         */
+        CurriculumVersion version() {
+            return version;
+        }
+
+        CourseRecord get(int index) {
+            return version.get(index);
+        }
+
+        /**
+         * This method finds the first course with a course number, ignoring case.
+         *
+         * @return its position, or -1 if there is none
+         */
+        int find(String courseNumber) {
+            return first(curriculum.byCourseNumber, courseNumber);
+        }
+
+        /**
+         * This method finds the first course with a descriptive title, ignoring case.
+         *
+         * @return its position, or -1 if there is none
+         */
+        int findByTitle(String descriptiveTitle) {
+            return first(curriculum.byTitle, descriptiveTitle);
+        }
+
+        /**
+         * This method finds the first course with a title, by the StringDictionary id of the title
+         * ignoring case, as TitleMatcher candidates give it.
+         *
+         * @return its position, or -1 if there is none
+         */
+        int findByTitleId(int descriptiveTitleId) {
+            TreeSet<Integer> matches = curriculum.byTitle.get(descriptiveTitleId);
+            return (matches == null) ? -1 : matches.first();
+        }
+
+        /**
+         * This method returns the titles of the courses by similarity, building them on first use.
+         * The ids of its titles are the ids of findByTitleId.
+         */
+        TitleMatcher similarTitles() {
+            if (curriculum.similarTitles == null) {
+                curriculum.similarTitles = new TitleMatcher(TitleMatcher.DEFAULT_THRESHOLD);
+                for (Map.Entry<Integer, TreeSet<Integer>> entry : curriculum.byTitle.entrySet())
+                    curriculum.similarTitles.add(entry.getKey(), version.get(entry.getValue().first()).descriptiveTitle());
+            }
+            return curriculum.similarTitles;
+        }
+
+        /**
+         * This method replaces the course at a position.
+         */
+        void set(int index, CourseRecord course) {
+            CourseRecord old = version.get(index);
+            version = version.set(index, course);
+            move(curriculum.byCourseNumber, old.courseNumber(), course.courseNumber(), index);
+            move(curriculum.byTitle, old.descriptiveTitle(), course.descriptiveTitle(), index);
+            updateSimilarTitle(old.descriptiveTitle());
+            updateSimilarTitle(course.descriptiveTitle());
+        }
+
+        /**
+         * This method adds a course at the end.
+         */
+        void add(CourseRecord course) {
+            int index = version.size();
+            version = version.append(course);
+            position(curriculum.byCourseNumber, course.courseNumber(), index, true);
+            position(curriculum.byTitle, course.descriptiveTitle(), index, true);
+            updateSimilarTitle(course.descriptiveTitle());
+        }
+
+        /**
+         * This method adds a title to the similar titles if a course has it, and removes it if none has.
+         */
+        private void updateSimilarTitle(String descriptiveTitle) {
+            TitleMatcher similarTitles = curriculum.similarTitles;
+            if (similarTitles == null) return;
+            int id = StringDictionary.entry(descriptiveTitle).foldedId;
+            if (!curriculum.byTitle.containsKey(id)) similarTitles.remove(id);
+            else if (!similarTitles.contains(id)) similarTitles.add(id, descriptiveTitle);
+        }
+
+        private static int first(Map<Integer, TreeSet<Integer>> positions, String key) {
+            TreeSet<Integer> matches = positions.get(StringDictionary.findFoldedId(key));
+            return (matches == null) ? -1 : matches.first();
+        }
+
+        private static void move(Map<Integer, TreeSet<Integer>> positions, String oldKey, String newKey, int index) {
+            if (StringDictionary.entry(oldKey).foldedId == StringDictionary.entry(newKey).foldedId) return;
+            position(positions, oldKey, index, false);
+            position(positions, newKey, index, true);
+        }
+    }
+
+    /**
+     * An update of a curriculum, run while holding the student's write lock.
+     */
+    interface Update<T, E extends Exception> {
+        T apply(Editor editor) throws E;
+    }
+
+    /**
+     * The matched and uncarried courses of a shift, as they are in the curriculum afterwards, and
+     * the confidence of each match: 1 for an exact or equivalent title, the title similarity otherwise.
+     */
+    static final class ShiftResult {
+        final List<CourseRecord> matched;
+        final List<Double> confidences;
+        final List<CourseRecord> uncarried;
+
+        private ShiftResult(List<CourseRecord> matched, List<Double> confidences, List<CourseRecord> uncarried) {
+            this.matched = Collections.unmodifiableList(matched);
+            this.confidences = Collections.unmodifiableList(confidences);
+            this.uncarried = Collections.unmodifiableList(uncarried);
+        }
+    }
+
+    /**
+     * This method adds or replaces the curriculum of a student. The courses are copied into records.
+     *
+     * @param studentId the id of the student
+     * @param source    the CSV file the courses were read from
+     * @param courses   the courses, with their electives already marked
+     */
+    void put(String studentId, Path source, List<Course> courses) {
+        List<CourseRecord> records = new ArrayList<>(courses.size());
+        for (Course course : courses) records.add(CourseRecord.of(course));
+        curricula.put(studentId, new Curriculum(studentId, source, CurriculumVersion.of(records)));
+    }
+
+    boolean contains(String studentId) {
+        return curricula.containsKey(studentId);
+    }
+
+    /**
+     * This method returns the ids of the students, sorted.
+     */
+    List<String> studentIds() {
+        List<String> ids = new ArrayList<>(curricula.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * This method returns the current version of a student's curriculum. It takes no lock and the
+     * version stays valid, unchanged, however long it is used.
+     *
+     * @param studentId the id of the student
+     * @return the version, or null if there is no such student
+     */
+    CurriculumVersion current(String studentId) {
+        Curriculum curriculum = curricula.get(studentId);
+        return (curriculum == null) ? null : curriculum.current;
+    }
+
+    /**
+     * This method runs an update of a curriculum and publishes its result as one new version.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Takes the student's write lock and starts from the current version <br>
+     * 2. Runs the update, which makes new versions through the Editor <br>
+     * 3. If it finishes, publishes the last version; if it throws, publishes nothing
+     *
+     * @param studentId the id of the student
+     * @param update    the update
+     * @return the result of the update
+     * @throws E                        if the update throws it; none of its changes are kept
+     * @throws IllegalArgumentException if there is no such student
+     */
+    <T, E extends Exception> T update(String studentId, Update<T, E> update) throws E {
+        Curriculum curriculum = curricula.get(studentId);
+        if (curriculum == null) throw new IllegalArgumentException("no student \"" + studentId + "\"");
+        curriculum.writeLock.lock();
+        try {
+            if (curriculum.positionsStale) indexPositions(curriculum);
+            Editor editor = new Editor(curriculum);
+            // Until the version is published, the positions describe a version nobody can see
+            curriculum.positionsStale = true;
+            T result = update.apply(editor);
+            if (editor.version != curriculum.current) {
+                curriculum.current = editor.version;
+                VERSIONS.increment();
+            }
+            curriculum.positionsStale = false;
+            return result;
+        } finally {
+            curriculum.writeLock.unlock();
+        }
+    }
+
+    /**
+     * This method returns the totals of a student's transcript.
+     *
+     * @return the totals, or null if there is no such student
+     */
+    CurriculumVersion.Totals totals(String studentId) {
+        CurriculumVersion version = current(studentId);
+        return (version == null) ? null : version.totals;
+    }
+
+    /**
+     * This method sets the grade of a course.
+     *
+     * @return the changed course, or null if the student has no such course
+     */
+    CourseRecord setGrade(String studentId, String courseNumber, double grade) {
+        return update(studentId, editor -> {
+            int index = editor.find(courseNumber);
+            if (index < 0) return null;
+            CourseRecord course = editor.get(index).withGrades(grade);
+            editor.set(index, course);
+            return course;
+        });
+    }
+
+    /**
+     * This method changes the course number and descriptive title of a course.
+     *
+     * @return the changed course, or null if the student has no such course
+     */
+    CourseRecord editCourse(String studentId, String courseNumber, String newCourseNumber, String newDescriptiveTitle) {
+        return update(studentId, editor -> {
+            int index = editor.find(courseNumber);
+            if (index < 0) return null;
+            CourseRecord course = editor.get(index).withCourseNumber(newCourseNumber).withDescriptiveTitle(newDescriptiveTitle);
+            editor.set(index, course);
+            return course;
+        });
+    }
+
+    /**
+     * This method shifts the courses of a shifter into a student's curriculum, as ShiftEngine does
+     * for a course list: a shifter course with an equivalent, the same or a similar title as a
+     * curriculum course gives it its grade and course number, and the others are added with a "*"
+     * prefix on their course number and 0 units. Readers see either none or all of the shift.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Finds the position of the equivalent or exact title of each shifter course <br>
+     * 2. Pairs the shifter courses left with the titles not matched yet, most similar pairs first <br>
+     * 3. Changes the matched courses in shifter list order, then adds the uncarried courses
+     *
+     * @param studentId         the id of the student
+     * @param shifterCourseList the courses of the shifter
+     * @return the matched and uncarried courses
+     */
+    ShiftResult shift(String studentId, List<Course> shifterCourseList) {
+        return update(studentId, editor -> {
+            TitleEquivalences titleEquivalences = TitleEquivalences.current();
+            int[] positions = new int[shifterCourseList.size()];
+            double[] confidences = new double[positions.length];
+            Set<Integer> matchedTitleIds = new HashSet<>();
+            List<Integer> unmatched = new ArrayList<>();
+            for (int i = 0; i < positions.length; i++) {
+                String title = shifterCourseList.get(i).getDescriptiveTitle();
+                String equivalent = titleEquivalences.equivalentOf(title);
+                int index = (equivalent == null) ? -1 : editor.findByTitle(equivalent);
+                if (index < 0) index = editor.findByTitle(title);
+                positions[i] = index;
+                confidences[i] = 1;
+                if (index >= 0) matchedTitleIds.add(StringDictionary.entry(editor.get(index).descriptiveTitle()).foldedId);
+                else unmatched.add(i);
+            }
+            if (!unmatched.isEmpty()) {
+                List<String> titles = new ArrayList<>(unmatched.size());
+                for (int i : unmatched) titles.add(shifterCourseList.get(i).getDescriptiveTitle());
+                List<TitleMatcher.Candidate> candidates =
+                        editor.similarTitles().assign(titles, titleId -> !matchedTitleIds.contains(titleId));
+                for (int j = 0; j < candidates.size(); j++) {
+                    if (candidates.get(j) == null) continue;
+                    positions[unmatched.get(j)] = editor.findByTitleId(candidates.get(j).titleId());
+                    confidences[unmatched.get(j)] = candidates.get(j).confidence();
+                }
+            }
+
+            List<CourseRecord> matched = new ArrayList<>(), uncarried = new ArrayList<>();
+            List<Double> matchConfidences = new ArrayList<>();
+            for (int i = 0; i < positions.length; i++) {
+                Course shifterCourse = shifterCourseList.get(i);
+                if (positions[i] >= 0) {
+                    CourseRecord course = editor.get(positions[i]).withGradesOf(shifterCourse)
+                            .withCourseNumber(shifterCourse.getCourseNumber());
+                    editor.set(positions[i], course);
+                    matched.add(course);
+                    matchConfidences.add(confidences[i]);
+                } else {
+                    uncarried.add(CourseRecord.of(shifterCourse).withCourseNumber("*" + shifterCourse.getCourseNumber())
+                            .withUnits(0));
+                }
+            }
+            // As in shiftCourse, the uncarried courses are only added once every match is made
+            for (CourseRecord course : uncarried) editor.add(course);
+            return new ShiftResult(matched, matchConfidences, uncarried);
+        });
+    }
+
+    /**
+     * This method writes the current version of a student's courses to copy files with
+     * CourseExporter. The version is taken without a lock, so edits go on while it is written.
+     *
+     * @param studentId the id of the student
+     * @param copyFile  the CSV file to write; the TXT file is written next to it
+     * @return the version that was written, or null if there is no such student
+     * @throws IOException if the files cannot be written
+     */
+    CurriculumVersion save(String studentId, Path copyFile) throws IOException {
+        Curriculum curriculum = curricula.get(studentId);
+        if (curriculum == null) return null;
+        CurriculumVersion version = curriculum.current;
+        // Two saves of one student would share the temporary files of CourseExporter
+        synchronized (curriculum) {
+            CourseExporter.export(version.asCourses(), copyFile);
+        }
+        return version;
+    }
+
+    /**
+     * This method returns the CSV file a student's courses were read from.
+     *
+     * @return the file, or null if there is no such student
+     */
+    Path sourceOf(String studentId) {
+        Curriculum curriculum = curricula.get(studentId);
+        return (curriculum == null) ? null : curriculum.source;
+    }
+
+    /**
+     * This method rebuilds the positions by course number and title from the current version.
+     */
+    private static void indexPositions(Curriculum curriculum) {
+        curriculum.byCourseNumber.clear();
+        curriculum.byTitle.clear();
+        curriculum.similarTitles = null;
+        CurriculumVersion version = curriculum.current;
+        for (int i = 0; i < version.size(); i++) {
+            CourseRecord course = version.get(i);
+            position(curriculum.byCourseNumber, course.courseNumber(), i, true);
+            position(curriculum.byTitle, course.descriptiveTitle(), i, true);
+        }
+        curriculum.positionsStale = false;
+    }
+
+    private static void position(Map<Integer, TreeSet<Integer>> positions, String key, int index, boolean add) {
+        int id = StringDictionary.entry(key).foldedId;
+        if (add) {
+            positions.computeIfAbsent(id, k -> new TreeSet<>()).add(index);
+        } else {
+            TreeSet<Integer> matches = positions.get(id);
+            if (matches != null && matches.remove(index) && matches.isEmpty()) positions.remove(id);
+        }
+    }
+}
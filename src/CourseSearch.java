@@ -0,0 +1,356 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Completion and substring search over the course numbers and descriptive titles of a list of
+ * courses, ignoring case.
+ * <p>
+ * Course numbers are kept in a trie over case-folded characters, without spaces, so "cs12"
+ * completes to "CS 121" as "cs 12" does. The completions of a prefix
+ * are read breadth first below the node of the prefix, so they come shortest first and in
+ * character order, and the walk stops as soon as enough are found. Titles are kept in an
+ * inverted index from each trigram (three consecutive case-folded characters) to the distinct
+ * titles that contain it. A substring search only looks at the titles of the query's rarest
+ * trigram and checks each of them, so it does not depend on the number of courses. Shorter
+ * queries check every distinct title.
+ * <p>
+ * The search listens to every course it holds, so renaming a course or changing its title
+ * updates the trie and the trigram index right away.
+ */
+class CourseSearch implements CourseListener {
+    private final Node root = new Node();
+    // The distinct titles, by their StringDictionary id
+    private final Map<Integer, Title> titles = new HashMap<>();
+    private final Map<Long, Posting> titlesByTrigram = new HashMap<>();
+    // A Course is only equal to itself, so removing one is O(1)
+    private final LinkedHashSet<Course> courses = new LinkedHashSet<>();
+
+    /**
+     * A node of the course number trie and the courses whose number ends there.
+     */
+    private static final class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        final ArrayList<Course> courses = new ArrayList<>(0);
+
+        Node child(char label, boolean create) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) return children[i];
+            if (!create) return null;
+            i = -i - 1;
+            char[] grownLabels = new char[labels.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, grownLabels, 0, i);
+            System.arraycopy(children, 0, grownChildren, 0, i);
+            System.arraycopy(labels, i, grownLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, grownChildren, i + 1, children.length - i);
+            grownLabels[i] = label;
+            grownChildren[i] = new Node();
+            labels = grownLabels;
+            children = grownChildren;
+            return grownChildren[i];
+        }
+    }
+
+    /**
+     * The titles that contain one trigram, in no particular order.
+     */
+    private static final class Posting {
+        Title[] titles = new Title[1];
+        int size;
+
+        void add(Title title) {
+            if (size == titles.length) titles = Arrays.copyOf(titles, size * 2);
+            titles[size++] = title;
+        }
+
+        void remove(Title title) {
+            for (int i = 0; i < size; i++) {
+                if (titles[i] != title) continue;
+                titles[i] = titles[--size];
+                titles[size] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * A distinct title, case-folded, and the courses that have it.
+     */
+    private static final class Title {
+        final String folded;
+        final ArrayList<Course> courses = new ArrayList<>(1);
+
+        Title(String folded) {
+            this.folded = folded;
+        }
+    }
+
+    /**
+     * A title containing the searched text. The score is the rank of the match in the high
+     * half and the length of the title in the low half, so a lower score is a better match.
+     */
+    private record Match(Title title, long score) {
+    }
+
+    private static final Comparator<Match> BEST_FIRST =
+            Comparator.comparingLong(Match::score).thenComparing(match -> match.title.folded);
+
+    /**
+     * This method builds the search over the given courses.
+     *
+     * @param courseList the courses to search
+     * @return the new search
+     */
+    static CourseSearch of(List<Course> courseList) {
+        CourseSearch search = new CourseSearch();
+        for (Course course : courseList) search.add(course);
+        return search;
+    }
+
+    /**
+     * This method adds a course to the trie and the trigram index and starts listening to its changes.
+     *
+     * @param course the course to add
+     */
+    void add(Course course) {
+        courses.add(course);
+        addNumber(course, course.getCourseNumber());
+        addTitle(course, course.getDescriptiveTitleId(), course.getDescriptiveTitle());
+        course.addListener(this);
+    }
+
+    /**
+     * This method removes a course from the search and stops listening to its changes.
+     *
+     * @param course the course to remove
+     */
+    void remove(Course course) {
+        if (!courses.remove(course)) return;
+        course.removeListener(this);
+        removeNumber(course, course.getCourseNumber());
+        removeTitle(course, course.getDescriptiveTitleId());
+    }
+
+    /**
+     * This method stops listening to every course. The search must not be used afterwards.
+     */
+    void detach() {
+        for (Course course : courses) course.removeListener(this);
+        courses.clear();
+    }
+
+    int size() {
+        return courses.size();
+    }
+
+    /**
+     * This method completes a course number prefix, ignoring case.
+     *
+     * @param prefix the beginning of a course number, e.g. "cs 1"
+     * @param limit  the largest number of courses to return
+     * @return the courses whose number starts with the prefix, shortest number first
+     */
+    List<Course> completeCourseNumber(String prefix, int limit) {
+        Node node = find(prefix);
+        if (node == null || limit <= 0) return List.of();
+
+        List<Course> completions = new ArrayList<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        while (!queue.isEmpty()) {
+            Node next = queue.poll();
+            for (Course course : next.courses) {
+                completions.add(course);
+                if (completions.size() == limit) return completions;
+            }
+            Collections.addAll(queue, next.children);
+        }
+        return completions;
+    }
+
+    /**
+     * This method finds the courses whose descriptive title contains a text, ignoring case.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Folds the text and picks its trigram with the fewest titles <br>
+     * 2. Checks each of those titles for the whole text (every title if the text is shorter than three characters) <br>
+     * 3. Ranks the matching titles: titles starting with the text, then titles with a word
+     * starting with it, then the others; shorter titles first within each. Only the best titles
+     * are kept, in a heap of the size of the limit <br>
+     * 4. Returns the courses of the best titles
+     *
+     * @param text  the text to look for
+     * @param limit the largest number of courses to return
+     * @return the matching courses, best match first
+     */
+    List<Course> findByTitleSubstring(String text, int limit) {
+        String folded = fold(text.strip());
+        if (folded.isEmpty() || limit <= 0) return List.of();
+        // The best matches so far, worst first
+        PriorityQueue<Match> best = new PriorityQueue<>(BEST_FIRST.reversed());
+        if (folded.length() < 3) {
+            for (Title title : titles.values()) match(title, folded, best, limit);
+        } else {
+            Posting rarest = null;
+            for (int i = 0; i + 3 <= folded.length(); i++) {
+                Posting posting = titlesByTrigram.get(trigram(folded, i));
+                if (posting == null) return List.of();
+                if (rarest == null || posting.size < rarest.size) rarest = posting;
+            }
+            for (int i = 0; i < rarest.size; i++) match(rarest.titles[i], folded, best, limit);
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(BEST_FIRST);
+
+        List<Course> found = new ArrayList<>();
+        for (Match match : matches) {
+            for (Course course : match.title.courses) {
+                found.add(course);
+                if (found.size() == limit) return found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * This method searches course numbers and titles at once: the completions of the text as a
+     * course number come first, followed by the courses whose title contains it.
+     *
+     * @param text  the text typed by the user
+     * @param limit the largest number of courses to return
+     * @return the courses found, each once, best match first
+     */
+    List<Course> search(String text, int limit) {
+        Map<Course, Boolean> found = new IdentityHashMap<>();
+        List<Course> results = new ArrayList<>();
+        for (Course course : completeCourseNumber(text.strip(), limit))
+            if (found.put(course, Boolean.TRUE) == null) results.add(course);
+        if (results.size() < limit) {
+            for (Course course : findByTitleSubstring(text, limit)) {
+                if (found.put(course, Boolean.TRUE) == null) results.add(course);
+                if (results.size() == limit) break;
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void courseNumberChanged(Course course, String oldCourseNumber) {
+        removeNumber(course, oldCourseNumber);
+        addNumber(course, course.getCourseNumber());
+    }
+
+    @Override
+    public void descriptiveTitleChanged(Course course, String oldDescriptiveTitle) {
+        removeTitle(course, StringDictionary.findFoldedId(oldDescriptiveTitle));
+        addTitle(course, course.getDescriptiveTitleId(), course.getDescriptiveTitle());
+    }
+
+    private void addNumber(Course course, String courseNumber) {
+        if (courseNumber == null) return;
+        Node node = root;
+        for (int i = 0; i < courseNumber.length(); i++)
+            if (!Character.isWhitespace(courseNumber.charAt(i)))
+                node = node.child(StringDictionary.fold(courseNumber.charAt(i)), true);
+        node.courses.add(course);
+    }
+
+    /**
+     * This method removes a course from the node of a course number. The nodes themselves are
+     * kept; a node without courses only costs a step of the walk.
+     */
+    private void removeNumber(Course course, String courseNumber) {
+        if (courseNumber == null) return;
+        Node node = find(courseNumber);
+        if (node != null) node.courses.remove(course);
+    }
+
+    /**
+     * This method walks the trie along a course number, skipping spaces.
+     *
+     * @return the node where the course number ends, or null if no course number starts with it
+     */
+    private Node find(String courseNumber) {
+        Node node = root;
+        for (int i = 0; i < courseNumber.length() && node != null; i++)
+            if (!Character.isWhitespace(courseNumber.charAt(i)))
+                node = node.child(StringDictionary.fold(courseNumber.charAt(i)), false);
+        return node;
+    }
+
+    private void addTitle(Course course, int titleId, String descriptiveTitle) {
+        if (titleId == StringDictionary.NO_ID) return;
+        Title title = titles.get(titleId);
+        if (title == null) {
+            title = new Title(fold(descriptiveTitle));
+            titles.put(titleId, title);
+            for (int i = 0; i + 3 <= title.folded.length(); i++) {
+                long key = trigram(title.folded, i);
+                Posting posting = titlesByTrigram.computeIfAbsent(key, k -> new Posting());
+                // A title repeating a trigram is listed once
+                if (posting.size == 0 || posting.titles[posting.size - 1] != title) posting.add(title);
+            }
+        }
+        title.courses.add(course);
+    }
+
+    /**
+     * This method removes a course from its title, and the title from the trigram index once no
+     * course has it.
+     */
+    private void removeTitle(Course course, int titleId) {
+        Title title = titles.get(titleId);
+        if (title == null || !title.courses.remove(course) || !title.courses.isEmpty()) return;
+        titles.remove(titleId);
+        for (int i = 0; i + 3 <= title.folded.length(); i++) {
+            long key = trigram(title.folded, i);
+            Posting posting = titlesByTrigram.get(key);
+            if (posting == null) continue;
+            posting.remove(title);
+            if (posting.size == 0) titlesByTrigram.remove(key);
+        }
+    }
+
+    /**
+     * This method adds a title to the best matches if it contains the text and is among the
+     * best, dropping the worst match once there are more than the limit.
+     */
+    private static void match(Title title, String text, PriorityQueue<Match> best, int limit) {
+        if (!title.folded.contains(text)) return;
+        long score = ((long) rank(title.folded, text) << 32) | title.folded.length();
+        if (best.size() == limit && score > best.peek().score) return;
+        best.add(new Match(title, score));
+        if (best.size() > limit) best.poll();
+    }
+
+    /**
+     * This method ranks where a text is found in a title: 0 at the start, 1 at the start of a
+     * word, 2 elsewhere.
+     */
+    private static int rank(String title, String text) {
+        if (title.startsWith(text)) return 0;
+        for (int i = title.indexOf(text); i > 0; i = title.indexOf(text, i + 1))
+            if (!Character.isLetterOrDigit(title.charAt(i - 1))) return 1;
+        return 2;
+    }
+
+    private static long trigram(String folded, int start) {
+        return ((long) folded.charAt(start) << 32) | ((long) folded.charAt(start + 1) << 16) | folded.charAt(start + 2);
+    }
+
+    private static String fold(String value) {
+        char[] folded = value.toCharArray();
+        for (int i = 0; i < folded.length; i++) folded[i] = StringDictionary.fold(folded[i]);
+        return new String(folded);
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A column-oriented copy of a list of courses, as CurriculumSnapshot writes it.
+ * <p>
+ * Instead of one object per course, every attribute is kept in a primitive array and a course
+ * is identified by its row index. The term, year, units, grade and flags of a row are one long
+ * laid out by PackedCourse, and course numbers and descriptive titles are dictionary-encoded, so
+ * repeated strings are stored once and rows only hold int ids. A row takes 16 bytes.
+ */
+class CourseStore {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] packed = new long[INITIAL_CAPACITY];
+    private int[] courseNumberIds = new int[INITIAL_CAPACITY];
+    private int[] titleIds = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final ArrayList<String> dictionary = new ArrayList<>();
+    private final HashMap<String, Integer> dictionaryIds = new HashMap<>();
+
+    /**
+     * This method builds a store holding a copy of the given courses, in the same order.
+     *
+     * @param courseList the courses to copy
+     * @return the new store
+     */
+    static CourseStore of(List<? extends CourseView> courseList) {
+        CourseStore store = new CourseStore();
+        store.ensureCapacity(courseList.size());
+        for (CourseView course : courseList) store.add(course);
+        return store;
+    }
+
+    /**
+     * This method appends a copy of a course to the store.
+     *
+     * @param course the course to copy
+     * @return the row index of the new course
+     */
+    int add(CourseView course) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        packed[row] = course.getPacked();
+        courseNumberIds[row] = encode(course.getCourseNumber());
+        titleIds[row] = encode(course.getDescriptiveTitle());
+        return row;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * This method returns the term, year, units, grade and flags of a row, packed by PackedCourse.
+     */
+    long packed(int row) {
+        return packed[row];
+    }
+
+    /**
+     * This method returns the dictionary id of a row's course number.
+     */
+    int courseNumberId(int row) {
+        return courseNumberIds[row];
+    }
+
+    /**
+     * This method returns the dictionary id of a row's descriptive title.
+     */
+    int titleId(int row) {
+        return titleIds[row];
+    }
+
+    /**
+     * This method returns the number of distinct strings in the dictionary.
+     */
+    int dictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * This method returns the string with the given dictionary id.
+     */
+    String dictionaryEntry(int id) {
+        return dictionary.get(id);
+    }
+
+    private int encode(String value) {
+        Integer id = dictionaryIds.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= packed.length) return;
+        int newCapacity = Math.max(capacity, packed.length * 2);
+        packed = Arrays.copyOf(packed, newCapacity);
+        courseNumberIds = Arrays.copyOf(courseNumberIds, newCapacity);
+        titleIds = Arrays.copyOf(titleIds, newCapacity);
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * The values of a course, read-only.
+ * <p>
+ * Code that only reads courses, such as CourseFormat, TableRenderer and CourseStore, takes a
+ * CourseView. Changes are only made through Course, whose listeners keep the structures derived
+ * from a course list in sync.
+ */
+interface CourseView {
+    String getCourseNumber();
+
+    /**
+     * This method gets the id of the course number in StringDictionary.
+     * @return the id, the same for every course number equal to this one ignoring case
+     */
+    int getCourseNumberId();
+
+    String getDescriptiveTitle();
+
+    /**
+     * This method gets the id of the descriptive title in StringDictionary.
+     * @return the id, the same for every title equal to this one ignoring case
+     */
+    int getDescriptiveTitleId();
+
+    byte getTerm();
+
+    byte getYear();
+
+    double getUnits();
+
+    /**
+     * This method gets the grade.
+     * @return the grade, or 0 if the course has no grade
+     */
+    double getGrades();
+
+    boolean isGraded();
+
+    boolean getIsElective();
+
+    /**
+     * This method gets the term, year, units, grade and flags, packed by PackedCourse.
+     * @return the packed values
+     */
+    long getPacked();
+}
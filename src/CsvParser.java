@@ -0,0 +1,513 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A streaming RFC 4180 reader for curriculum CSV files.
+ * <p>
+ * The file is read through a FileChannel into a reusable byte buffer and every record is
+ * tokenized in place. The year, term, units and grade columns are parsed directly from the
+ * bytes. The course number and descriptive title are looked up by their bytes in a cache of the
+ * Strings this parser has read, so a String is only created (and added to StringDictionary) for a
+ * spelling it has not seen yet; a parser that reads many transcripts creates almost none.
+ * The elective flag is set from the parser's ElectiveRules as each row is read.
+ * Quoted fields (including embedded commas, doubled quotes and line breaks) are supported.
+ * Rows that cannot be parsed are skipped and reported with their line number.
+ */
+class CsvParser {
+    static final int COLUMN_COUNT = 6;
+    private static final int YEAR = 0, TERM = 1, COURSE_NUMBER = 2, TITLE = 3, UNITS = 4, GRADES = 5;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    private static final int INVALID_BYTE = Integer.MIN_VALUE;
+    // Slots of the String cache, which is cleared when it is half full
+    private static final int CACHE_SLOTS = 1 << 12;
+    private static final byte QUOTE = '"', COMMA = ',', CR = '\r', LF = '\n', SPACE = ' ';
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] scratch = new byte[256];
+
+    // The Strings read so far, by their UTF-8 bytes
+    private final byte[][] cachedBytes = new byte[CACHE_SLOTS][];
+    private final int[] cachedHashes = new int[CACHE_SLOTS];
+    private final String[] cachedStrings = new String[CACHE_SLOTS];
+    private int cachedCount;
+
+    // Field boundaries of the record currently being scanned
+    private final int[] fieldStart = new int[COLUMN_COUNT];
+    private final int[] fieldEnd = new int[COLUMN_COUNT];
+    private final boolean[] fieldEscaped = new boolean[COLUMN_COUNT];
+    private int fieldCount;
+    private int recordLineBreaks;
+    private String recordError;
+
+    private final List<String> errors = new ArrayList<>();
+    private long rowCount;
+    private final ElectiveRules electiveRules;
+    // If the Strings are kept in StringDictionary for good, as those of a curriculum file are
+    private final boolean curriculum;
+
+    /**
+     * Receives the records read by parseRecords, one at a time.
+     */
+    interface RecordHandler {
+        /**
+         * This method receives one record.
+         *
+         * @param start  the index where the record starts
+         * @param end    the index where the next record starts
+         * @param course the course of the record, or null for the header, a blank line or a malformed row
+         * @return true to read the next record, false to stop
+         */
+        boolean record(int start, int end, Course course);
+    }
+
+    /**
+     * Constructor of a parser that marks electives with the current ElectiveRules.
+     */
+    CsvParser() {
+        this(ElectiveRules.current());
+    }
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param electiveRules the rules that mark the electives of each parsed row
+     */
+    CsvParser(ElectiveRules electiveRules) {
+        this(electiveRules, true);
+    }
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param electiveRules the rules that mark the electives of each parsed row
+     * @param curriculum    true if the file is a curriculum, whose Strings StringDictionary keeps
+     *                      for good; false for a file such as an uploaded shifter, whose Strings
+     *                      it keeps only while they are in use
+     */
+    CsvParser(ElectiveRules electiveRules, boolean curriculum) {
+        this.electiveRules = electiveRules;
+        this.curriculum = curriculum;
+    }
+
+    /**
+     * This method parses a curriculum CSV file into a list of courses.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Bytes are read from the channel into the buffer <br>
+     * 2. Each complete record is split into fields without copying <br>
+     * 3. If a record continues past the end of the buffer, the buffer is compacted
+     * (and grown if needed) and the record is scanned again once more bytes arrive <br>
+     * 4. The first record is the header and is skipped <br>
+     * 5. Every other record becomes a Course, marked as an elective if a rule matches it,
+     * or an error entry if it is malformed
+     *
+     * @param path the CSV file to read
+     * @return the courses that were parsed successfully, in file order
+     * @throws IOException if the file cannot be opened or read
+     */
+    ArrayList<Course> parse(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(channel);
+        }
+    }
+
+    /**
+     * This method parses curriculum CSV data read from a channel, such as an uploaded request body.
+     * The channel is read to its end but not closed.
+     *
+     * @param channel the channel to read
+     * @return the courses that were parsed successfully, in input order
+     * @throws IOException if the channel cannot be read
+     */
+    ArrayList<Course> parse(ReadableByteChannel channel) throws IOException {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        ArrayList<Course> courseList = new CourseList();
+        errors.clear();
+        rowCount = 0;
+
+        byte[] buf = buffer;
+        ByteBuffer window = ByteBuffer.wrap(buf);
+        int start = 0, limit = 0;
+        int line = 1;
+        boolean eof = false, header = true, checkedByteOrderMark = false;
+
+        while (true) {
+            int next = (start < limit) ? scanRecord(buf, start, limit, eof) : -1;
+            if (next < 0) {
+                if (eof) break;
+                // Move the unfinished record to the front and read more bytes behind it
+                int pending = limit - start;
+                if (pending == buf.length) {
+                    byte[] grown = new byte[buf.length * 2];
+                    System.arraycopy(buf, start, grown, 0, pending);
+                    buffer = buf = grown;
+                    window = ByteBuffer.wrap(buf);
+                } else if (start > 0) {
+                    System.arraycopy(buf, start, buf, 0, pending);
+                }
+                start = 0;
+                limit = pending;
+                window.limit(buf.length).position(limit);
+                int read = channel.read(window);
+                if (read < 0) eof = true;
+                else limit += read;
+                if (!checkedByteOrderMark && (limit >= 3 || eof)) {
+                    checkedByteOrderMark = true;
+                    if (limit >= 3 && hasByteOrderMark(buf)) start = 3;
+                }
+                continue;
+            }
+
+            if (header) {
+                header = false;
+            } else {
+                Course course = readCourse(buf, line);
+                if (course != null) courseList.add(course);
+            }
+            line += recordLineBreaks + 1;
+            start = next;
+        }
+        Metrics.ROWS_PARSED.add(courseList.size());
+        Metrics.BAD_ROWS.add(errors.size());
+        Metrics.PARSE_CSV.record(startNanos, startAllocatedBytes, courseList.size() + errors.size());
+        return courseList;
+    }
+
+    /**
+     * This method parses the records of a part of a CSV file held in memory, such as the rows of
+     * a file that changed, and hands each of them to a handler. The part must start at the start
+     * of a record; it ends at the limit or where the handler stops.
+     *
+     * @param buf        the bytes of the file
+     * @param from       the index where the first record starts
+     * @param limit      the index after the last byte to read
+     * @param withHeader whether the first record is the header of the file
+     * @param line       the line number of the first record, used in the error messages
+     * @param handler    the handler receiving the records
+     * @return the index after the last record read
+     */
+    int parseRecords(byte[] buf, int from, int limit, boolean withHeader, int line, RecordHandler handler) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        errors.clear();
+        rowCount = 0;
+        // The byte order mark belongs to the first record
+        int recordStart = from, start = from;
+        if (withHeader && from == 0 && limit >= 3 && hasByteOrderMark(buf)) start = 3;
+        int courses = 0;
+        boolean header = withHeader;
+        while (start < limit) {
+            int next = scanRecord(buf, start, limit, true);
+            Course course = null;
+            if (header) header = false;
+            else course = readCourse(buf, line);
+            if (course != null) courses++;
+            line += recordLineBreaks + 1;
+            boolean more = handler.record(recordStart, next, course);
+            recordStart = start = next;
+            if (!more) break;
+        }
+        Metrics.ROWS_PARSED.add(courses);
+        Metrics.BAD_ROWS.add(errors.size());
+        Metrics.PARSE_CSV.record(startNanos, startAllocatedBytes, courses + errors.size());
+        return start;
+    }
+
+    /**
+     * This method returns the malformed rows found by the last call to parse.
+     *
+     * @return one message per skipped row, each starting with its line number
+     */
+    List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * This method returns the number of data rows (excluding the header) seen by the last parse.
+     *
+     * @return the number of rows read, including the malformed ones
+     */
+    long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * This method splits one record into fields.
+     *
+     * @param buf   the bytes being scanned
+     * @param from  the index where the record starts
+     * @param limit the index after the last valid byte
+     * @param eof   whether the end of the file has been reached
+     * @return the index where the next record starts, or -1 if more bytes are needed
+     */
+    private int scanRecord(byte[] buf, int from, int limit, boolean eof) {
+        int i = from;
+        fieldCount = 0;
+        recordLineBreaks = 0;
+        recordError = null;
+
+        while (true) {
+            int start, end;
+            boolean escaped = false;
+            if (i < limit && buf[i] == QUOTE) {
+                start = ++i;
+                while (true) {
+                    if (i >= limit) {
+                        if (!eof) return -1;
+                        recordError = "unterminated quoted field";
+                        break;
+                    }
+                    byte b = buf[i];
+                    if (b == QUOTE) {
+                        if (i + 1 >= limit && !eof) return -1;
+                        if (i + 1 < limit && buf[i + 1] == QUOTE) {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (b == LF) recordLineBreaks++;
+                    i++;
+                }
+                end = Math.min(i, limit);
+                if (i < limit) i++; // closing quote
+                if (i < limit && buf[i] == CR) i++;
+                if (i < limit && buf[i] != COMMA && buf[i] != LF && recordError == null)
+                    recordError = "unexpected character after quoted field";
+                while (i < limit && buf[i] != COMMA && buf[i] != LF) i++;
+            } else {
+                start = i;
+                while (i < limit && buf[i] != COMMA && buf[i] != LF) i++;
+                end = i;
+                if (end > start && buf[end - 1] == CR && (end == limit || buf[end] == LF)) end--;
+            }
+
+            if (i >= limit && !eof) return -1;
+
+            if (fieldCount < COLUMN_COUNT) {
+                fieldStart[fieldCount] = start;
+                fieldEnd[fieldCount] = end;
+                fieldEscaped[fieldCount] = escaped;
+            }
+            fieldCount++;
+
+            if (i >= limit) return limit;
+            if (buf[i] == LF) return i + 1;
+            i++; // comma
+        }
+    }
+
+    /**
+     * This method turns the scanned record into a Course.
+     * Blank lines are ignored; malformed rows are recorded in the error list instead.
+     *
+     * @param buf  the bytes holding the record
+     * @param line the line number where the record starts
+     * @return the course, or null for a blank line or a malformed row
+     */
+    private Course readCourse(byte[] buf, int line) {
+        if (fieldCount == 1 && fieldEnd[0] == fieldStart[0]) return null;
+        rowCount++;
+        if (recordError != null) {
+            errors.add("line " + line + ": " + recordError);
+            return null;
+        }
+        // Missing trailing columns are treated as empty fields
+        for (int f = fieldCount; f < COLUMN_COUNT; f++) {
+            fieldStart[f] = fieldEnd[f] = 0;
+            fieldEscaped[f] = false;
+        }
+
+        int year = parseByte(buf, YEAR);
+        if (year == INVALID_BYTE) {
+            reportField(buf, line, YEAR, "year");
+            return null;
+        }
+        int term = parseByte(buf, TERM);
+        if (term == INVALID_BYTE) {
+            reportField(buf, line, TERM, "term");
+            return null;
+        }
+        double units = parseDouble(buf, UNITS);
+        if (Double.isNaN(units) || fieldStart[UNITS] == fieldEnd[UNITS] || !PackedCourse.fits(units)) {
+            reportField(buf, line, UNITS, "units");
+            return null;
+        }
+        // An empty grade field means the course has no grade; "0" is a grade of 0
+        boolean isGraded = !isBlank(buf, GRADES);
+        double grades = isGraded ? parseDouble(buf, GRADES) : 0;
+        if (Double.isNaN(grades) || !PackedCourse.fits(grades)) {
+            reportField(buf, line, GRADES, "grade");
+            return null;
+        }
+
+        String courseNumber = internField(buf, COURSE_NUMBER), descriptiveTitle = internField(buf, TITLE);
+        return new Course(courseNumber, descriptiveTitle, PackedCourse.pack((byte) term, (byte) year,
+                units, grades, isGraded, electiveRules.isElective(courseNumber, descriptiveTitle)));
+    }
+
+    private boolean isBlank(byte[] buf, int field) {
+        for (int i = fieldStart[field]; i < fieldEnd[field]; i++)
+            if (buf[i] != SPACE) return false;
+        return true;
+    }
+
+    private void reportField(byte[] buf, int line, int field, String name) {
+        errors.add("line " + line + ": invalid " + name + " \"" + decode(buf, field) + "\"");
+    }
+
+    /**
+     * This method decodes a field as UTF-8, removing the doubled quotes of an escaped field.
+     */
+    private String decode(byte[] buf, int field) {
+        int start = fieldStart[field], end = fieldEnd[field];
+        if (!fieldEscaped[field])
+            return new String(buf, start, end - start, StandardCharsets.UTF_8);
+        return new String(scratch, 0, unescape(buf, start, end), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method returns the shared String of a field, as decode would read it.
+     */
+    private String internField(byte[] buf, int field) {
+        int start = fieldStart[field], end = fieldEnd[field];
+        if (!fieldEscaped[field]) return intern(buf, start, end);
+        return intern(scratch, 0, unescape(buf, start, end));
+    }
+
+    /**
+     * This method copies an escaped field into the scratch buffer without its doubled quotes.
+     *
+     * @return the number of bytes copied
+     */
+    private int unescape(byte[] buf, int start, int end) {
+        if (scratch.length < end - start) scratch = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            scratch[length++] = buf[i];
+            if (buf[i] == QUOTE) i++;
+        }
+        return length;
+    }
+
+    /**
+     * This method returns the String of some UTF-8 bytes from the cache.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Hashes the bytes and probes the cache, comparing the bytes of the entries with the same hash <br>
+     * 2. If found, returns the cached String without creating one <br>
+     * 3. Otherwise decodes the bytes, takes the shared instance from StringDictionary and caches
+     * it, clearing the cache first if it is half full
+     */
+    private String intern(byte[] bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + bytes[i];
+        int mask = CACHE_SLOTS - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (byte[] cached; (cached = cachedBytes[slot]) != null; slot = (slot + 1) & mask) {
+            if (cachedHashes[slot] == hash && Arrays.equals(cached, 0, cached.length, bytes, start, end))
+                return cachedStrings[slot];
+        }
+        if (cachedCount * 2 >= CACHE_SLOTS) {
+            Arrays.fill(cachedBytes, null);
+            Arrays.fill(cachedStrings, null);
+            cachedCount = 0;
+            slot = (hash ^ (hash >>> 16)) & mask;
+        }
+        String value = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        value = curriculum ? StringDictionary.intern(value) : StringDictionary.entry(value).value;
+        cachedBytes[slot] = Arrays.copyOfRange(bytes, start, end);
+        cachedHashes[slot] = hash;
+        cachedStrings[slot] = value;
+        cachedCount++;
+        return value;
+    }
+
+    /**
+     * This method parses a field as a byte value.
+     *
+     * @return the value, or INVALID_BYTE if the field is not a number within the byte range
+     */
+    private int parseByte(byte[] buf, int field) {
+        int start = fieldStart[field], end = fieldEnd[field];
+        while (start < end && buf[start] == SPACE) start++;
+        while (end > start && buf[end - 1] == SPACE) end--;
+        if (start == end) return INVALID_BYTE;
+
+        boolean negative = buf[start] == '-';
+        if (negative || buf[start] == '+') start++;
+        if (start == end || end - start > 3) return INVALID_BYTE;
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) return INVALID_BYTE;
+            value = value * 10 + digit;
+        }
+        if (negative) value = -value;
+        return (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) ? INVALID_BYTE : value;
+    }
+
+    /**
+     * This method parses a field as a double value.
+     * <p>
+     * Plain decimals of up to 15 digits, such as "98", "1.5" or "-2.25", are read digit by digit.
+     * Their mantissa is below 2^53 and their power of ten is exact, so the one division gives the
+     * same correctly rounded result as Double.parseDouble. Any other form (exponents, longer
+     * mantissas such as "185397.97105779994") falls back to Double.parseDouble.
+     *
+     * @return the value, or NaN if the field is not a number
+     */
+    private double parseDouble(byte[] buf, int field) {
+        int start = fieldStart[field], end = fieldEnd[field];
+        while (start < end && buf[start] == SPACE) start++;
+        while (end > start && buf[end - 1] == SPACE) end--;
+        if (start == end) return 0;
+
+        int i = start;
+        boolean negative = buf[i] == '-';
+        if (negative || buf[i] == '+') i++;
+
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || digits == 15) return parseDoubleSlow(buf, start, end);
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (point) scale++;
+        }
+        if (digits == 0) return Double.NaN;
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(byte[] buf, int start, int end) {
+        try {
+            return Double.parseDouble(new String(buf, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException numberFormatException) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean hasByteOrderMark(byte[] buf) {
+        return buf[0] == (byte) 0xEF && buf[1] == (byte) 0xBB && buf[2] == (byte) 0xBF;
+    }
+}
@@ -0,0 +1,590 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An HTTP/JSON server over the curricula of many students, built on the JDK's own HTTP server.
+ * <p>
+ * Every transcript matched by a directory or glob is loaded once, in parallel, by TranscriptIngest
+ * and kept in a CourseRepository. Lists are rendered from the current version of a student's
+ * curriculum without any lock, and every update (a whole shift included) is published as one new
+ * version. Only updates of the same student wait for each other.
+ * <p>
+ * Each request runs on its own virtual thread when the JVM has them (Java 21 and later). On older
+ * JVMs the requests run on a fixed pool of platform threads.
+ * <p>
+ * ENDPOINTS: <br>
+ * GET  /students - the student ids <br>
+ * GET  /students/ID - the GPA, unit and course totals of a student <br>
+ * GET  /students/ID/courses[?year=Y[&amp;term=T]] - the courses, of one year or term if given <br>
+ * GET  /students/ID/graded[?order=asc|desc] - the graded courses sorted by grade <br>
+ * GET  /students/ID/failed, /ungraded, /electives - the failed, ungraded and elective courses <br>
+ * POST /students/ID/grade - course=NUMBER&amp;grade=GRADE, sets a grade <br>
+ * POST /students/ID/edit - course=NUMBER&amp;number=NEW NUMBER&amp;title=NEW TITLE, edits a course <br>
+ * POST /students/ID/shift - a shifter CSV file as the body, shifts its courses and grades; the
+ * confidence of each match, from 0 to 1, is listed in the order of the matched courses <br>
+ * POST /students/ID/save - writes ID_Copy.csv and ID_Copy.txt next to the transcript <br>
+ * GET  /metrics - the operation metrics as text
+ * <p>
+ * Parameters are read from the query string and, for POST, from a form-encoded body. A course is
+ * a JSON object whose grade is null while the course has no grade.
+ * <p>
+ * The server listens on the loopback address unless --host names another one, such as 0.0.0.0
+ * for every interface. A request that fails with an unexpected exception is answered with 500,
+ * logged to the standard error and counted as an http error in the metrics.
+ * <p>
+ * USAGE: java CourseAdministration --serve directoryOrGlob [--host 127.0.0.1] [--port 8080] [--threads 256]
+ */
+class CurriculumServer {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_THREADS = 256;
+    private static final int BACKLOG = 4096;
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private static final Metrics.Operation HTTP_STUDENTS = Metrics.operation("http students");
+    private static final Metrics.Operation HTTP_SUMMARY = Metrics.operation("http summary");
+    private static final Metrics.Operation HTTP_COURSES = Metrics.operation("http courses");
+    private static final Metrics.Operation HTTP_LISTS = Metrics.operation("http graded/failed/...");
+    private static final Metrics.Operation HTTP_UPDATES = Metrics.operation("http grade/edit");
+    private static final Metrics.Operation HTTP_SHIFT = Metrics.operation("http shift");
+    private static final Metrics.Operation HTTP_SAVE = Metrics.operation("http save");
+    private static final LongAdder HTTP_ERRORS = Metrics.counter("http errors");
+
+    /**
+     * A request that cannot be served, answered with its HTTP status and message.
+     */
+    static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * The body of a request, which fails with BodyTooLargeException once more than MAX_BODY_BYTES
+     * have been read. Content-Length is checked before the body is read, but a chunked body has
+     * none.
+     */
+    private static final class LimitedBody extends FilterInputStream {
+        private long remaining = MAX_BODY_BYTES;
+
+        LimitedBody(InputStream body) {
+            super(body);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) count(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws BodyTooLargeException {
+            remaining -= bytes;
+            if (remaining < 0) throw new BodyTooLargeException();
+        }
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private final CourseRepository repository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor with parameters.
+     * @param repository the curricula to serve
+     * @param host       the address to listen on
+     * @param port       the port to listen on, or 0 for any free port
+     * @param threads    the number of threads when virtual threads are not available
+     * @throws IOException if the port cannot be opened
+     */
+    CurriculumServer(CourseRepository repository, InetAddress host, int port, int threads) throws IOException {
+        this.repository = repository;
+        executor = newExecutor(threads);
+        server = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * This method loads the transcripts and serves them until the JVM is stopped.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Reads the options <br>
+     * 2. Loads every transcript (copies ending in _Copy.csv are left out) <br>
+     * 3. Starts the server and stops it again when the JVM shuts down
+     *
+     * @param args the directory or glob of the transcripts, followed by the options
+     * @return 0 if the server started, 1 otherwise
+     */
+    static int run(String[] args) {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.out.println("USAGE: java CourseAdministration --serve directoryOrGlob [--host 127.0.0.1] [--port 8080] [--threads 256]");
+            return 1;
+        }
+        String host = null;
+        int port = DEFAULT_PORT, threads = DEFAULT_THREADS;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--host" -> host = args[i + 1];
+                    case "--port" -> port = Integer.parseInt(args[i + 1]);
+                    case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                    default -> {
+                        System.out.println("Unknown option: " + args[i]);
+                        return 1;
+                    }
+                }
+            }
+        } catch (NumberFormatException numberFormatException) {
+            System.out.println("You entered an invalid integer.");
+            return 1;
+        }
+
+        InetAddress address;
+        try {
+            address = (host == null) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        } catch (UnknownHostException unknownHostException) {
+            System.out.println("Unknown host: " + host);
+            return 1;
+        }
+
+        try {
+            List<Path> files = TranscriptIngest.findFiles(args[0]);
+            files.removeIf(file -> TranscriptIngest.studentId(file).endsWith(BatchCommands.COPY_SUFFIX));
+            TranscriptIngest.Summary summary = TranscriptIngest.ingest(files);
+            summary.print();
+            CourseRepository repository = new CourseRepository();
+            for (TranscriptIngest.FileResult result : summary.results) {
+                if (result.failure != null) continue;
+                repository.put(TranscriptIngest.studentId(result.file), result.file, result.courses);
+            }
+
+            CurriculumServer curriculumServer = new CurriculumServer(repository, address, port, threads);
+            curriculumServer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(curriculumServer::stop));
+            System.out.println("Serving " + repository.studentIds().size() + " students on http://"
+                    + ((host == null) ? "localhost" : host) + ":"
+                    + curriculumServer.port() + "/students");
+            return 0;
+        } catch (IOException ioException) {
+            System.out.println("I/O error: " + ioException);
+            return 1;
+        }
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * This method stops accepting requests, waits up to a second for the running ones and stops the threads.
+     */
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * This method returns an executor that starts a virtual thread per task, or a fixed pool of
+     * platform threads when the JVM has no virtual threads.
+     *
+     * @param threads the size of the fixed pool
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException noVirtualThreads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    /**
+     * This method answers one request.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Splits the path into its segments and finds the endpoint <br>
+     * 2. Reads the parameters and runs the endpoint under the student's lock <br>
+     * 3. Sends the JSON (or text) answer, or the status and message of a RequestException. Any
+     * other failure of the endpoint is answered with 500
+     *
+     * @param exchange the request and its response
+     */
+    private void handle(HttpExchange exchange) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        Metrics.Operation operation = null;
+        try (exchange) {
+            int status = 200;
+            String contentType = JSON;
+            String body;
+            try {
+                String[] path = segments(exchange.getRequestURI().getRawPath());
+                String method = exchange.getRequestMethod();
+                if (path.length == 1 && path[0].equals("metrics")) {
+                    requireMethod(method, "GET");
+                    contentType = "text/plain; charset=utf-8";
+                    body = Metrics.dump();
+                } else if (path.length == 1 && path[0].equals("students")) {
+                    requireMethod(method, "GET");
+                    operation = HTTP_STUDENTS;
+                    body = studentIds();
+                } else if (path.length >= 2 && path.length <= 3 && path[0].equals("students")) {
+                    if (!repository.contains(path[1])) throw new RequestException(404, "no student \"" + path[1] + "\"");
+                    String action = (path.length == 2) ? "" : path[2];
+                    operation = operationOf(action);
+                    body = handleStudent(exchange, method, path[1], action);
+                } else {
+                    throw new RequestException(404, "not found");
+                }
+            } catch (RequestException requestException) {
+                status = requestException.status;
+                contentType = JSON;
+                body = appendJsonObject(new StringBuilder(), "error", requestException.getMessage()).toString();
+            } catch (RuntimeException runtimeException) {
+                HTTP_ERRORS.increment();
+                System.err.println("Error in " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + runtimeException);
+                status = 500;
+                contentType = JSON;
+                body = appendJsonObject(new StringBuilder(), "error", "internal error").toString();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException ioException) {
+            // The client went away; there is no one left to answer
+        } finally {
+            if (operation != null) operation.record(startNanos, startAllocatedBytes);
+        }
+    }
+
+    /**
+     * This method runs an endpoint of one student.
+     *
+     * @param exchange  the request
+     * @param method    the HTTP method
+     * @param studentId the id of the student
+     * @param action    the last path segment, empty for the student summary
+     * @return the JSON answer
+     * @throws RequestException if the request is invalid
+     * @throws IOException      if the request body cannot be read or the copy cannot be written
+     */
+    private String handleStudent(HttpExchange exchange, String method, String studentId, String action)
+            throws RequestException, IOException {
+        switch (action) {
+            case "" -> {
+                requireMethod(method, "GET");
+                return summary(studentId, repository.totals(studentId));
+            }
+            case "courses", "graded", "failed", "ungraded", "electives" -> {
+                requireMethod(method, "GET");
+                Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery(), new HashMap<>());
+                List<CourseRecord> courses = repository.current(studentId).asList();
+                return switch (action) {
+                    case "courses" -> courses(courses, parameters);
+                    case "graded" -> graded(courses, parameters);
+                    default -> filtered(courses, action);
+                };
+            }
+            case "grade" -> {
+                requireMethod(method, "POST");
+                Map<String, String> parameters = formParameters(exchange);
+                String courseNumber = required(parameters, "course"), grade = required(parameters, "grade");
+                double grades;
+                try {
+                    grades = Double.parseDouble(grade);
+                } catch (NumberFormatException numberFormatException) {
+                    throw new RequestException(400, "invalid grade \"" + grade + "\"");
+                }
+                if (!PackedCourse.fits(grades))
+                    throw new RequestException(400, "grade must be between " + PackedCourse.MIN_VALUE + " and " + PackedCourse.MAX_VALUE);
+                return changedCourse(repository.setGrade(studentId, courseNumber, grades), courseNumber);
+            }
+            case "edit" -> {
+                requireMethod(method, "POST");
+                Map<String, String> parameters = formParameters(exchange);
+                String courseNumber = required(parameters, "course");
+                return changedCourse(repository.editCourse(studentId, courseNumber,
+                        required(parameters, "number"), required(parameters, "title")), courseNumber);
+            }
+            case "shift" -> {
+                requireMethod(method, "POST");
+                CourseRepository.ShiftResult result = repository.shift(studentId, readShifter(exchange));
+                StringBuilder json = new StringBuilder().append("{\"matched\":");
+                appendJsonArray(json, result.matched).append(",\"confidence\":[");
+                for (int i = 0; i < result.confidences.size(); i++)
+                    json.append((i == 0) ? "" : ",").append(String.format(Locale.ROOT, "%.3f", result.confidences.get(i)));
+                json.append("],\"uncarried\":");
+                return appendJsonArray(json, result.uncarried).append('}').toString();
+            }
+            case "save" -> {
+                requireMethod(method, "POST");
+                Path copyFile = BatchCommands.copyFileOf(repository.sourceOf(studentId));
+                repository.save(studentId, copyFile);
+                return appendJsonObject(new StringBuilder(), "saved", copyFile.toString()).toString();
+            }
+            default -> throw new RequestException(404, "not found");
+        }
+    }
+
+    private String studentIds() {
+        StringBuilder json = new StringBuilder().append('[');
+        for (String id : repository.studentIds()) {
+            if (json.length() > 1) json.append(',');
+            appendJsonString(json, id);
+        }
+        return json.append(']').toString();
+    }
+
+    private static String summary(String studentId, CurriculumVersion.Totals totals) {
+        StringBuilder json = new StringBuilder(256).append("{\"id\":");
+        appendJsonString(json, studentId);
+        return json.append(",\"courses\":").append(totals.courses)
+                .append(",\"graded\":").append(totals.graded)
+                .append(",\"failed\":").append(totals.failed)
+                .append(",\"ungraded\":").append(totals.ungraded())
+                .append(",\"electives\":").append(totals.electives)
+                .append(",\"totalUnits\":").append(totals.totalUnits())
+                .append(",\"earnedUnits\":").append(totals.earnedUnits())
+                .append(",\"gpa\":").append(totals.weightedAverage())
+                .append('}').toString();
+    }
+
+    private static String courses(List<CourseRecord> courses, Map<String, String> parameters) throws RequestException {
+        String year = parameters.get("year"), term = parameters.get("term");
+        if (year == null) {
+            if (term != null) throw new RequestException(400, "term needs a year");
+            return appendJsonArray(new StringBuilder(), courses).toString();
+        }
+        int y = intParameter("year", year);
+        int firstTerm = 1, lastTerm = 3;
+        if (term != null) firstTerm = lastTerm = intParameter("term", term);
+        List<CourseRecord> matches = new ArrayList<>();
+        for (int t = firstTerm; t <= lastTerm; t++)
+            for (CourseRecord course : courses)
+                if (course.year() == y && course.term() == t) matches.add(course);
+        return appendJsonArray(new StringBuilder(), matches).toString();
+    }
+
+    /**
+     * This method lists the graded courses in the order of GradeRanking: by grade, ascending or
+     * descending, then by course number.
+     */
+    private static String graded(List<CourseRecord> courses, Map<String, String> parameters) throws RequestException {
+        String order = parameters.getOrDefault("order", "asc");
+        if (!order.equals("asc") && !order.equals("desc")) throw new RequestException(400, "order must be asc or desc");
+        List<CourseRecord> graded = new ArrayList<>();
+        for (CourseRecord course : courses)
+            if (course.isGraded()) graded.add(course);
+        Comparator<CourseRecord> byGrade = Comparator.comparingInt(course -> PackedCourse.gradeHundredths(course.packed()));
+        graded.sort((order.equals("desc") ? byGrade.reversed() : byGrade).thenComparing(CourseRecord::courseNumber));
+        return appendJsonArray(new StringBuilder(), graded).toString();
+    }
+
+    private static String filtered(List<CourseRecord> courses, String list) {
+        List<CourseRecord> matches = new ArrayList<>();
+        for (CourseRecord course : courses) {
+            boolean matched = switch (list) {
+                case "failed" -> course.isFailed();
+                case "ungraded" -> !course.isGraded();
+                default -> course.isElective();
+            };
+            if (matched) matches.add(course);
+        }
+        return appendJsonArray(new StringBuilder(), matches).toString();
+    }
+
+    private static String changedCourse(CourseRecord course, String courseNumber) throws RequestException {
+        if (course == null) throw new RequestException(404, "no course numbered \"" + courseNumber + "\"");
+        return appendJsonCourse(new StringBuilder(), course).toString();
+    }
+
+    private static ArrayList<Course> readShifter(HttpExchange exchange) throws RequestException, IOException {
+        checkBodySize(exchange);
+        CsvParser parser = new CsvParser(ElectiveRules.current(), false);
+        ArrayList<Course> shifterCourseList;
+        try (InputStream body = new LimitedBody(exchange.getRequestBody())) {
+            shifterCourseList = parser.parse(Channels.newChannel(body));
+        } catch (BodyTooLargeException bodyTooLargeException) {
+            throw bodyTooLarge();
+        }
+        if (!parser.getErrors().isEmpty())
+            throw new RequestException(400, "invalid shifter row: " + parser.getErrors().get(0));
+        return shifterCourseList;
+    }
+
+    private static Map<String, String> formParameters(HttpExchange exchange) throws RequestException, IOException {
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery(), new HashMap<>());
+        checkBodySize(exchange);
+        try (InputStream body = new LimitedBody(exchange.getRequestBody())) {
+            return parameters(new String(body.readAllBytes(), StandardCharsets.UTF_8), parameters);
+        } catch (BodyTooLargeException bodyTooLargeException) {
+            throw bodyTooLarge();
+        }
+    }
+
+    private static void checkBodySize(HttpExchange exchange) throws RequestException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            if (length != null && Long.parseLong(length.strip()) > MAX_BODY_BYTES) throw bodyTooLarge();
+        } catch (NumberFormatException numberFormatException) {
+            throw new RequestException(400, "invalid Content-Length");
+        }
+    }
+
+    private static RequestException bodyTooLarge() {
+        return new RequestException(413, "the body is larger than " + MAX_BODY_BYTES + " bytes");
+    }
+
+    /**
+     * This method adds the parameters of a query string or form body, such as "course=CS+111&amp;grade=92".
+     */
+    private static Map<String, String> parameters(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) return parameters;
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = (equals < 0) ? pair : pair.substring(0, equals);
+            String value = (equals < 0) ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String required(Map<String, String> parameters, String name) throws RequestException {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) throw new RequestException(400, "missing parameter \"" + name + "\"");
+        return value;
+    }
+
+    private static int intParameter(String name, String value) throws RequestException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException numberFormatException) {
+            throw new RequestException(400, "invalid " + name + " \"" + value + "\"");
+        }
+    }
+
+    private static void requireMethod(String method, String expected) throws RequestException {
+        if (!method.equals(expected)) throw new RequestException(405, "use " + expected);
+    }
+
+    /**
+     * This method splits a raw URI path into its decoded, non-empty segments.
+     */
+    private static String[] segments(String rawPath) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : rawPath.split("/"))
+            if (!segment.isEmpty()) segments.add(URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8));
+        return segments.toArray(new String[0]);
+    }
+
+    private static Metrics.Operation operationOf(String action) {
+        return switch (action) {
+            case "" -> HTTP_SUMMARY;
+            case "courses" -> HTTP_COURSES;
+            case "grade", "edit" -> HTTP_UPDATES;
+            case "shift" -> HTTP_SHIFT;
+            case "save" -> HTTP_SAVE;
+            default -> HTTP_LISTS;
+        };
+    }
+
+    static StringBuilder appendJsonArray(StringBuilder json, Iterable<CourseRecord> courses) {
+        json.append('[');
+        boolean first = true;
+        for (CourseRecord course : courses) {
+            if (!first) json.append(',');
+            appendJsonCourse(json, course);
+            first = false;
+        }
+        return json.append(']');
+    }
+
+    static StringBuilder appendJsonCourse(StringBuilder json, CourseRecord course) {
+        json.append("{\"year\":").append(course.year()).append(",\"term\":").append(course.term())
+                .append(",\"courseNumber\":");
+        appendJsonString(json, course.courseNumber()).append(",\"descriptiveTitle\":");
+        appendJsonString(json, course.descriptiveTitle()).append(",\"units\":").append(course.units())
+                .append(",\"grade\":");
+        // A course without a grade has a null grade, so that a grade of 0 can be told apart
+        if (course.isGraded()) json.append(course.grades());
+        else json.append("null");
+        json.append(",\"elective\":").append(course.isElective());
+        return json.append('}');
+    }
+
+    private static StringBuilder appendJsonObject(StringBuilder json, String name, String value) {
+        json.append('{');
+        appendJsonString(json, name).append(':');
+        return appendJsonString(json, value).append('}');
+    }
+
+    static StringBuilder appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+                }
+            }
+        }
+        return json.append('"');
+    }
+}
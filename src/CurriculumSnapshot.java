@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A binary copy of a curriculum CSV file that loads without text parsing.
+ * <p>
+ * FILE LAYOUT (little endian): <br>
+ * header: magic, version, size and last-modified time of the source CSV, fingerprint of the
+ * ElectiveRules the courses were classified with, number of strings, number of courses, number
+ * of parse errors <br>
+ * string dictionary: one end offset per string, followed by the UTF-8 bytes of all strings <br>
+ * course records: fixed-width rows of course number id, title id, and the term, year, units,
+ * grade and flags as one long laid out by PackedCourse <br>
+ * parse errors: the rows the CSV parser skipped, each as a length and UTF-8 bytes, so they are
+ * reported on every load as parseCSV reports them <br>
+ * trailer: CRC32 of everything before it
+ * <p>
+ * The snapshot is memory-mapped when loaded. Each dictionary string is decoded the first time
+ * a course refers to it, so every distinct course number and title is decoded once. A snapshot
+ * whose recorded size or modification time does not match the CSV file, or whose courses were
+ * classified with other elective rules than the current ones, is stale and ignored.
+ * <p>
+ * Loading builds every course right away rather than on access: the list is edited in place,
+ * and the course index built right after loading needs the StringDictionary id of every course
+ * number and title, which only decoding the string gives. The checksum is computed in the same
+ * pass, a block of records at a time, just before the block is read. The decoded strings are
+ * only interned once the whole checksum has passed: until then the courses add them to the
+ * dictionary for as long as they are in use, so a damaged snapshot leaves nothing behind.
+ */
+class CurriculumSnapshot {
+    private static final int MAGIC = 0x50534E43; // "CNSP"
+    // Version 4 adds the parse errors
+    private static final short VERSION = 4;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int RECORD_SIZE = 4 + 4 + 8;
+    // Records checksummed and read per step of load
+    private static final int RECORD_BLOCK = 4096;
+
+    private CurriculumSnapshot() {
+    }
+
+    /**
+     * This method returns the snapshot file that belongs to a CSV file.
+     *
+     * @param csvFile the curriculum CSV file
+     * @return the snapshot path, the CSV name followed by ".snapshot"
+     */
+    static Path snapshotFileOf(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + ".snapshot");
+    }
+
+    /**
+     * This method writes the snapshot of a list of courses parsed from a CSV file.
+     * The snapshot is written to a temporary file first and then moved into place.
+     *
+     * @param courseList the courses parsed from the CSV file with the current ElectiveRules
+     * @param errors     the rows the parser skipped, as CsvParser.getErrors returns them
+     * @param csvFile    the CSV file the courses came from
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(List<Course> courseList, List<String> errors, Path csvFile) throws IOException {
+        BasicFileAttributes source = Files.readAttributes(csvFile, BasicFileAttributes.class);
+        CourseStore store = CourseStore.of(courseList);
+
+        byte[][] strings = new byte[store.dictionarySize()][];
+        int stringBytes = 0;
+        for (int id = 0; id < strings.length; id++) {
+            strings[id] = store.dictionaryEntry(id).getBytes(StandardCharsets.UTF_8);
+            stringBytes += strings[id].length;
+        }
+        byte[][] errorStrings = new byte[errors.size()][];
+        int errorBytes = 0;
+        for (int i = 0; i < errorStrings.length; i++) {
+            errorStrings[i] = errors.get(i).getBytes(StandardCharsets.UTF_8);
+            errorBytes += 4 + errorStrings[i].length;
+        }
+
+        ByteBuffer snapshot = ByteBuffer.allocate(HEADER_SIZE + 4 * strings.length + stringBytes
+                + RECORD_SIZE * store.size() + errorBytes + 4).order(ByteOrder.LITTLE_ENDIAN);
+        snapshot.putInt(MAGIC).putShort(VERSION)
+                .putLong(source.size()).putLong(source.lastModifiedTime().toMillis())
+                .putInt(ElectiveRules.current().fingerprint()).putInt(strings.length).putInt(store.size())
+                .putInt(errorStrings.length);
+
+        int end = 0;
+        for (byte[] string : strings) snapshot.putInt(end += string.length);
+        for (byte[] string : strings) snapshot.put(string);
+
+        for (int row = 0; row < store.size(); row++) {
+            snapshot.putInt(store.courseNumberId(row)).putInt(store.titleId(row)).putLong(store.packed(row));
+        }
+        for (byte[] error : errorStrings) snapshot.putInt(error.length).put(error);
+
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.array(), 0, snapshot.position());
+        snapshot.putInt((int) crc.getValue()).flip();
+
+        Path snapshotFile = snapshotFileOf(csvFile);
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) channel.write(snapshot);
+        }
+        Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * This method loads the courses of a CSV file from its snapshot.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. The snapshot is memory-mapped <br>
+     * 2. The header is checked: magic, version, the size and modification time of the CSV,
+     * and the fingerprint of the elective rules <br>
+     * 3. The header and the dictionary are added to the checksum <br>
+     * 4. For each block of records, the block is added to the checksum and one Course is created
+     * per record, decoding dictionary strings on first use <br>
+     * 5. The parse errors are read and added to the checksum, which is then verified <br>
+     * 6. The decoded strings are interned, keeping the Strings and ids the courses already have
+     *
+     * @param csvFile the curriculum CSV file
+     * @param errors  the list the recorded parse errors are added to, if the snapshot is used
+     * @return the courses, or null if there is no snapshot or it is stale or damaged
+     */
+    static ArrayList<Course> load(Path csvFile, List<String> errors) {
+        Path snapshotFile = snapshotFileOf(csvFile);
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            BasicFileAttributes source = Files.readAttributes(csvFile, BasicFileAttributes.class);
+            long length = channel.size();
+            if (length < HEADER_SIZE + 4 || length > Integer.MAX_VALUE) return null;
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            ByteBuffer snapshot = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (snapshot.getInt(0) != MAGIC || snapshot.getShort(4) != VERSION
+                    || snapshot.getLong(6) != source.size()
+                    || snapshot.getLong(14) != source.lastModifiedTime().toMillis()
+                    || snapshot.getInt(22) != ElectiveRules.current().fingerprint()) return null;
+
+            int stringCount = snapshot.getInt(26);
+            int courseCount = snapshot.getInt(30);
+            int errorCount = snapshot.getInt(34);
+            int offsets = HEADER_SIZE;
+            int stringData = offsets + 4 * stringCount;
+            int stringBytes = (stringCount == 0) ? 0 : snapshot.getInt(offsets + 4 * (stringCount - 1));
+            int records = stringData + stringBytes;
+            long errorSection = (long) records + (long) RECORD_SIZE * courseCount;
+            if (stringCount < 0 || courseCount < 0 || errorCount < 0 || errorSection + 4 > length) return null;
+
+            CRC32 crc = new CRC32();
+            crc.update(snapshot.duplicate().position(0).limit(records));
+            String[] decoded = new String[stringCount];
+            ArrayList<Course> courseList = new CourseList(courseCount);
+            for (int first = 0; first < courseCount; first += RECORD_BLOCK) {
+                int blockStart = records + first * RECORD_SIZE;
+                int blockEnd = records + Math.min(courseCount, first + RECORD_BLOCK) * RECORD_SIZE;
+                crc.update(snapshot.duplicate().position(blockStart).limit(blockEnd));
+                for (int record = blockStart; record < blockEnd; record += RECORD_SIZE) {
+                    courseList.add(new Course(
+                            string(snapshot, decoded, offsets, stringData, snapshot.getInt(record)),
+                            string(snapshot, decoded, offsets, stringData, snapshot.getInt(record + 4)),
+                            snapshot.getLong(record + 8)));
+                }
+            }
+
+            List<String> snapshotErrors = new ArrayList<>(errorCount);
+            int position = (int) errorSection;
+            for (int i = 0; i < errorCount; i++) {
+                int errorLength = snapshot.getInt(position);
+                if (errorLength < 0 || (long) position + 4 + errorLength + 4 > length) return null;
+                byte[] bytes = new byte[errorLength];
+                snapshot.get(position + 4, bytes);
+                snapshotErrors.add(new String(bytes, StandardCharsets.UTF_8));
+                position += 4 + errorLength;
+            }
+            if (position + 4 != length) return null;
+            crc.update(snapshot.duplicate().position((int) errorSection).limit(position));
+            if ((int) crc.getValue() != snapshot.getInt(position)) return null;
+            for (String value : decoded) StringDictionary.intern(value);
+            errors.addAll(snapshotErrors);
+            return courseList;
+        } catch (IOException | RuntimeException unusableSnapshot) {
+            return null;
+        }
+    }
+
+    /**
+     * This method returns a dictionary string, decoding it from the mapped bytes the first time.
+     */
+    private static String string(ByteBuffer snapshot, String[] decoded, int offsets, int stringData, int id) {
+        String value = decoded[id];
+        if (value == null) {
+            int start = (id == 0) ? 0 : snapshot.getInt(offsets + 4 * (id - 1));
+            int end = snapshot.getInt(offsets + 4 * id);
+            byte[] bytes = new byte[end - start];
+            snapshot.get(stringData + start, bytes);
+            value = decoded[id] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
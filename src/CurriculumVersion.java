@@ -0,0 +1,267 @@
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * One immutable version of a curriculum: its courses, as CourseRecords, and their totals.
+ * <p>
+ * The courses are kept in a persistent vector, a tree in which every node has up to 32 children
+ * and the leaves hold the records in list order. Changing or appending a course copies only the
+ * nodes on the path from the root to its leaf (at most log32(n) + 1 arrays of 32 references) and
+ * shares every other node with the version it was made from. A version can therefore be kept,
+ * read and written out by any thread while newer versions are made, without locking and without
+ * copying the whole curriculum.
+ * <p>
+ * The totals are carried from version to version in O(1), by taking out the old record and
+ * counting in the new one, in the same way as TranscriptAggregates.
+ */
+final class CurriculumVersion {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final int size;
+    // Bits of the index consumed above the leaves: 0 while the root is itself a leaf
+    private final int shift;
+    private final Object[] root;
+    final long number;
+    final Totals totals;
+
+    private CurriculumVersion(int size, int shift, Object[] root, long number, Totals totals) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.number = number;
+        this.totals = totals;
+    }
+
+    /**
+     * The totals of a transcript: the same figures as TranscriptAggregates, but immutable. Like
+     * them, the sums are kept in whole hundredths.
+     */
+    static final class Totals {
+        static final Totals NONE = new Totals(0, 0, 0, 0, 0, 0, 0, 0);
+
+        final int courses, graded, failed, electives;
+        // Units in hundredths, and the units times the grade in hundredths of both
+        private final long totalUnits, gradedUnits, earnedUnits, weightedGradeSum;
+
+        private Totals(int courses, int graded, int failed, int electives,
+                       long totalUnits, long gradedUnits, long earnedUnits, long weightedGradeSum) {
+            this.courses = courses;
+            this.graded = graded;
+            this.failed = failed;
+            this.electives = electives;
+            this.totalUnits = totalUnits;
+            this.gradedUnits = gradedUnits;
+            this.earnedUnits = earnedUnits;
+            this.weightedGradeSum = weightedGradeSum;
+        }
+
+        int ungraded() {
+            return courses - graded;
+        }
+
+        double totalUnits() {
+            return totalUnits / (double) PackedCourse.SCALE;
+        }
+
+        /**
+         * This method returns the units of the graded courses that were passed.
+         */
+        double earnedUnits() {
+            return earnedUnits / (double) PackedCourse.SCALE;
+        }
+
+        /**
+         * This method returns the average grade of the graded courses, weighted by their units.
+         *
+         * @return the weighted average, or 0 if no graded course has units
+         */
+        double weightedAverage() {
+            return (graded == 0 || gradedUnits == 0) ? 0 : (double) weightedGradeSum / gradedUnits / PackedCourse.SCALE;
+        }
+
+        /**
+         * This method returns the totals with one course taken out (sign -1) or counted in (sign 1).
+         */
+        Totals count(CourseRecord course, int sign) {
+            long units = PackedCourse.unitsHundredths(course.packed());
+            int graded = this.graded, failed = this.failed;
+            long gradedUnits = this.gradedUnits, earnedUnits = this.earnedUnits, weightedGradeSum = this.weightedGradeSum;
+            if (course.isGraded()) {
+                graded += sign;
+                gradedUnits += sign * units;
+                weightedGradeSum += sign * units * PackedCourse.gradeHundredths(course.packed());
+                if (course.isFailed()) failed += sign;
+                else earnedUnits += sign * units;
+            }
+            return new Totals(courses + sign, graded, failed, electives + (course.isElective() ? sign : 0),
+                    totalUnits + sign * units, gradedUnits, earnedUnits, weightedGradeSum);
+        }
+    }
+
+    /**
+     * This method builds the first version of a curriculum, filling the tree from its leaves up.
+     *
+     * @param courses the courses, in list order
+     * @return the version, numbered 1
+     */
+    static CurriculumVersion of(List<CourseRecord> courses) {
+        int size = courses.size();
+        if (size == 0) return new CurriculumVersion(0, 0, new Object[WIDTH], 1, Totals.NONE);
+
+        Totals totals = Totals.NONE;
+        Object[] level = new Object[(size + MASK) >>> BITS];
+        for (int leaf = 0; leaf < level.length; leaf++) {
+            Object[] records = new Object[WIDTH];
+            for (int i = 0; i < WIDTH && leaf * WIDTH + i < size; i++) {
+                CourseRecord course = courses.get(leaf * WIDTH + i);
+                records[i] = course;
+                totals = totals.count(course, 1);
+            }
+            level[leaf] = records;
+        }
+        int shift = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + MASK) >>> BITS];
+            for (int parent = 0; parent < parents.length; parent++) {
+                Object[] children = new Object[WIDTH];
+                System.arraycopy(level, parent * WIDTH, children, 0, Math.min(WIDTH, level.length - parent * WIDTH));
+                parents[parent] = children;
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new CurriculumVersion(size, shift, (Object[]) level[0], 1, totals);
+    }
+
+    /**
+     * This method builds the first version of a curriculum from the current values of mutable
+     * courses, as a point-in-time copy that does not change with them.
+     *
+     * @param courses the courses, in list order
+     * @return the version, numbered 1
+     */
+    static CurriculumVersion ofCourses(List<Course> courses) {
+        return of(new AbstractList<>() {
+            @Override
+            public CourseRecord get(int index) {
+                return CourseRecord.of(courses.get(index));
+            }
+
+            @Override
+            public int size() {
+                return courses.size();
+            }
+        });
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * This method returns the course at a position, in O(log32 n).
+     *
+     * @param index the position, starting at 0
+     * @return the course
+     */
+    CourseRecord get(int index) {
+        return (CourseRecord) leafOf(index)[index & MASK];
+    }
+
+    /**
+     * This method returns the version with the course at a position replaced.
+     *
+     * @param index  the position, starting at 0
+     * @param course the new course
+     * @return the new version; this version is unchanged
+     */
+    CurriculumVersion set(int index, CourseRecord course) {
+        CourseRecord old = get(index);
+        return new CurriculumVersion(size, shift, assoc(shift, root, index, course), number + 1,
+                totals.count(old, -1).count(course, 1));
+    }
+
+    /**
+     * This method returns the version with a course added at the end.
+     *
+     * @param course the course to add
+     * @return the new version; this version is unchanged
+     */
+    CurriculumVersion append(CourseRecord course) {
+        Totals newTotals = totals.count(course, 1);
+        if (size < 1 << (shift + BITS))
+            return new CurriculumVersion(size + 1, shift, assoc(shift, root, size, course), number + 1, newTotals);
+        // The tree is full: the old root becomes the first child of a new root one level higher
+        Object[] newRoot = new Object[WIDTH];
+        newRoot[0] = root;
+        newRoot[1] = assoc(shift, null, size, course);
+        return new CurriculumVersion(size + 1, shift + BITS, newRoot, number + 1, newTotals);
+    }
+
+    /**
+     * This method returns the courses as a read-only list backed by this version.
+     */
+    List<CourseRecord> asList() {
+        return new RecordList();
+    }
+
+    /**
+     * This method returns the courses as a read-only list of new mutable Course objects, one made
+     * on every get, for code such as CourseExporter that takes courses.
+     */
+    List<Course> asCourses() {
+        return new CourseList();
+    }
+
+    private Object[] leafOf(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) node = (Object[]) node[(index >>> level) & MASK];
+        return node;
+    }
+
+    /**
+     * This method copies the path to a position, with the course stored at its end.
+     *
+     * @param level the bits of the index consumed below this node
+     * @param node  the node to copy, or null to create it
+     * @return the copy
+     */
+    private static Object[] assoc(int level, Object[] node, int index, CourseRecord course) {
+        Object[] copy = (node == null) ? new Object[WIDTH] : node.clone();
+        if (level == 0) {
+            copy[index & MASK] = course;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = assoc(level - BITS, (Object[]) copy[child], index, course);
+        }
+        return copy;
+    }
+
+    private final class RecordList extends AbstractList<CourseRecord> implements RandomAccess {
+        @Override
+        public CourseRecord get(int index) {
+            return CurriculumVersion.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private final class CourseList extends AbstractList<Course> implements RandomAccess {
+        @Override
+        public Course get(int index) {
+            return CurriculumVersion.this.get(index).toCourse();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,551 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Watches the curriculum and shifter CSV files and brings the loaded courses up to date when one
+ * of them changes on disk, without parsing the whole file again.
+ * <p>
+ * A background thread waits on a WatchService for the directories of the files. When a file
+ * changes, the thread reads it and compares it with the bytes it read last. The bytes before the
+ * first difference and after the last one are unchanged, so only the records between them are
+ * parsed: from the record holding the first difference up to the first record boundary inside the
+ * unchanged end. The thread queues the old and new records of that window as a patch; it never
+ * touches the courses.
+ * <p>
+ * The menu applies the queued patches before each action (see applyPending), so the courses and
+ * the structures derived from them never change while they are being read. Every record of a file
+ * is kept with the values it was parsed with and the course it became. A patch pairs the old and
+ * new records of its window by course number, then by title. A paired record sets on its course
+ * only the values that changed in the file, so the edits made in the program to other values are
+ * kept. An old record left over removes its course, and a new one adds a course. A change costs a
+ * comparison of the bytes, much cheaper than parsing them, plus the parsing and the updates of the
+ * changed rows only. The tables of rows and record starts are updated in place while the file
+ * keeps its number of records (the starts after the window still move by the change in length);
+ * a record added or removed shifts the rest of the tables, which only moves references and ints.
+ * The checksum the change journal keeps of the file is left to the journal, which computes it
+ * when it commits.
+ * <p>
+ * The watcher can start from an earlier content of the curriculum file, the one the loaded
+ * courses reflect: its records are paired with the courses, and the file as it is now is then
+ * read as a change of it.
+ * <p>
+ * The shifter file is followed the same way, and a shift takes copies of its courses instead of
+ * parsing it again.
+ */
+class CurriculumWatcher {
+    // Editors often write a file in several steps; the events of this many milliseconds are read together
+    private static final long SETTLE_MILLIS = 50;
+    private static final Metrics.Operation READ_CHANGE = Metrics.operation("file change read");
+    private static final Metrics.Operation APPLY_CHANGE = Metrics.operation("file change apply");
+    private static final Pattern LINE_NUMBER = Pattern.compile("^line (\\d+)");
+
+    private final WatchService watchService;
+    // The watched files, by absolute path
+    private final Map<Path, WatchedFile> files = new LinkedHashMap<>();
+    private final ConcurrentLinkedQueue<Patch> patches = new ConcurrentLinkedQueue<>();
+    // The content of the curriculum file the loaded courses reflect, or null for the file as it is
+    private final byte[] curriculumContent;
+    private final Thread thread;
+
+    /**
+     * A watched file. The bytes and record starts are only used by the watcher thread, and the
+     * rows only by the thread that applies the patches.
+     */
+    private static final class WatchedFile {
+        final Path path;
+        final boolean isCurriculum;
+        byte[] content;
+        // The start of each record, the header first, followed by the length of the content
+        int[] recordStarts = new int[1];
+        int recordCount;
+        final ArrayList<Row> rows = new ArrayList<>();
+        boolean attached;
+
+        WatchedFile(Path path, boolean isCurriculum) {
+            this.path = path;
+            this.isCurriculum = isCurriculum;
+        }
+    }
+
+    /**
+     * A record of a file: the course it was parsed into, or null for the header, a blank line or a
+     * malformed row, and the loaded course that follows it.
+     */
+    private static final class Row {
+        final Course parsed;
+        Course course;
+
+        Row(Course parsed) {
+            this.parsed = parsed;
+        }
+    }
+
+    /**
+     * The records of a window of a file, replaced by the records read from its new content.
+     */
+    private static final class Patch {
+        final WatchedFile file;
+        final int from;
+        final int removedCount;
+        // The courses of the new records, with null for the records that are not courses
+        final List<Course> parsed;
+        // The content of the file after the change
+        final byte[] content;
+        final List<String> errors;
+        final String failure;
+
+        Patch(WatchedFile file, int from, int removedCount, List<Course> parsed, byte[] content, List<String> errors) {
+            this.file = file;
+            this.from = from;
+            this.removedCount = removedCount;
+            this.parsed = parsed;
+            this.content = content;
+            this.errors = errors;
+            this.failure = null;
+        }
+
+        Patch(WatchedFile file, String failure) {
+            this.file = file;
+            this.from = 0;
+            this.removedCount = 0;
+            this.parsed = List.of();
+            this.content = null;
+            this.errors = List.of();
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Constructor with parameters. The files are read, and watched from then on, by a background
+     * thread; nothing is applied until applyPending is called.
+     *
+     * @param curriculumFile    the CSV file the loaded courses were read from
+     * @param shifterFile       the CSV file of the shifter
+     * @param curriculumContent the content of the curriculum file the loaded courses reflect, or
+     *                          null if they were read from the file as it is
+     * @throws IOException if the directories of the files cannot be watched
+     */
+    CurriculumWatcher(Path curriculumFile, Path shifterFile, byte[] curriculumContent) throws IOException {
+        this.curriculumContent = curriculumContent;
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            for (Path file : List.of(curriculumFile, shifterFile)) {
+                Path path = file.toAbsolutePath().normalize();
+                files.putIfAbsent(path, new WatchedFile(path, file == curriculumFile));
+            }
+            Set<Path> directories = new HashSet<>();
+            for (Path path : files.keySet())
+                if (directories.add(path.getParent()))
+                    path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ioException) {
+            watchService.close();
+            throw ioException;
+        }
+        thread = new Thread(this::run, "curriculum-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method stops watching the files.
+     */
+    void close() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+            // The watcher thread is stopping anyway
+        }
+    }
+
+    /**
+     * This method applies the changes read from the files since the last call. It must be called
+     * by the thread that uses the courses, while nothing else reads them.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Takes the queued patches in the order they were read <br>
+     * 2. The first patch of the curriculum pairs its records with the loaded courses, by course
+     * number and then by title, and changes nothing <br>
+     * 3. Every later patch pairs its old and new records, then sets the changed values of the
+     * paired courses, adds the courses of new records and removes those of old ones <br>
+     * 4. Tells the user what changed
+     *
+     * @param courseList the loaded courses of the curriculum file
+     * @return the number of courses added, removed or changed
+     */
+    int applyPending(ArrayList<Course> courseList) {
+        int changes = 0;
+        Patch patch;
+        while ((patch = patches.poll()) != null) {
+            WatchedFile file = patch.file;
+            Path name = file.path.getFileName();
+            if (patch.failure != null) {
+                System.out.println("Could not read the changes of " + name + ": " + patch.failure);
+                continue;
+            }
+            long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+            List<Row> oldRows = file.rows.subList(patch.from, patch.from + patch.removedCount);
+            List<Row> newRows = new ArrayList<>(patch.parsed.size());
+            for (Course parsed : patch.parsed) newRows.add(new Row(parsed));
+            boolean initial = !file.attached;
+            if (!initial) for (String error : patch.errors) System.out.println("Skipped " + error);
+
+            int[] counts = new int[3];
+            if (file.isCurriculum && initial) attach(newRows, courseList);
+            else if (file.isCurriculum) {
+                counts = apply(oldRows, newRows, courseList);
+                CourseAdministration.curriculumFileRead(courseList, patch.content);
+            }
+            if (newRows.size() == patch.removedCount) {
+                for (int i = 0; i < newRows.size(); i++) file.rows.set(patch.from + i, newRows.get(i));
+            } else {
+                oldRows.clear();
+                file.rows.addAll(patch.from, newRows);
+            }
+            file.attached = true;
+            APPLY_CHANGE.record(startNanos, startAllocatedBytes, newRows.size());
+
+            if (initial) continue;
+            if (file.isCurriculum) {
+                System.out.println(name + " changed: " + counts[0] + " courses added, " + counts[1] + " removed, "
+                        + counts[2] + " changed (" + newRows.size() + " rows read).");
+                changes += counts[0] + counts[1] + counts[2];
+            } else {
+                System.out.println(name + " changed (" + newRows.size() + " rows read).");
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * This method returns copies of the courses of a watched file, as parsing it would give them.
+     *
+     * @param file the file
+     * @return the courses, or null if the file is not watched or has not been read yet
+     */
+    ArrayList<Course> coursesOf(Path file) {
+        WatchedFile watchedFile = files.get(file.toAbsolutePath().normalize());
+        if (watchedFile == null || !watchedFile.attached) return null;
+        ArrayList<Course> courseList = new ArrayList<>(watchedFile.rows.size());
+        for (Row row : watchedFile.rows)
+            if (row.parsed != null) courseList.add(copyOf(row.parsed));
+        return courseList;
+    }
+
+    /**
+     * This method pairs the records of a curriculum file with the loaded courses: by course
+     * number first, then by title for the records left, each course once.
+     */
+    private static void attach(List<Row> rows, ArrayList<Course> courseList) {
+        CourseIndex courseIndex = CourseAdministration.courseIndexOf(courseList);
+        Map<Course, Boolean> paired = new IdentityHashMap<>();
+        for (Row row : rows)
+            if (row.parsed != null) row.course = unpaired(courseIndex.findAllByCourseNumber(row.parsed.getCourseNumber()), paired);
+        for (Row row : rows)
+            if (row.parsed != null && row.course == null)
+                row.course = unpaired(courseIndex.findByTitleId(row.parsed.getDescriptiveTitleId()), paired);
+    }
+
+    private static Course unpaired(List<Course> courses, Map<Course, Boolean> paired) {
+        for (Course course : courses)
+            if (paired.putIfAbsent(course, Boolean.TRUE) == null) return course;
+        return null;
+    }
+
+    /**
+     * This method applies the change of a window of records to the loaded courses.
+     *
+     * @return the number of courses added, removed and changed
+     */
+    private static int[] apply(List<Row> oldRows, List<Row> newRows, ArrayList<Course> courseList) {
+        List<Row> removed = new ArrayList<>();
+        List<Row> added = new ArrayList<>();
+        Map<Row, Row> pairs = new IdentityHashMap<>();
+        pair(oldRows, newRows, pairs, Course::getCourseNumberId);
+        pair(oldRows, newRows, pairs, Course::getDescriptiveTitleId);
+        for (Row row : oldRows)
+            if (row.parsed != null && !pairs.containsKey(row)) removed.add(row);
+        Set<Row> pairedNewRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        pairedNewRows.addAll(pairs.values());
+        for (Row row : newRows)
+            if (row.parsed != null && !pairedNewRows.contains(row)) added.add(row);
+
+        int[] counts = new int[3];
+        for (Map.Entry<Row, Row> pair : pairs.entrySet()) {
+            Row oldRow = pair.getKey(), newRow = pair.getValue();
+            newRow.course = oldRow.course;
+            if (oldRow.course != null && setChangedValues(oldRow.course, oldRow.parsed, newRow.parsed)) counts[2]++;
+        }
+        List<Course> removedCourses = new ArrayList<>(removed.size());
+        for (Row row : removed)
+            if (row.course != null) removedCourses.add(row.course);
+        counts[1] = CourseAdministration.removeCourses(courseList, removedCourses);
+        for (Row row : added) {
+            row.course = copyOf(row.parsed);
+            CourseAdministration.addCourse(courseList, row.course);
+            counts[0]++;
+        }
+        return counts;
+    }
+
+    /**
+     * This method pairs the old and new records that are not paired yet and have the same key,
+     * in file order.
+     */
+    private static void pair(List<Row> oldRows, List<Row> newRows, Map<Row, Row> pairs, ToIntFunction<Course> key) {
+        Set<Row> pairedNewRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        pairedNewRows.addAll(pairs.values());
+        Map<Integer, ArrayDeque<Row>> newRowsByKey = new HashMap<>();
+        for (Row row : newRows)
+            if (row.parsed != null && !pairedNewRows.contains(row))
+                newRowsByKey.computeIfAbsent(key.applyAsInt(row.parsed), k -> new ArrayDeque<>()).add(row);
+        for (Row row : oldRows) {
+            if (row.parsed == null || pairs.containsKey(row)) continue;
+            ArrayDeque<Row> candidates = newRowsByKey.get(key.applyAsInt(row.parsed));
+            if (candidates != null && !candidates.isEmpty()) pairs.put(row, candidates.poll());
+        }
+    }
+
+    /**
+     * This method sets on a course the values that differ between the old and new record of its row.
+     *
+     * @return true if a value was set
+     */
+    private static boolean setChangedValues(Course course, Course before, Course after) {
+        boolean changed = false;
+        if (!before.getCourseNumber().equals(after.getCourseNumber())) {
+            course.setCourseNumber(after.getCourseNumber());
+            changed = true;
+        }
+        if (!before.getDescriptiveTitle().equals(after.getDescriptiveTitle())) {
+            course.setDescriptiveTitle(after.getDescriptiveTitle());
+            changed = true;
+        }
+        if (before.getYear() != after.getYear()) {
+            course.setYear(after.getYear());
+            changed = true;
+        }
+        if (before.getTerm() != after.getTerm()) {
+            course.setTerm(after.getTerm());
+            changed = true;
+        }
+        if (before.getUnits() != after.getUnits()) {
+            course.setUnits(after.getUnits());
+            changed = true;
+        }
+        if (before.isGraded() != after.isGraded() || before.getGrades() != after.getGrades()) {
+            if (after.isGraded()) course.setGrades(after.getGrades());
+            else course.clearGrades();
+            changed = true;
+        }
+        if (before.getIsElective() != after.getIsElective()) {
+            course.setIsElective(after.getIsElective());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static Course copyOf(Course course) {
+        return new Course(course.getCourseNumber(), course.getDescriptiveTitle(), course.getPacked());
+    }
+
+    /**
+     * This method is the watcher thread: it reads every file once, then again each time it changes.
+     * The curriculum file is read as a change of the content the loaded courses reflect, if known.
+     */
+    private void run() {
+        try {
+            for (WatchedFile file : files.values()) {
+                if (file.isCurriculum && curriculumContent != null) update(file, curriculumContent);
+                read(file);
+            }
+            while (true) {
+                WatchKey key = watchService.take();
+                Thread.sleep(SETTLE_MILLIS);
+                Set<WatchedFile> changed = new HashSet<>();
+                for (; key != null; key = watchService.poll()) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changed.addAll(files.values());
+                            continue;
+                        }
+                        WatchedFile file = files.get(directory.resolve((Path) event.context()));
+                        if (file != null) changed.add(file);
+                    }
+                    key.reset();
+                }
+                for (WatchedFile file : changed) read(file);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException stopped) {
+            // close was called
+        }
+    }
+
+    /**
+     * This method reads a file and queues the change of its records since the last read.
+     */
+    private void read(WatchedFile file) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file.path);
+        } catch (NoSuchFileException noSuchFileException) {
+            // Removed, or being replaced; the new file is read when it is created
+            return;
+        } catch (IOException ioException) {
+            patches.add(new Patch(file, ioException.toString()));
+            return;
+        }
+        update(file, content);
+    }
+
+    /**
+     * This method queues the change of the records of a file from its last content to a new one.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. The first time, every record is parsed <br>
+     * 2. Finds the length of the unchanged beginning and end of the file <br>
+     * 3. Parses the new records from the start of the record holding the first difference, until
+     * a record ends inside the unchanged end where an old record ended too <br>
+     * 4. Queues the old records of the window with the new records that replace them
+     */
+    private void update(WatchedFile file, byte[] content) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+
+        byte[] previousContent = file.content;
+        int prefix = (previousContent == null) ? 0 : Arrays.mismatch(previousContent, content);
+        if (prefix < 0) return;
+        int oldLength = (previousContent == null) ? 0 : previousContent.length;
+        int suffix = (previousContent == null) ? 0
+                : commonSuffix(previousContent, content, Math.min(oldLength, content.length) - prefix);
+        int first = recordAt(file, prefix);
+        Window window = new Window(file, first, content.length - oldLength, content.length - suffix, content.length);
+        CsvParser parser = new CsvParser();
+        parser.parseRecords(content, file.recordStarts[first], content.length, first == 0, 1, window);
+        List<String> errors = parser.getErrors();
+        if (!errors.isEmpty() && first > 0) errors = renumber(errors, lineOf(content, file.recordStarts[first]) - 1);
+
+        // The records before the window stay, those after it move by the change in length. With as
+        // many records as before, the starts are updated in place
+        int[] oldStarts = file.recordStarts;
+        int oldCount = file.recordCount;
+        int count = first + window.count + (oldCount - window.last);
+        int[] starts = (count == oldCount) ? oldStarts : new int[count + 1];
+        if (starts != oldStarts) System.arraycopy(oldStarts, 0, starts, 0, first);
+        System.arraycopy(window.starts, 0, starts, first, window.count);
+        if (starts != oldStarts || window.delta != 0)
+            for (int i = window.last; i <= oldCount; i++) starts[first + window.count + i - window.last] = oldStarts[i] + window.delta;
+        file.content = content;
+        file.recordStarts = starts;
+        file.recordCount = count;
+
+        patches.add(new Patch(file, first, window.last - first, window.parsed, content, List.copyOf(errors)));
+        READ_CHANGE.record(startNanos, startAllocatedBytes, window.count);
+    }
+
+    /**
+     * The new records of a changed window, read until one ends where an old record ended, in
+     * the unchanged end of the file.
+     */
+    private static final class Window implements CsvParser.RecordHandler {
+        final int[] oldStarts;
+        final int oldCount;
+        final int first;
+        final int delta;
+        final int changedEnd;
+        final int length;
+        int[] starts = new int[16];
+        int count;
+        final List<Course> parsed = new ArrayList<>();
+        // The first old record after the window
+        int last;
+
+        Window(WatchedFile file, int first, int delta, int changedEnd, int length) {
+            this.oldStarts = file.recordStarts;
+            this.oldCount = file.recordCount;
+            this.first = first;
+            this.delta = delta;
+            this.changedEnd = changedEnd;
+            this.length = length;
+            this.last = oldCount;
+        }
+
+        @Override
+        public boolean record(int start, int end, Course course) {
+            if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = start;
+            parsed.add(course);
+            if (end < changedEnd || end == length) return true;
+            int aligned = Arrays.binarySearch(oldStarts, first + 1, oldCount + 1, end - delta);
+            if (aligned < 0) return true;
+            last = aligned;
+            return false;
+        }
+    }
+
+    /**
+     * This method returns the record holding a byte of the previous content: the last record
+     * starting at or before it.
+     */
+    private static int recordAt(WatchedFile file, int offset) {
+        int i = Arrays.binarySearch(file.recordStarts, 0, file.recordCount, offset);
+        return Math.max(0, (i >= 0) ? i : -i - 2);
+    }
+
+    /**
+     * This method returns the number of equal bytes at the end of two arrays, up to a maximum.
+     */
+    private static int commonSuffix(byte[] a, byte[] b, int max) {
+        final int block = 4096;
+        int length = 0;
+        // Whole blocks first, which Arrays.equals compares many bytes at a time
+        while (length + block <= max && Arrays.equals(a, a.length - length - block, a.length - length,
+                b, b.length - length - block, b.length - length))
+            length += block;
+        while (length < max && a[a.length - length - 1] == b[b.length - length - 1]) length++;
+        return length;
+    }
+
+    private static int lineOf(byte[] content, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset; i++)
+            if (content[i] == '\n') line++;
+        return line;
+    }
+
+    /**
+     * This method moves the line numbers of parser errors, which count from the start of the window.
+     */
+    private static List<String> renumber(List<String> errors, int lines) {
+        List<String> renumbered = new ArrayList<>(errors.size());
+        for (String error : errors) {
+            Matcher matcher = LINE_NUMBER.matcher(error);
+            renumbered.add(matcher.find()
+                    ? "line " + (Integer.parseInt(matcher.group(1)) + lines) + error.substring(matcher.end()) : error);
+        }
+        return renumbered;
+    }
+}
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The rules that decide which courses are electives, compiled once so that CsvParser can apply
+ * them to every row while it parses.
+ * <p>
+ * RULE FILE (electives.rules, one rule per line; blank lines and lines starting with # are
+ * ignored): <br>
+ * prefix CSE - course numbers that start with the word CSE, such as CSE, CSE 7 or CSE-7, but not
+ * CSEA 1 <br>
+ * course FOR LANG 1 - that course number exactly <br>
+ * title Elective \d+ - titles in which the regular expression is found
+ * <p>
+ * Course numbers and titles are compared ignoring case. The prefixes and exact course numbers
+ * are compiled into one trie over case-folded characters, so a course number is classified in
+ * a single walk over its characters. The title patterns are compiled into one regular
+ * expression, so a title is checked with a single find. Rules are immutable and can be shared
+ * by parsers on any thread. Without a rule file, the default rule is "prefix CSE".
+ */
+final class ElectiveRules {
+    static final String CONFIG_FILE = "electives.rules";
+    static final ElectiveRules DEFAULT = compile(List.of("prefix CSE"));
+
+    private static volatile ElectiveRules current = DEFAULT;
+
+    private final List<String> rules;
+    private final Node root = new Node();
+    private final Pattern titlePattern;
+
+    /**
+     * A node of the course number trie.
+     */
+    private static final class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        // A prefix rule ends here, or an exact course number does
+        boolean isPrefix, isCourse;
+
+        Node child(char label, boolean create) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) return children[i];
+            if (!create) return null;
+            i = -i - 1;
+            char[] grownLabels = new char[labels.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, grownLabels, 0, i);
+            System.arraycopy(children, 0, grownChildren, 0, i);
+            System.arraycopy(labels, i, grownLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, grownChildren, i + 1, children.length - i);
+            grownLabels[i] = label;
+            grownChildren[i] = new Node();
+            labels = grownLabels;
+            children = grownChildren;
+            return grownChildren[i];
+        }
+    }
+
+    private ElectiveRules(List<String> rules, Pattern titlePattern) {
+        this.rules = rules;
+        this.titlePattern = titlePattern;
+    }
+
+    /**
+     * This method compiles a list of rules.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Skips blank lines and comments <br>
+     * 2. Adds each prefix and course rule to the trie, marking the node where it ends <br>
+     * 3. Joins the title rules into one case-insensitive regular expression
+     *
+     * @param lines the rules, as in the rule file
+     * @return the compiled rules
+     * @throws IllegalArgumentException if a rule is not understood, naming its line
+     */
+    static ElectiveRules compile(List<String> lines) {
+        List<String> rules = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        List<String[]> courseNumbers = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int space = line.indexOf(' ');
+            String kind = (space < 0) ? line : line.substring(0, space);
+            String value = (space < 0) ? "" : line.substring(space + 1).strip();
+            if (value.isEmpty()) throw new IllegalArgumentException("line " + (i + 1) + ": missing value in \"" + line + "\"");
+            switch (kind.toLowerCase(Locale.ROOT)) {
+                case "prefix", "course" -> courseNumbers.add(new String[]{kind.toLowerCase(Locale.ROOT), value});
+                case "title" -> {
+                    try {
+                        Pattern.compile(value);
+                    } catch (PatternSyntaxException exception) {
+                        throw new IllegalArgumentException("line " + (i + 1) + ": invalid title pattern \"" + value + "\"");
+                    }
+                    titles.add("(?:" + value + ")");
+                }
+                default -> throw new IllegalArgumentException("line " + (i + 1) + ": unknown rule \"" + kind + "\"");
+            }
+            rules.add(kind.toLowerCase(Locale.ROOT) + " " + value);
+        }
+        Pattern titlePattern = titles.isEmpty() ? null
+                : Pattern.compile(String.join("|", titles), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        ElectiveRules electiveRules = new ElectiveRules(List.copyOf(rules), titlePattern);
+        for (String[] courseNumber : courseNumbers) {
+            Node node = electiveRules.root;
+            for (int c = 0; c < courseNumber[1].length(); c++)
+                node = node.child(StringDictionary.fold(courseNumber[1].charAt(c)), true);
+            if (courseNumber[0].equals("prefix")) node.isPrefix = true;
+            else node.isCourse = true;
+        }
+        return electiveRules;
+    }
+
+    /**
+     * This method reads and compiles a rule file.
+     *
+     * @param ruleFile the rule file
+     * @return the compiled rules
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a rule is not understood
+     */
+    static ElectiveRules load(Path ruleFile) throws IOException {
+        return compile(Files.readAllLines(ruleFile, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method returns the rules new parsers use.
+     */
+    static ElectiveRules current() {
+        return current;
+    }
+
+    /**
+     * This method makes a rule set the one new parsers use. Courses already loaded keep their
+     * elective flags until they are reclassified.
+     */
+    static void use(ElectiveRules rules) {
+        current = rules;
+    }
+
+    /**
+     * This method tells if a course is an elective.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Walks the trie along the case-folded course number; a prefix node matches if the
+     * course number ends there or continues with a character that is not a letter <br>
+     * 2. If the walk ends on a course node, the course number matches exactly <br>
+     * 3. Otherwise the title is checked against the title patterns
+     *
+     * @param courseNumber     the course number
+     * @param descriptiveTitle the descriptive title
+     * @return true if a rule matches
+     */
+    boolean isElective(String courseNumber, String descriptiveTitle) {
+        if (courseNumber != null) {
+            Node node = root;
+            int length = courseNumber.length();
+            for (int i = 0; node != null; i++) {
+                if (node.isPrefix && (i == length || !Character.isLetter(courseNumber.charAt(i)))) return true;
+                if (i == length) {
+                    if (node.isCourse) return true;
+                    break;
+                }
+                node = node.child(StringDictionary.fold(courseNumber.charAt(i)), false);
+            }
+        }
+        if (titlePattern == null || descriptiveTitle == null) return false;
+        return titlePattern.matcher(descriptiveTitle).find();
+    }
+
+    /**
+     * This method returns a number that changes when the rules change, recorded by
+     * CurriculumSnapshot so that a snapshot classified with other rules is not used.
+     */
+    int fingerprint() {
+        return rules.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", rules);
+    }
+}
@@ -0,0 +1,237 @@
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The graded courses of a list, kept sorted by grade.
+ * <p>
+ * Courses are ordered by grade (as in Course.compareTo), then by course number, then by the
+ * order in which they were added. Courses with equal grades keep that order in both directions:
+ * the highest grade comes first when descending, but its courses still come by course number.
+ * The courses are held in a treap, which gives O(log n) insertion and removal. The ranking
+ * listens to its courses, so a grade or course number change moves the course to its new place
+ * right away. Courses without a grade are left out; a grade of 0 is ranked like any other.
+ */
+class GradeRanking implements CourseListener {
+    private final IdentityHashMap<Course, Node> nodes = new IdentityHashMap<>();
+    private final Set<Course> courses = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Node root;
+    private long sequence;
+    private int seed = 0x2545F491;
+
+    /**
+     * One course in the treap, with the key it was inserted under.
+     */
+    private static final class Node {
+        final Course course;
+        final int gradeHundredths;
+        final String courseNumber;
+        final long sequence;
+        final int priority;
+        Node left, right;
+
+        Node(Course course, long sequence, int priority) {
+            this.course = course;
+            this.gradeHundredths = PackedCourse.gradeHundredths(course.getPacked());
+            this.courseNumber = course.getCourseNumber();
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * This method builds the ranking of the given courses.
+     *
+     * @param courseList the courses to rank
+     * @return the new ranking
+     */
+    static GradeRanking of(List<Course> courseList) {
+        GradeRanking ranking = new GradeRanking();
+        for (Course course : courseList) ranking.add(course);
+        return ranking;
+    }
+
+    /**
+     * This method adds a course and starts listening to its changes.
+     * The course is only ranked while it has a grade.
+     *
+     * @param course the course to add
+     * @return false if the course was already added, in which case nothing changes
+     */
+    boolean add(Course course) {
+        if (!courses.add(course)) return false;
+        course.addListener(this);
+        if (course.isGraded()) insert(course);
+        return true;
+    }
+
+    /**
+     * This method removes a course and stops listening to its changes.
+     *
+     * @param course the course to remove
+     */
+    void remove(Course course) {
+        if (!courses.remove(course)) return;
+        course.removeListener(this);
+        delete(course);
+    }
+
+    /**
+     * This method stops listening to every course. The ranking must not be used afterwards.
+     */
+    void detach() {
+        for (Course course : courses) course.removeListener(this);
+        courses.clear();
+        nodes.clear();
+        root = null;
+    }
+
+    /**
+     * This method returns the graded courses from the lowest grade to the highest.
+     * The courses are read from the tree while iterating; nothing is copied.
+     */
+    Iterable<Course> ascending() {
+        return () -> new TreeIterator(root, false);
+    }
+
+    /**
+     * This method returns the graded courses from the highest grade to the lowest, the courses
+     * of one grade by course number as in ascending. The courses are read from the tree while
+     * iterating; only the courses of the current grade are held at a time.
+     */
+    Iterable<Course> descending() {
+        return () -> new TreeIterator(root, true);
+    }
+
+    @Override
+    public void gradesChanged(Course course, double oldGrades, boolean oldIsGraded) {
+        delete(course);
+        if (course.isGraded()) insert(course);
+    }
+
+    @Override
+    public void courseNumberChanged(Course course, String oldCourseNumber) {
+        if (delete(course)) insert(course);
+    }
+
+    private void insert(Course course) {
+        Node node = new Node(course, sequence++, nextPriority());
+        nodes.put(course, node);
+        root = insert(root, node);
+    }
+
+    private Node insert(Node parent, Node node) {
+        if (parent == null) return node;
+        if (compare(node, parent) < 0) {
+            parent.left = insert(parent.left, node);
+            if (parent.left.priority > parent.priority) parent = rotateRight(parent);
+        } else {
+            parent.right = insert(parent.right, node);
+            if (parent.right.priority > parent.priority) parent = rotateLeft(parent);
+        }
+        return parent;
+    }
+
+    private boolean delete(Course course) {
+        Node node = nodes.remove(course);
+        if (node == null) return false;
+        root = delete(root, node);
+        return true;
+    }
+
+    private Node delete(Node parent, Node node) {
+        if (parent == node) return merge(node.left, node.right);
+        if (compare(node, parent) < 0) parent.left = delete(parent.left, node);
+        else parent.right = delete(parent.right, node);
+        return parent;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        return right;
+    }
+
+    private static int compare(Node a, Node b) {
+        int order = Integer.compare(a.gradeHundredths, b.gradeHundredths);
+        if (order == 0) order = a.courseNumber.compareTo(b.courseNumber);
+        if (order == 0) order = Long.compare(a.sequence, b.sequence);
+        return order;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    /**
+     * An in-order walk over the treap that keeps the path to the next node on a stack.
+     * <p>
+     * The reversed walk meets the courses of one grade from the highest course number down, so
+     * it takes all of them at once onto a second stack and returns them from there, lowest first.
+     */
+    private static final class TreeIterator implements Iterator<Course> {
+        private final ArrayDeque<Node> path = new ArrayDeque<>();
+        private final ArrayDeque<Node> sameGrade = new ArrayDeque<>();
+        private final boolean reversed;
+
+        TreeIterator(Node root, boolean reversed) {
+            this.reversed = reversed;
+            descend(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty() || !sameGrade.isEmpty();
+        }
+
+        @Override
+        public Course next() {
+            if (!reversed) {
+                if (path.isEmpty()) throw new NoSuchElementException();
+                return advance().course;
+            }
+            if (sameGrade.isEmpty()) {
+                if (path.isEmpty()) throw new NoSuchElementException();
+                int grade = path.peek().gradeHundredths;
+                while (!path.isEmpty() && path.peek().gradeHundredths == grade) sameGrade.push(advance());
+            }
+            return sameGrade.pop().course;
+        }
+
+        private Node advance() {
+            Node node = path.pop();
+            descend(reversed ? node.left : node.right);
+            return node;
+        }
+
+        private void descend(Node node) {
+            for (; node != null; node = reversed ? node.right : node.left) path.push(node);
+        }
+    }
+}
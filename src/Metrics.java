@@ -0,0 +1,198 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process registry of operation metrics: how often each operation ran, how long it took
+ * (total, maximum and a latency histogram) and how many bytes it allocated.
+ * <p>
+ * Operations and counters are registered once, in static fields, and recording into them takes
+ * no lock and allocates nothing: counts and sums are LongAdders, the histogram is an
+ * AtomicLongArray with one bucket per power of two nanoseconds, and allocation is read from the
+ * thread's allocation counter. Every recorded operation is also committed as an OperationEvent
+ * when a Flight Recorder recording has the event enabled.
+ * <p>
+ * USAGE: <br>
+ * long start = System.nanoTime(), allocated = Metrics.allocatedBytes(); <br>
+ * ... the operation ... <br>
+ * Metrics.SAVE.record(start, allocated);
+ */
+class Metrics {
+    private static final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+    static final Operation PARSE_CSV = operation("parseCSV");
+    static final Operation SHIFT_MATCH = operation("shift match");
+    static final Operation SORT = operation("sortCoursesByGPA");
+    static final Operation SAVE = operation("save");
+    static final Operation QUERY = operation("query");
+    static final Operation SEARCH = operation("search");
+    static final LongAdder ROWS_PARSED = counter("parseCSV rows");
+    static final LongAdder BAD_ROWS = counter("parseCSV bad rows");
+
+    // One operation per main menu item, indexed by the item number (null for Quit)
+    private static final Operation[] MENU = {null,
+            operation("menu 1: show courses"), operation("menu 2: show grades"),
+            operation("menu 3: electives"), operation("menu 4: failed courses"),
+            operation("menu 5: enter grades"), operation("menu 6: edit course"),
+            operation("menu 7: shift"), operation("menu 8: save"), null,
+            operation("menu 10: query")};
+
+    private Metrics() {
+    }
+
+    /**
+     * The metrics of one kind of operation.
+     */
+    static final class Operation {
+        // Bucket i counts the runs that took from 2^i to 2^(i+1) - 1 nanoseconds
+        private static final int BUCKETS = 64;
+
+        final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder totalAllocatedBytes = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * This method records one run of the operation.
+         *
+         * @param startNanos          System.nanoTime() when the run started
+         * @param startAllocatedBytes Metrics.allocatedBytes() when the run started
+         */
+        void record(long startNanos, long startAllocatedBytes) {
+            record(startNanos, startAllocatedBytes, 0);
+        }
+
+        /**
+         * This method records one run of the operation that handled a number of rows.
+         *
+         * @param startNanos          System.nanoTime() when the run started
+         * @param startAllocatedBytes Metrics.allocatedBytes() when the run started
+         * @param rows                the number of rows (courses) the run handled
+         */
+        void record(long startNanos, long startAllocatedBytes, long rows) {
+            long nanos = Math.max(0, System.nanoTime() - startNanos);
+            long allocated = Math.max(0, allocatedBytes() - startAllocatedBytes);
+            count.increment();
+            totalNanos.add(nanos);
+            totalAllocatedBytes.add(allocated);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            OperationEvent.commit(name, nanos, allocated, rows);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * This method estimates a latency percentile from the histogram.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the upper bound in nanoseconds of the bucket holding the percentile, or 0 without runs
+         */
+        long percentileNanos(double percentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) total += counts[i] = histogram.get(i);
+            long rank = (long) Math.ceil(percentile / 100 * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) return Math.min((2L << i) - 1, maxNanos.get());
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * This method returns the operation with the given name, registering it on first use.
+     * Keep the result in a static field; the lookup itself is not meant for every run.
+     */
+    static Operation operation(String name) {
+        return operations.computeIfAbsent(name, Operation::new);
+    }
+
+    /**
+     * This method returns the counter with the given name, registering it on first use.
+     */
+    static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * This method records one run of a main menu item. Quit and numbers that are not menu items
+     * have no operation and are not recorded.
+     *
+     * @param choice              the number of the menu item
+     * @param startNanos          System.nanoTime() when the run started, moved later by the time
+     *                            the run spent waiting for the keyboard
+     * @param startAllocatedBytes Metrics.allocatedBytes() when the run started
+     * @param rows                the number of rows (courses) the run handled
+     */
+    static void recordMenu(int choice, long startNanos, long startAllocatedBytes, long rows) {
+        if (choice < 0 || choice >= MENU.length || MENU[choice] == null) return;
+        MENU[choice].record(startNanos, startAllocatedBytes, rows);
+    }
+
+    /**
+     * This method returns the number of bytes the current thread has allocated so far,
+     * or 0 if the JVM does not count them.
+     */
+    static long allocatedBytes() {
+        return (threads == null) ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * This method writes every operation that ran and every counter as a text table.
+     *
+     * @return the table
+     */
+    static String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-24s %10s %12s %10s %10s %10s %10s %14s%n", "OPERATION", "COUNT",
+                "TOTAL (ms)", "MEAN (ms)", "P50 (ms)", "P99 (ms)", "MAX (ms)", "ALLOC/OP (KB)"));
+        operations.values().stream().filter(operation -> operation.count() > 0)
+                .sorted((a, b) -> a.name.compareTo(b.name))
+                .forEach(operation -> {
+                    long count = operation.count();
+                    out.append(String.format("%-24s %10d %12.3f %10.3f %10.3f %10.3f %10.3f %14.1f%n",
+                            operation.name, count, operation.totalNanos() / 1e6,
+                            operation.totalNanos() / 1e6 / count, operation.percentileNanos(50) / 1e6,
+                            operation.percentileNanos(99) / 1e6, operation.maxNanos.get() / 1e6,
+                            operation.totalAllocatedBytes.sum() / 1024.0 / count));
+                });
+        counters.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(counter -> out.append(String.format("%-24s %10d%n", counter.getKey(), counter.getValue().sum())));
+        if (PARSE_CSV.totalNanos() > 0)
+            out.append(String.format("%-24s %10.0f%n", "parseCSV rows/sec", ROWS_PARSED.sum() * 1e9 / PARSE_CSV.totalNanos()));
+        return out.toString();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                    && threadBean.isThreadAllocatedMemorySupported()) {
+                threadBean.setThreadAllocatedMemoryEnabled(true);
+                return threadBean;
+            }
+        } catch (UnsupportedOperationException unsupported) {
+            // Allocation is then reported as 0
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for one operation recorded in Metrics.
+ * <p>
+ * The event is only created while a recording has it enabled, e.g. with
+ * java -XX:StartFlightRecording:filename=curriculum.jfr CourseAdministration. Otherwise recording
+ * an operation costs a single flag check.
+ */
+@Name("curriculum.Operation")
+@Label("Curriculum Operation")
+@Category("Curriculum")
+@Description("An operation of the curriculum monitoring program")
+@StackTrace(false)
+class OperationEvent extends Event {
+    // Used only to ask whether the event type is enabled
+    private static final OperationEvent PROBE = new OperationEvent();
+
+    @Label("Operation")
+    String operation;
+
+    // Measured by Metrics; the duration of the event itself is left unused
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocated;
+
+    @Label("Rows")
+    long rows;
+
+    /**
+     * This method commits an event for a finished operation if the event is enabled.
+     *
+     * @param operation the name of the operation
+     * @param nanos     how long it took
+     * @param allocated the bytes it allocated
+     * @param rows      the number of rows it handled, or 0
+     */
+    static void commit(String operation, long nanos, long allocated, long rows) {
+        if (!PROBE.isEnabled()) return;
+        OperationEvent event = new OperationEvent();
+        event.operation = operation;
+        event.elapsed = nanos;
+        event.allocated = allocated;
+        event.rows = rows;
+        event.commit();
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * The numeric values of a course packed into a single long.
+ * <p>
+ * BIT LAYOUT (from the lowest bit): <br>
+ * 0-15: the grade in hundredths, as a signed short <br>
+ * 16-31: the units in hundredths, as a signed short <br>
+ * 32-39: the year level <br>
+ * 40-47: the term <br>
+ * 48: set if the course has a grade <br>
+ * 49: set if the course is an elective
+ * <p>
+ * Grades and units are fixed-point with two decimals, from -327.68 to 327.67, and are rounded to
+ * the nearest hundredth. "No grade" is its own bit, so a grade of 0 can be stored; a course without
+ * a grade reads as grade 0, as before. Comparing two grades is an int comparison of hundredths.
+ */
+final class PackedCourse {
+    static final int SCALE = 100;
+    static final double MIN_VALUE = Short.MIN_VALUE / (double) SCALE;
+    static final double MAX_VALUE = Short.MAX_VALUE / (double) SCALE;
+    static final int FAILING_GRADE = 75 * SCALE;
+
+    private static final int UNITS_SHIFT = 16, YEAR_SHIFT = 32, TERM_SHIFT = 40;
+    private static final long GRADES_MASK = 0xFFFFL, UNITS_MASK = 0xFFFFL << UNITS_SHIFT,
+            YEAR_MASK = 0xFFL << YEAR_SHIFT, TERM_MASK = 0xFFL << TERM_SHIFT;
+    private static final long GRADED = 1L << 48, ELECTIVE = 1L << 49;
+
+    private PackedCourse() {
+    }
+
+    /**
+     * This method packs the values of a course.
+     *
+     * @param term       the term
+     * @param year       the year level
+     * @param units      the units
+     * @param grades     the grade, ignored if isGraded is false
+     * @param isGraded   whether the course has a grade
+     * @param isElective whether the course is an elective
+     * @return the packed course
+     * @throws IllegalArgumentException if the units or the grade cannot be represented
+     */
+    static long pack(byte term, byte year, double units, double grades, boolean isGraded, boolean isElective) {
+        long packed = withYear(withTerm(withUnits(0, units), term), year);
+        if (isGraded) packed = withGrades(packed, grades);
+        return isElective ? packed | ELECTIVE : packed;
+    }
+
+    /**
+     * This method tells if a value can be stored as a grade or units.
+     */
+    static boolean fits(double value) {
+        long hundredths = Math.round(value * SCALE);
+        return !Double.isNaN(value) && hundredths >= Short.MIN_VALUE && hundredths <= Short.MAX_VALUE;
+    }
+
+    static byte term(long packed) {
+        return (byte) (packed >>> TERM_SHIFT);
+    }
+
+    static byte year(long packed) {
+        return (byte) (packed >>> YEAR_SHIFT);
+    }
+
+    static int unitsHundredths(long packed) {
+        return (short) (packed >>> UNITS_SHIFT);
+    }
+
+    static double units(long packed) {
+        return unitsHundredths(packed) / (double) SCALE;
+    }
+
+    /**
+     * This method returns the grade in hundredths, 0 for a course without a grade.
+     */
+    static int gradeHundredths(long packed) {
+        return (short) packed;
+    }
+
+    /**
+     * This method returns the grade, 0 for a course without a grade.
+     */
+    static double grades(long packed) {
+        return gradeHundredths(packed) / (double) SCALE;
+    }
+
+    static boolean isGraded(long packed) {
+        return (packed & GRADED) != 0;
+    }
+
+    static boolean isElective(long packed) {
+        return (packed & ELECTIVE) != 0;
+    }
+
+    /**
+     * This method tells if a course has a grade lower than 75.
+     */
+    static boolean isFailed(long packed) {
+        return isGraded(packed) && gradeHundredths(packed) < FAILING_GRADE;
+    }
+
+    static long withTerm(long packed, byte term) {
+        return (packed & ~TERM_MASK) | ((term & 0xFFL) << TERM_SHIFT);
+    }
+
+    static long withYear(long packed, byte year) {
+        return (packed & ~YEAR_MASK) | ((year & 0xFFL) << YEAR_SHIFT);
+    }
+
+    static long withUnits(long packed, double units) {
+        return (packed & ~UNITS_MASK) | ((scale(units, "units") & 0xFFFFL) << UNITS_SHIFT);
+    }
+
+    /**
+     * This method returns the packed course with a grade.
+     */
+    static long withGrades(long packed, double grades) {
+        return (packed & ~GRADES_MASK) | (scale(grades, "grade") & 0xFFFFL) | GRADED;
+    }
+
+    /**
+     * This method returns the packed course without a grade.
+     */
+    static long withoutGrades(long packed) {
+        return packed & ~(GRADES_MASK | GRADED);
+    }
+
+    static long withElective(long packed, boolean isElective) {
+        return isElective ? packed | ELECTIVE : packed & ~ELECTIVE;
+    }
+
+    private static short scale(double value, String name) {
+        if (!fits(value)) throw new IllegalArgumentException(name + " " + value + " is out of range");
+        return (short) Math.round(value * SCALE);
+    }
+}
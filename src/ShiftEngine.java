@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches the courses of a shifter against a curriculum by descriptive title.
+ * <p>
+ * A shifter course is matched, in this order: through TitleEquivalences, to the curriculum
+ * course its title is declared equivalent to; exactly, to the curriculum course with the same
+ * title; and, unless only exact matches are asked for, to the curriculum course with the most
+ * similar title (see TitleMatcher). Each curriculum title is matched at most once by similarity,
+ * and never if it was already matched exactly. Every match carries a confidence, 1 for exact and
+ * equivalent matches and the title similarity otherwise, so similar matches can be reviewed.
+ * <p>
+ * The curriculum's title index (see CourseIndex) is the hash table, so an exact match is a single
+ * lookup of its title id, and a similar match only reads the trigram index entries of the
+ * title's rarest trigrams; neither depends on the size of the curriculum. Matching does not
+ * change any course, so many shifter lists can be evaluated against the same curriculum; the
+ * result of one of them is then applied separately.
+ */
+class ShiftEngine {
+    private final CourseIndex curriculumIndex;
+
+    /**
+     * How a shifter course was matched.
+     */
+    enum Kind {
+        EXACT, EQUIVALENT, SIMILAR
+    }
+
+    /**
+     * A shifter course paired with its curriculum course.
+     */
+    static final class Match {
+        final Course shifterCourse;
+        final Course curriculumCourse;
+        final Kind kind;
+        // 1 for exact and equivalent matches, the title similarity for similar ones
+        final double confidence;
+
+        Match(Course shifterCourse, Course curriculumCourse) {
+            this(shifterCourse, curriculumCourse, Kind.EXACT, 1);
+        }
+
+        Match(Course shifterCourse, Course curriculumCourse, Kind kind, double confidence) {
+            this.shifterCourse = shifterCourse;
+            this.curriculumCourse = curriculumCourse;
+            this.kind = kind;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * The matched and uncarried courses of one shifter list, both in shifter list order.
+     */
+    static final class Result {
+        final List<Match> matched;
+        final List<Course> uncarried;
+
+        Result(List<Match> matched, List<Course> uncarried) {
+            this.matched = Collections.unmodifiableList(matched);
+            this.uncarried = Collections.unmodifiableList(uncarried);
+        }
+
+        /**
+         * This method returns the matches made by title similarity, which should be reviewed.
+         */
+        List<Match> similarMatches() {
+            List<Match> similar = new ArrayList<>();
+            for (Match match : matched) if (match.kind == Kind.SIMILAR) similar.add(match);
+            return similar;
+        }
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param curriculumIndex the index of the curriculum the shifter moves into
+     */
+    ShiftEngine(CourseIndex curriculumIndex) {
+        this.curriculumIndex = curriculumIndex;
+    }
+
+    /**
+     * This method matches every course of a shifter to the curriculum, by equivalent, exact or
+     * similar title.
+     *
+     * @param shifterCourseList the courses of the shifter
+     * @return the matched and uncarried courses
+     */
+    Result match(List<Course> shifterCourseList) {
+        return match(shifterCourseList, true);
+    }
+
+    /**
+     * This method matches every course of a shifter to the curriculum.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. For each shifter course, look up the title its title is equivalent to, or else its own
+     * title, in the curriculum's title index <br>
+     * 2. If found, pair it with the first curriculum course with that title <br>
+     * 3. If similar matches are allowed, pair the courses left with the curriculum titles not
+     * matched yet, most similar pairs first <br>
+     * 4. Otherwise the shifter course is uncarried
+     *
+     * @param shifterCourseList the courses of the shifter
+     * @param allowSimilar      true to match titles by similarity, false for exact and equivalent matches only
+     * @return the matched and uncarried courses, in shifter list order
+     */
+    Result match(List<Course> shifterCourseList, boolean allowSimilar) {
+        long startNanos = System.nanoTime(), startAllocatedBytes = Metrics.allocatedBytes();
+        TitleEquivalences titleEquivalences = TitleEquivalences.current();
+        Match[] matches = new Match[shifterCourseList.size()];
+        Set<Integer> matchedTitleIds = new HashSet<>();
+        List<Integer> unmatched = new ArrayList<>();
+        for (int i = 0; i < matches.length; i++) {
+            Course shifterCourse = shifterCourseList.get(i);
+            String equivalent = titleEquivalences.equivalentOf(shifterCourse.getDescriptiveTitle());
+            List<Course> equivalents = (equivalent == null) ? List.of() : curriculumIndex.findByTitle(equivalent);
+            Kind kind = Kind.EQUIVALENT;
+            if (equivalents.isEmpty()) {
+                equivalents = curriculumIndex.findByTitleId(shifterCourse.getDescriptiveTitleId());
+                kind = Kind.EXACT;
+            }
+            if (equivalents.isEmpty()) {
+                unmatched.add(i);
+                continue;
+            }
+            matches[i] = new Match(shifterCourse, equivalents.get(0), kind, 1);
+            matchedTitleIds.add(equivalents.get(0).getDescriptiveTitleId());
+        }
+
+        if (allowSimilar && !unmatched.isEmpty()) {
+            List<String> titles = new ArrayList<>(unmatched.size());
+            for (int i : unmatched) titles.add(shifterCourseList.get(i).getDescriptiveTitle());
+            List<TitleMatcher.Candidate> candidates =
+                    curriculumIndex.similarTitles().assign(titles, titleId -> !matchedTitleIds.contains(titleId));
+            for (int j = 0; j < candidates.size(); j++) {
+                TitleMatcher.Candidate candidate = candidates.get(j);
+                if (candidate == null) continue;
+                int i = unmatched.get(j);
+                Course curriculumCourse = curriculumIndex.findByTitleId(candidate.titleId()).get(0);
+                matches[i] = new Match(shifterCourseList.get(i), curriculumCourse, Kind.SIMILAR, candidate.confidence());
+            }
+        }
+
+        List<Match> matched = new ArrayList<>();
+        List<Course> uncarried = new ArrayList<>();
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] == null) uncarried.add(shifterCourseList.get(i));
+            else matched.add(matches[i]);
+        }
+        Metrics.SHIFT_MATCH.record(startNanos, startAllocatedBytes, shifterCourseList.size());
+        return new Result(matched, uncarried);
+    }
+
+    /**
+     * This method carries the grade (or the lack of one) and course number of every matched
+     * shifter course over to its curriculum equivalent.
+     *
+     * @param result the result of match
+     */
+    static void applyMatches(Result result) {
+        for (Match match : result.matched) {
+            if (match.shifterCourse.isGraded()) match.curriculumCourse.setGrades(match.shifterCourse.getGrades());
+            else match.curriculumCourse.clearGrades();
+            match.curriculumCourse.setCourseNumber(match.shifterCourse.getCourseNumber());
+        }
+    }
+
+    /**
+     * This method prepares the uncarried courses to be added to the curriculum.
+     * Each one gets a "*" prefix on its course number and 0 units.
+     *
+     * @param result the result of match
+     */
+    static void markUncarried(Result result) {
+        for (Course course : result.uncarried) {
+            course.setCourseNumber("*" + course.getCourseNumber());
+            course.setUnits(0);
+        }
+    }
+}
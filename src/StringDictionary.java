@@ -0,0 +1,207 @@
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A global, thread-safe dictionary of the course numbers and descriptive titles of every loaded
+ * curriculum.
+ * <p>
+ * Thousands of students share the same few curriculum titles, so every distinct spelling is kept
+ * once and all courses with it point to the same String. Each spelling also gets an int id shared
+ * by every spelling that is equal ignoring case (folding each character to upper case and then to
+ * lower case, as compareToIgnoreCase does), so indexes and shifts compare ids instead of Strings.
+ * Ids start at 1; NO_ID stands for a null String.
+ * <p>
+ * The spellings of curriculum files and of the configuration are added with intern and kept for
+ * as long as the program runs. Any other spelling, such as a course number typed in an edit or a
+ * title of an uploaded shifter, is added by entry only for as long as it is in use: it is dropped
+ * once no course or record holds its String any more, and its id with it once no spelling of that
+ * id is left. A long-running server therefore keeps the spellings of its curricula, not every
+ * spelling it was ever sent. Ids are never given out twice.
+ */
+final class StringDictionary {
+    static final int NO_ID = 0;
+
+    private static final Entry NULL_ENTRY = new Entry(null, NO_ID);
+    // The spellings kept for good, and their ids
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> FOLDED_IDS = new ConcurrentHashMap<>();
+    // The spellings kept while they are in use, and the ids of those that have no spelling kept for
+    // good. Guarded by WEAK_ENTRIES, which also orders the adding of new folded forms
+    private static final Map<String, WeakEntry> WEAK_ENTRIES = new WeakHashMap<>();
+    private static final Map<String, WeakReference<FoldedId>> WEAK_FOLDED_IDS = new WeakHashMap<>();
+    private static final AtomicInteger LAST_ID = new AtomicInteger(NO_ID);
+
+    /**
+     * A spelling kept by the dictionary and the id of its case-folded form.
+     */
+    static final class Entry {
+        final String value;
+        final int foldedId;
+
+        private Entry(String value, int foldedId) {
+            this.value = value;
+            this.foldedId = foldedId;
+        }
+    }
+
+    /**
+     * The id of a folded form that only spellings in use have. It holds its key of WEAK_FOLDED_IDS,
+     * so the key stays as long as one of those spellings does.
+     */
+    private static final class FoldedId {
+        final String folded;
+        final int id;
+
+        FoldedId(String folded, int id) {
+            this.folded = folded;
+            this.id = id;
+        }
+    }
+
+    /**
+     * A spelling kept while it is in use. It must not hold its String, the key of WEAK_ENTRIES,
+     * or the String would never be dropped.
+     */
+    private static final class WeakEntry {
+        final WeakReference<String> value;
+        final int foldedId;
+        // Keeps the id while the spelling is in use, or null if the id is kept for good
+        final FoldedId weakFoldedId;
+
+        WeakEntry(String value, int foldedId, FoldedId weakFoldedId) {
+            this.value = new WeakReference<>(value);
+            this.foldedId = foldedId;
+            this.weakFoldedId = weakFoldedId;
+        }
+    }
+
+    private StringDictionary() {
+    }
+
+    /**
+     * This method returns the entry of a spelling. A new spelling is added for as long as it is in
+     * use, that is as long as the String of the returned entry is held.
+     *
+     * @param value the String, or null
+     * @return the entry, whose value is the shared instance of the String
+     */
+    static Entry entry(String value) {
+        if (value == null) return NULL_ENTRY;
+        Entry entry = ENTRIES.get(value);
+        if (entry != null) return entry;
+        synchronized (WEAK_ENTRIES) {
+            entry = ENTRIES.get(value);
+            if (entry != null) return entry;
+            WeakEntry weakEntry = WEAK_ENTRIES.get(value);
+            String shared = (weakEntry == null) ? null : weakEntry.value.get();
+            if (shared != null) return new Entry(shared, weakEntry.foldedId);
+
+            String folded = fold(value);
+            Integer foldedId = FOLDED_IDS.get(folded);
+            FoldedId weakFoldedId = null;
+            if (foldedId == null) {
+                WeakReference<FoldedId> reference = WEAK_FOLDED_IDS.get(folded);
+                weakFoldedId = (reference == null) ? null : reference.get();
+                if (weakFoldedId == null) {
+                    // The key must not be the spelling itself, which the FoldedId would then hold
+                    String key = (folded == value) ? new String(value) : folded;
+                    weakFoldedId = new FoldedId(key, LAST_ID.incrementAndGet());
+                    WEAK_FOLDED_IDS.put(key, new WeakReference<>(weakFoldedId));
+                }
+                foldedId = weakFoldedId.id;
+            }
+            WEAK_ENTRIES.put(value, new WeakEntry(value, foldedId, weakFoldedId));
+            return new Entry(value, foldedId);
+        }
+    }
+
+    /**
+     * This method returns the shared instance of a String, adding it for as long as the program
+     * runs if it is new. It is meant for the strings of curriculum files and of the configuration;
+     * use entry for any other.
+     * <p>
+     * A spelling already in use keeps its String and id.
+     */
+    static String intern(String value) {
+        if (value == null) return null;
+        Entry entry = ENTRIES.get(value);
+        if (entry != null) return entry.value;
+        synchronized (WEAK_ENTRIES) {
+            entry = ENTRIES.get(value);
+            if (entry != null) return entry.value;
+            WeakEntry weakEntry = WEAK_ENTRIES.remove(value);
+            String shared = (weakEntry == null) ? null : weakEntry.value.get();
+            if (shared == null) shared = value;
+
+            String folded = fold(value);
+            Integer foldedId = FOLDED_IDS.get(folded);
+            if (foldedId == null) {
+                WeakReference<FoldedId> reference = WEAK_FOLDED_IDS.remove(folded);
+                FoldedId weakFoldedId = (reference == null) ? null : reference.get();
+                foldedId = (weakFoldedId == null) ? LAST_ID.incrementAndGet() : weakFoldedId.id;
+                FOLDED_IDS.put(folded, foldedId);
+            }
+            ENTRIES.put(shared, new Entry(shared, foldedId));
+            return shared;
+        }
+    }
+
+    /**
+     * This method returns the id of a String ignoring case, without adding it. It is meant for
+     * search keys typed by a user: a String that is not in the dictionary is in no curriculum.
+     *
+     * @param value the String, or null
+     * @return the id, or NO_ID if no String equal to it ignoring case is in the dictionary
+     */
+    static int findFoldedId(String value) {
+        if (value == null) return NO_ID;
+        Entry entry = ENTRIES.get(value);
+        if (entry != null) return entry.foldedId;
+        String folded = fold(value);
+        Integer foldedId = FOLDED_IDS.get(folded);
+        if (foldedId != null) return foldedId;
+        synchronized (WEAK_ENTRIES) {
+            foldedId = FOLDED_IDS.get(folded);
+            if (foldedId != null) return foldedId;
+            WeakReference<FoldedId> reference = WEAK_FOLDED_IDS.get(folded);
+            FoldedId weakFoldedId = (reference == null) ? null : reference.get();
+            return (weakFoldedId == null) ? NO_ID : weakFoldedId.id;
+        }
+    }
+
+    /**
+     * This method returns the number of distinct spellings in the dictionary, those in use included.
+     */
+    static int size() {
+        synchronized (WEAK_ENTRIES) {
+            return ENTRIES.size() + WEAK_ENTRIES.size();
+        }
+    }
+
+    /**
+     * This method folds every character to upper case and then to lower case.
+     *
+     * @return the folded String, or the String itself if no character changes
+     */
+    private static String fold(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (fold(c) != c) {
+                char[] folded = value.toCharArray();
+                for (int j = i; j < folded.length; j++) folded[j] = fold(folded[j]);
+                return new String(folded);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * This method folds a character to upper case and then to lower case.
+     */
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.PrintStream;
+
+/**
+ * Builds the console tables of the reports in one reusable buffer and prints it in large blocks.
+ * <p>
+ * The tables have the fixed-width columns of Course.toString: course number (15), descriptive
+ * title (110), units (8) and grade (6). Rows are appended with CourseFormat, so no format string
+ * is parsed per row. The buffer goes to the console when it holds a full block, at a page break
+ * and on flush, instead of once per row.
+ * <p>
+ * A long table is split into pages: before the row that would start a new page, the buffer is
+ * printed and the page break runs (for example a "Press enter" prompt).
+ */
+class TableRenderer {
+    static final int RULE_WIDTH = 145;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final String RULE = "-".repeat(RULE_WIDTH);
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(BLOCK_SIZE + 1024);
+    private final int pageSize;
+    private final Runnable pageBreak;
+    private int rowsOnPage;
+
+    /**
+     * Constructor with parameters.
+     * @param out       where the tables are printed
+     * @param pageSize  the number of rows per page, or 0 to print tables without pages
+     * @param pageBreak what runs between two pages
+     */
+    TableRenderer(PrintStream out, int pageSize, Runnable pageBreak) {
+        this.out = out;
+        this.pageSize = pageSize;
+        this.pageBreak = pageBreak;
+    }
+
+    /**
+     * This method appends text without ending the line.
+     */
+    TableRenderer text(String text) {
+        buffer.append(text);
+        return this;
+    }
+
+    /**
+     * This method appends a line of text.
+     */
+    TableRenderer line(String text) {
+        buffer.append(text).append(System.lineSeparator());
+        return this;
+    }
+
+    /**
+     * This method ends the current line, or appends an empty one.
+     */
+    TableRenderer newLine() {
+        buffer.append(System.lineSeparator());
+        return this;
+    }
+
+    /**
+     * This method appends a line of dashes as wide as a table.
+     */
+    TableRenderer rule() {
+        return line(RULE);
+    }
+
+    /**
+     * This method appends the column headers: course number, course description, units and,
+     * if hasGrades, grade.
+     *
+     * @param hasGrades if the grade column has a header
+     * @return this renderer
+     */
+    TableRenderer header(boolean hasGrades) {
+        CourseFormat.appendPadded(buffer, "COURSE NO.", 15).append(' ');
+        CourseFormat.appendPadded(buffer, "COURSE DESCRIPTION", 110).append(' ');
+        CourseFormat.appendPadded(buffer, "UNITS", 8).append(' ');
+        CourseFormat.appendPadded(buffer, hasGrades ? "GRADE" : "", 6);
+        return newLine();
+    }
+
+    /**
+     * This method appends one course as a row of the table, formatted as Course.toString.
+     *
+     * @param course the course
+     * @return this renderer
+     */
+    TableRenderer row(CourseView course) {
+        startRow();
+        CourseFormat.appendCourse(buffer, course);
+        return endRow();
+    }
+
+    /**
+     * This method appends one course as a row with course number, title and units only.
+     * The units are written as they are stored, e.g. 3.0.
+     *
+     * @param course the course
+     * @return this renderer
+     */
+    TableRenderer rowWithoutGrade(CourseView course) {
+        startRow();
+        CourseFormat.appendPadded(buffer, course.getCourseNumber(), 15).append(' ');
+        CourseFormat.appendPadded(buffer, course.getDescriptiveTitle(), 110).append(' ');
+        int start = buffer.length();
+        CourseFormat.appendPadded(buffer.append(course.getUnits()), start, 8);
+        return endRow();
+    }
+
+    /**
+     * This method appends every course as a row of the table.
+     *
+     * @param courseList the courses
+     * @return this renderer
+     */
+    TableRenderer rows(Iterable<? extends CourseView> courseList) {
+        for (CourseView course : courseList) row(course);
+        return this;
+    }
+
+    /**
+     * This method prints everything appended so far. The next row starts a new page.
+     */
+    void flush() {
+        print();
+        rowsOnPage = 0;
+    }
+
+    private void startRow() {
+        if (pageSize > 0 && rowsOnPage == pageSize) {
+            print();
+            pageBreak.run();
+            rowsOnPage = 0;
+        }
+        rowsOnPage++;
+    }
+
+    private TableRenderer endRow() {
+        newLine();
+        if (buffer.length() >= BLOCK_SIZE) print();
+        return this;
+    }
+
+    private void print() {
+        if (buffer.length() == 0) return;
+        out.append(buffer);
+        out.flush();
+        buffer.setLength(0);
+    }
+}
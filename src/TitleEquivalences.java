@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Titles that a shift treats as the same course although they are not similar enough to be
+ * matched by TitleMatcher, such as "Discrete Mathematics" and "Discrete Structures".
+ * <p>
+ * EQUIVALENCE FILE (title-equivalences.txt, one equivalence per line; blank lines and lines
+ * starting with # are ignored): <br>
+ * Discrete Mathematics = Discrete Structures <br>
+ * The title on the left is the shifter's and the title on the right the curriculum's. Titles are
+ * compared ignoring case, by their StringDictionary ids. An equivalence is used before any exact
+ * or similar match. Without the file there are no equivalences.
+ */
+final class TitleEquivalences {
+    static final String CONFIG_FILE = "title-equivalences.txt";
+    static final TitleEquivalences NONE = new TitleEquivalences(Map.of());
+
+    private static volatile TitleEquivalences current = NONE;
+
+    // Curriculum titles by the folded id of the shifter title
+    private final Map<Integer, String> equivalents;
+
+    private TitleEquivalences(Map<Integer, String> equivalents) {
+        this.equivalents = equivalents;
+    }
+
+    /**
+     * This method reads the equivalences of some lines.
+     *
+     * @param lines the equivalences, as in the equivalence file
+     * @return the equivalences
+     * @throws IllegalArgumentException if a line is not an equivalence, naming the line
+     */
+    static TitleEquivalences parse(List<String> lines) {
+        Map<Integer, String> equivalents = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int equals = line.indexOf('=');
+            String shifterTitle = (equals < 0) ? "" : line.substring(0, equals).strip();
+            String curriculumTitle = (equals < 0) ? "" : line.substring(equals + 1).strip();
+            if (shifterTitle.isEmpty() || curriculumTitle.isEmpty())
+                throw new IllegalArgumentException("line " + (i + 1) + ": expected \"shifter title = curriculum title\"");
+            equivalents.put(StringDictionary.entry(StringDictionary.intern(shifterTitle)).foldedId,
+                    StringDictionary.intern(curriculumTitle));
+        }
+        return new TitleEquivalences(Map.copyOf(equivalents));
+    }
+
+    /**
+     * This method reads an equivalence file.
+     *
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a line is not an equivalence
+     */
+    static TitleEquivalences load(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method returns the equivalences shifts use.
+     */
+    static TitleEquivalences current() {
+        return current;
+    }
+
+    static void use(TitleEquivalences equivalences) {
+        current = equivalences;
+    }
+
+    /**
+     * This method returns the curriculum title a shifter title is equivalent to.
+     *
+     * @param shifterTitle the title of a shifter course
+     * @return the curriculum title, or null if the title has no equivalence
+     */
+    String equivalentOf(String shifterTitle) {
+        return equivalents.get(StringDictionary.findFoldedId(shifterTitle));
+    }
+
+    int size() {
+        return equivalents.size();
+    }
+}
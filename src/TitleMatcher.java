@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Finds the titles that are similar to a title, such as "Computer Programming I Lab" and
+ * "Computer Programming 1 (Lab)", through an inverted index of trigrams.
+ * <p>
+ * Titles are normalized before they are compared: case is folded, punctuation becomes a space,
+ * the roman numerals I to X become numbers, "laboratory" becomes "lab", and small words such as
+ * "and", "of" and "the" are dropped. The similarity of two titles is the Jaccard index of the
+ * trigrams of their normalized forms (shared trigrams over all trigrams), from 0 to 1. Two
+ * titles whose numbers or "lab" differ are never similar, however close the rest is: "Computer
+ * Programming 1" is not "Computer Programming 2", and a lab is not its lecture.
+ * <p>
+ * The index is kept per set of numbers and "lab", so a lookup only sees the titles that may be
+ * similar at all, and it only reads the index entries of the query's rarest trigrams: a title
+ * sharing none of the |A| - ceil(threshold * |A|) + 1 rarest trigrams of a query with |A|
+ * trigrams cannot reach the threshold. Neither can a title with fewer than threshold * |A| or
+ * more than |A| / threshold trigrams. The candidates left are then scored exactly.
+ * <p>
+ * Each title is kept under an int id chosen by the caller, usually its StringDictionary id.
+ */
+final class TitleMatcher {
+    static final double DEFAULT_THRESHOLD = 0.6;
+    private static final Set<String> SMALL_WORDS = Set.of("a", "an", "and", "the", "of", "in", "on", "for", "to", "with");
+    private static final String[] ROMAN_NUMERALS = {"i", "ii", "iii", "iv", "v", "vi", "vii", "viii", "ix", "x"};
+
+    private final double threshold;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // The entries of each trigram, by key tokens
+    private final Map<String, Map<Long, ArrayList<Entry>>> entriesByTrigram = new HashMap<>();
+
+    /**
+     * A title that is similar to the one looked up.
+     *
+     * @param titleId    the id the title was added with
+     * @param title      the title
+     * @param confidence the similarity, from the threshold to 1
+     */
+    record Candidate(int titleId, String title, double confidence) {
+    }
+
+    /**
+     * A title reduced to what is compared.
+     */
+    private static final class Normalized {
+        final long[] trigrams;
+        // The numbers and "lab" of the title, in order; they must be equal for titles to be similar
+        final String keyTokens;
+
+        Normalized(long[] trigrams, String keyTokens) {
+            this.trigrams = trigrams;
+            this.keyTokens = keyTokens;
+        }
+    }
+
+    private static final class Entry {
+        final int titleId;
+        final String title;
+        final Normalized normalized;
+
+        Entry(int titleId, String title, Normalized normalized) {
+            this.titleId = titleId;
+            this.title = title;
+            this.normalized = normalized;
+        }
+    }
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param threshold the lowest similarity of a candidate, above 0 and at most 1
+     */
+    TitleMatcher(double threshold) {
+        if (!(threshold > 0 && threshold <= 1)) throw new IllegalArgumentException("threshold " + threshold + " is not in (0, 1]");
+        this.threshold = threshold;
+    }
+
+    /**
+     * This method adds a title, replacing the title with the same id if there is one.
+     *
+     * @param titleId the id of the title
+     * @param title   the title
+     */
+    void add(int titleId, String title) {
+        remove(titleId);
+        Entry entry = new Entry(titleId, title, normalize(title));
+        entries.put(titleId, entry);
+        Map<Long, ArrayList<Entry>> index = entriesByTrigram.computeIfAbsent(entry.normalized.keyTokens, k -> new HashMap<>());
+        for (long trigram : entry.normalized.trigrams)
+            index.computeIfAbsent(trigram, k -> new ArrayList<>(1)).add(entry);
+    }
+
+    /**
+     * This method removes a title.
+     *
+     * @param titleId the id the title was added with
+     */
+    void remove(int titleId) {
+        Entry entry = entries.remove(titleId);
+        if (entry == null) return;
+        Map<Long, ArrayList<Entry>> index = entriesByTrigram.get(entry.normalized.keyTokens);
+        for (long trigram : entry.normalized.trigrams) {
+            ArrayList<Entry> posting = index.get(trigram);
+            posting.remove(entry);
+            if (posting.isEmpty()) index.remove(trigram);
+        }
+        if (index.isEmpty()) entriesByTrigram.remove(entry.normalized.keyTokens);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean contains(int titleId) {
+        return entries.containsKey(titleId);
+    }
+
+    /**
+     * This method finds the titles similar to a title.
+     * <p>
+     * METHOD ALGORITHM: <br>
+     * 1. Normalizes the title and takes the index of the titles with the same numbers and "lab" <br>
+     * 2. Sorts its trigrams by the number of titles that have them <br>
+     * 3. Collects the titles of the rarest trigrams, as many as a similar title must share one of <br>
+     * 4. Scores those of a possible size and keeps those that reach the threshold
+     *
+     * @param title the title to look up
+     * @return the similar titles, most similar first
+     */
+    List<Candidate> candidates(String title) {
+        Normalized query = normalize(title);
+        int n = query.trigrams.length;
+        Map<Long, ArrayList<Entry>> index = entriesByTrigram.get(query.keyTokens);
+        if (n == 0 || index == null) return List.of();
+        Long[] byRarity = new Long[n];
+        for (int i = 0; i < n; i++) byRarity[i] = query.trigrams[i];
+        Arrays.sort(byRarity, Comparator.comparingInt(trigram -> postingSize(index, trigram)));
+
+        int prefix = n - (int) Math.ceil(threshold * n - 1e-9) + 1;
+        double minSize = threshold * n - 1e-9, maxSize = n / threshold + 1e-9;
+        Map<Entry, Boolean> seen = new IdentityHashMap<>();
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < prefix && i < n; i++) {
+            ArrayList<Entry> posting = index.get(byRarity[i]);
+            if (posting == null) continue;
+            for (Entry entry : posting) {
+                int size = entry.normalized.trigrams.length;
+                if (size < minSize || size > maxSize || seen.put(entry, Boolean.TRUE) != null) continue;
+                double similarity = jaccard(query.trigrams, entry.normalized.trigrams);
+                if (similarity >= threshold) candidates.add(new Candidate(entry.titleId, entry.title, similarity));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::confidence).reversed());
+        return candidates;
+    }
+
+    /**
+     * This method pairs each of several titles with a different similar title, most similar
+     * pairs first, so two titles never get the same match.
+     *
+     * @param titles    the titles to match
+     * @param available tells if a title id may still be matched
+     * @return the match of each title, in the same order, or null for a title without one
+     */
+    List<Candidate> assign(List<String> titles, IntPredicate available) {
+        record Pair(int index, Candidate candidate) {
+        }
+        List<Pair> pairs = new ArrayList<>();
+        for (int i = 0; i < titles.size(); i++)
+            for (Candidate candidate : candidates(titles.get(i)))
+                if (available.test(candidate.titleId)) pairs.add(new Pair(i, candidate));
+        pairs.sort(Comparator.comparingDouble((Pair pair) -> pair.candidate.confidence).reversed()
+                .thenComparingInt(Pair::index));
+
+        List<Candidate> assigned = new ArrayList<>(Collections.nCopies(titles.size(), null));
+        Set<Integer> used = new HashSet<>();
+        for (Pair pair : pairs) {
+            if (assigned.get(pair.index) != null || !used.add(pair.candidate.titleId)) continue;
+            assigned.set(pair.index, pair.candidate);
+        }
+        return assigned;
+    }
+
+    /**
+     * This method returns the similarity of two titles, as the matcher scores it.
+     *
+     * @return the Jaccard index of their trigrams, or 0 if their numbers or "lab" differ
+     */
+    static double similarity(String a, String b) {
+        Normalized first = normalize(a), second = normalize(b);
+        if (!first.keyTokens.equals(second.keyTokens)) return 0;
+        return jaccard(first.trigrams, second.trigrams);
+    }
+
+    private static int postingSize(Map<Long, ArrayList<Entry>> index, long trigram) {
+        ArrayList<Entry> posting = index.get(trigram);
+        return (posting == null) ? 0 : posting.size();
+    }
+
+    /**
+     * This method returns the Jaccard index of two sorted sets of trigrams.
+     */
+    private static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 && b.length == 0) return 1;
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared / (double) (a.length + b.length - shared);
+    }
+
+    /**
+     * This method normalizes a title into its sorted trigrams and key tokens.
+     */
+    private static Normalized normalize(String title) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder keyTokens = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= title.length(); i++) {
+            char c = (i < title.length()) ? title.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(StringDictionary.fold(c));
+                continue;
+            }
+            if (token.length() == 0) continue;
+            String word = canonical(token.toString());
+            token.setLength(0);
+            if (SMALL_WORDS.contains(word)) continue;
+            tokens.add(word);
+            if (word.equals("lab") || Character.isDigit(word.charAt(0))) keyTokens.append(word).append(' ');
+        }
+
+        String text = " " + String.join(" ", tokens) + " ";
+        long[] trigrams = new long[Math.max(0, text.length() - 2)];
+        for (int i = 0; i < trigrams.length; i++)
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        trigrams = Arrays.stream(trigrams).sorted().distinct().toArray();
+        return new Normalized(tokens.isEmpty() ? new long[0] : trigrams, keyTokens.toString());
+    }
+
+    private static String canonical(String word) {
+        if (word.equals("laboratory")) return "lab";
+        for (int i = 0; i < ROMAN_NUMERALS.length; i++)
+            if (ROMAN_NUMERALS[i].equals(word)) return Integer.toString(i + 1);
+        // "01" is 1
+        if (word.chars().allMatch(Character::isDigit)) return word.replaceFirst("^0+(?=.)", "");
+        return word;
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Running totals over a list of courses.
+ * <p>
+ * The totals are updated in O(1) whenever a course is added or removed, or whenever one of its
+ * setters changes the grade, units, elective flag, year or term (the aggregates listen to every
+ * course they hold). Reading a total never scans the courses.
+ * <p>
+ * A course without a grade counts towards the total units only; a grade of 0 is a grade like
+ * any other. A graded course below 75 is failed and its units are not earned.
+ * <p>
+ * Units and grades are summed in whole hundredths, as PackedCourse stores them, so the totals
+ * stay exact however many changes they follow. They are turned into decimals only when read.
+ */
+class TranscriptAggregates implements CourseListener {
+    // A Course is only equal to itself, so removing one is O(1)
+    private final LinkedHashSet<Course> courses = new LinkedHashSet<>();
+    // Units in hundredths, and the units times the grade in hundredths of both
+    private long totalUnits, gradedUnits, earnedUnits, weightedGradeSum;
+    private int gradedCount, failedCount, electiveCount;
+
+    // Number of courses for each term and year, indexed [term][year]
+    private int[][] termYearCounts = new int[4][];
+
+    /**
+     * This method builds the aggregates of the given courses.
+     *
+     * @param courseList the courses to aggregate
+     * @return the new aggregates
+     */
+    static TranscriptAggregates of(List<Course> courseList) {
+        TranscriptAggregates aggregates = new TranscriptAggregates();
+        for (Course course : courseList) aggregates.add(course);
+        return aggregates;
+    }
+
+    /**
+     * This method adds a course to the totals and starts listening to its changes.
+     *
+     * @param course the course to add
+     */
+    void add(Course course) {
+        courses.add(course);
+        count(course.getUnits(), course.getGrades(), course.isGraded(), 1);
+        countTerm(course.getYear(), course.getTerm(), 1);
+        if (course.getIsElective()) electiveCount++;
+        course.addListener(this);
+    }
+
+    /**
+     * This method removes a course from the totals and stops listening to its changes.
+     *
+     * @param course the course to remove
+     */
+    void remove(Course course) {
+        if (!courses.remove(course)) return;
+        course.removeListener(this);
+        count(course.getUnits(), course.getGrades(), course.isGraded(), -1);
+        countTerm(course.getYear(), course.getTerm(), -1);
+        if (course.getIsElective()) electiveCount--;
+    }
+
+    /**
+     * This method stops listening to every course. The aggregates must not be used afterwards.
+     */
+    void detach() {
+        for (Course course : courses) course.removeListener(this);
+        courses.clear();
+    }
+
+    int courseCount() {
+        return courses.size();
+    }
+
+    int gradedCount() {
+        return gradedCount;
+    }
+
+    int ungradedCount() {
+        return courses.size() - gradedCount;
+    }
+
+    int failedCount() {
+        return failedCount;
+    }
+
+    int electiveCount() {
+        return electiveCount;
+    }
+
+    double totalUnits() {
+        return totalUnits / (double) PackedCourse.SCALE;
+    }
+
+    /**
+     * This method returns the units of the graded courses that were passed.
+     */
+    double earnedUnits() {
+        return earnedUnits / (double) PackedCourse.SCALE;
+    }
+
+    /**
+     * This method returns the average grade of the graded courses, weighted by their units.
+     *
+     * @return the weighted average, or 0 if no graded course has units
+     */
+    double weightedAverage() {
+        return (gradedCount == 0 || gradedUnits == 0) ? 0 : (double) weightedGradeSum / gradedUnits / PackedCourse.SCALE;
+    }
+
+    /**
+     * This method returns the highest year level that has a course in any term.
+     *
+     * @return the highest year, or 1 if there are no courses
+     */
+    int highestYear() {
+        int highestYear = 1;
+        for (int term = 0; term < termYearCounts.length; term++)
+            highestYear = Math.max(highestYear, highestYear(term));
+        return highestYear;
+    }
+
+    /**
+     * This method returns the highest year level that has a course in the given term.
+     *
+     * @param term the term
+     * @return the highest year, or 0 if the term has no courses
+     */
+    int highestYear(int term) {
+        int t = term & 0xFF;
+        if (t >= termYearCounts.length || termYearCounts[t] == null) return 0;
+        int[] yearCounts = termYearCounts[t];
+        for (int year = yearCounts.length - 1; year > 0; year--)
+            if (yearCounts[year] > 0) return year;
+        return 0;
+    }
+
+    @Override
+    public void gradesChanged(Course course, double oldGrades, boolean oldIsGraded) {
+        count(course.getUnits(), oldGrades, oldIsGraded, -1);
+        count(course.getUnits(), course.getGrades(), course.isGraded(), 1);
+    }
+
+    @Override
+    public void unitsChanged(Course course, double oldUnits) {
+        count(oldUnits, course.getGrades(), course.isGraded(), -1);
+        count(course.getUnits(), course.getGrades(), course.isGraded(), 1);
+    }
+
+    @Override
+    public void isElectiveChanged(Course course, boolean oldIsElective) {
+        electiveCount += course.getIsElective() ? 1 : -1;
+    }
+
+    @Override
+    public void termChanged(Course course, byte oldTerm) {
+        countTerm(course.getYear(), oldTerm, -1);
+        countTerm(course.getYear(), course.getTerm(), 1);
+    }
+
+    @Override
+    public void yearChanged(Course course, byte oldYear) {
+        countTerm(oldYear, course.getTerm(), -1);
+        countTerm(course.getYear(), course.getTerm(), 1);
+    }
+
+    /**
+     * This method adds (sign 1) or subtracts (sign -1) one course's units and grade from the totals.
+     */
+    private void count(double units, double grades, boolean isGraded, int sign) {
+        long unitsHundredths = hundredths(units);
+        totalUnits += sign * unitsHundredths;
+        if (!isGraded) return;
+        long gradeHundredths = hundredths(grades);
+        gradedCount += sign;
+        gradedUnits += sign * unitsHundredths;
+        weightedGradeSum += sign * unitsHundredths * gradeHundredths;
+        if (gradeHundredths < PackedCourse.FAILING_GRADE) failedCount += sign;
+        else earnedUnits += sign * unitsHundredths;
+    }
+
+    /**
+     * This method returns a value of a course in hundredths. The values are stored in hundredths,
+     * so the rounding only takes off the error of the decimal.
+     */
+    private static long hundredths(double value) {
+        return Math.round(value * PackedCourse.SCALE);
+    }
+
+    private void countTerm(int year, int term, int sign) {
+        int t = term & 0xFF, y = year & 0xFF;
+        if (t >= termYearCounts.length) termYearCounts = Arrays.copyOf(termYearCounts, t + 1);
+        if (termYearCounts[t] == null) termYearCounts[t] = new int[Math.max(8, y + 1)];
+        else if (y >= termYearCounts[t].length) termYearCounts[t] = Arrays.copyOf(termYearCounts[t], y + 1);
+        termYearCounts[t][y] += sign;
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads a batch of student transcript files in parallel.
+ * <p>
+ * The files are split in halves recursively across a ForkJoinPool until each task holds only
+ * a few files, which are then parsed one after another with a CsvParser owned by that task.
+ * The transcript of each student is keyed by the file name without its extension.
+ */
+class TranscriptIngest {
+    private static final int FILES_PER_TASK = 4;
+
+    /**
+     * The outcome of loading a single transcript file.
+     */
+    static final class FileResult {
+        final Path file;
+        final ArrayList<Course> courses;
+        final long rows;
+        final List<String> errors;
+        // The I/O error or unexpected exception that stopped the file from loading, or null
+        final Exception failure;
+
+        private FileResult(Path file, ArrayList<Course> courses, long rows, List<String> errors, Exception failure) {
+            this.file = file;
+            this.courses = courses;
+            this.rows = rows;
+            this.errors = errors;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * The per-student transcripts and load statistics of one ingest run.
+     */
+    static final class Summary {
+        final Map<String, ArrayList<Course>> transcripts;
+        final List<FileResult> results;
+        final long elapsedNanos;
+
+        private Summary(Map<String, ArrayList<Course>> transcripts, List<FileResult> results, long elapsedNanos) {
+            this.transcripts = transcripts;
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long totalRows() {
+            long rows = 0;
+            for (FileResult result : results) rows += result.rows;
+            return rows;
+        }
+
+        double rowsPerSecond() {
+            return (elapsedNanos == 0) ? 0 : totalRows() * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * This method prints the totals followed by every file that had failures.
+         */
+        void print() {
+            System.out.printf("Loaded %d files (%d rows) in %.1f ms: %.0f rows/sec%n",
+                    results.size(), totalRows(), elapsedNanos / 1_000_000.0, rowsPerSecond());
+            for (FileResult result : results) {
+                if (result.failure != null) {
+                    System.out.println(result.file + ((result.failure instanceof IOException) ? ": I/O error: " : ": error: ")
+                            + result.failure);
+                } else if (!result.errors.isEmpty()) {
+                    System.out.println(result.file + ": " + result.errors.size() + " failed rows");
+                    for (String error : result.errors) System.out.println("    " + error);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method lists the transcript files to load.
+     * <p>
+     * A directory selects every .csv file directly inside it. Anything else is treated as a
+     * glob whose last name element is the pattern, for example "transcripts/2023-*.csv".
+     *
+     * @param directoryOrGlob the directory or glob given by the user
+     * @return the matching files in name order
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> findFiles(String directoryOrGlob) throws IOException {
+        Path path = Path.of(directoryOrGlob);
+        Path directory = path;
+        String glob = "*.csv";
+        if (!Files.isDirectory(path)) {
+            directory = (path.getParent() == null) ? Path.of(".") : path.getParent();
+            glob = path.getFileName().toString();
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream)
+                if (Files.isRegularFile(file)) files.add(file);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * This method loads the given files in parallel on the common ForkJoinPool.
+     *
+     * @param files the transcript files
+     * @return the transcripts and the load summary
+     */
+    static Summary ingest(List<Path> files) {
+        return ingest(files, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * This method loads the given files in parallel on the given pool.
+     *
+     * @param files the transcript files
+     * @param pool  the pool that runs the parse tasks
+     * @return the transcripts, keyed by student in file order, and the load summary
+     */
+    static Summary ingest(List<Path> files, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        FileResult[] results = new FileResult[files.size()];
+        pool.invoke(new IngestTask(files, results, 0, files.size()));
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, ArrayList<Course>> transcripts = new LinkedHashMap<>();
+        for (FileResult result : results)
+            if (result.failure == null) transcripts.put(studentId(result.file), result.courses);
+        return new Summary(transcripts, List.of(results), elapsed);
+    }
+
+    /**
+     * This method derives the student id from a transcript file name.
+     *
+     * @param file the transcript file
+     * @return the file name without its extension
+     */
+    static String studentId(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0) ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Parses the files of one range, splitting the range in two while it is large. A file that
+     * cannot be loaded is recorded as a failure, so the other files are still loaded.
+     */
+    private static final class IngestTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+        private final FileResult[] results;
+        private final int from, to;
+
+        IngestTask(List<Path> files, FileResult[] results, int from, int to) {
+            this.files = files;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IngestTask(files, results, from, middle),
+                        new IngestTask(files, results, middle, to));
+                return;
+            }
+            CsvParser parser = new CsvParser();
+            for (int i = from; i < to; i++) {
+                Path file = files.get(i);
+                try {
+                    ArrayList<Course> courses = parser.parse(file);
+                    results[i] = new FileResult(file, courses, parser.getRowCount(),
+                            List.copyOf(parser.getErrors()), null);
+                } catch (IOException ioException) {
+                    results[i] = new FileResult(file, new ArrayList<>(), 0, List.of(), ioException);
+                } catch (RuntimeException exception) {
+                    results[i] = new FileResult(file, new ArrayList<>(), 0, List.of(), exception);
+                    // The parser may have stopped halfway through its buffers
+                    parser = new CsvParser();
+                }
+            }
+        }
+    }
+}